@@ -23,14 +23,24 @@ import java.io.LineNumberReader;
 import java.io.StringReader;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import org.apache.commons.exec.OS;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.settings.Proxy;
+import org.apache.maven.settings.building.SettingsProblem;
+import org.apache.maven.settings.crypto.DefaultSettingsDecryptionRequest;
+import org.apache.maven.settings.crypto.SettingsDecrypter;
+import org.apache.maven.settings.crypto.SettingsDecryptionResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.impl.StaticLoggerBinder;
@@ -42,7 +52,23 @@ public abstract class AbstractEventStoreMojo extends AbstractMojo {
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractEventStoreMojo.class);
 
-    private static final String PID_FILE_NAME = "event-store-pid";
+    private static final String STATE_FILE_PREFIX = "event-store-";
+
+    private static final String STATE_FILE_SUFFIX = ".json";
+
+    private static final int TIMEOUT_30_SECONDS = 1000 * 30;
+
+    /** Project property with the external TCP port of the started event store. */
+    public static final String TCP_PORT_PROPERTY = "eventstore.tcp.port";
+
+    /** Project property with the external HTTP port of the started event store. */
+    public static final String HTTP_PORT_PROPERTY = "eventstore.http.port";
+
+    /** Project property with the external secure TCP port of the started event store (only set if enabled). */
+    public static final String SECURE_TCP_PORT_PROPERTY = "eventstore.secure.tcp.port";
+
+    /** Name of the instance if no <code>instance-name</code> is configured. */
+    public static final String DEFAULT_INSTANCE = "default";
 
     /** URL of the JSON file with available event store versions. */
     public static final String VERSION_URL = "https://raw.githubusercontent.com/EventStore/eventstore.org/master/_data/downloads.json";
@@ -87,6 +113,51 @@ public abstract class AbstractEventStoreMojo extends AbstractMojo {
     @Parameter(name = "event-store-dir")
     private File eventStoreDir;
 
+    /**
+     * Directory that caches the version file, downloaded archives and their extracted content
+     * for all builds of the user. Defaults to
+     * <code>${user.home}/.m2/es-maven-plugin</code>.
+     */
+    @Parameter(name = "cache-dir", defaultValue = "${user.home}/.m2/es-maven-plugin")
+    private File cacheDir = new File(System.getProperty("user.home"), ".m2/es-maven-plugin");
+
+    /**
+     * Number of minutes the cached version file is used without asking the server if it changed. After that time the file is
+     * revalidated using a conditional request. Offline builds always use the cached file.
+     */
+    @Parameter(name = "version-ttl", defaultValue = "60")
+    private int versionTtl = 60;
+
+    /**
+     * Name of the event store instance. The start, post-start and stop goals with the same name share the state of the instance
+     * (process ID, ports, data directory, start and ready time). Use different names for running several event stores in one
+     * module. Defaults to <code>default</code>.
+     */
+    @Parameter(name = "instance-name", defaultValue = DEFAULT_INSTANCE)
+    private String instanceName = DEFAULT_INSTANCE;
+
+    /**
+     * The current session. Used for sharing the resolved download between all goals and modules.
+     */
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
+    /**
+     * The current project. Used for publishing the ports of the started event store.
+     */
+    @Parameter(defaultValue = "${project}", readonly = true)
+    private MavenProject project;
+
+    /**
+     * Decrypts the password of the proxy from the settings.
+     */
+    @Component
+    private SettingsDecrypter settingsDecrypter;
+
+    private ResolutionCache resolutionCache;
+
+    private HttpProxy httpProxy;
+
     /**
      * Checks if a variable is not <code>null</code> and throws an <code>IllegalNullArgumentException</code> if this rule is violated.
      * 
@@ -114,12 +185,26 @@ public abstract class AbstractEventStoreMojo extends AbstractMojo {
         LOG.info("includeRc={}", includeRc);
         LOG.info("target-dir={}", targetDir);
         LOG.info("event-store-dir={}", eventStoreDir);
+        LOG.info("instance-name={}", instanceName);
+        if (instanceName == null || !instanceName.matches("[A-Za-z0-9._-]+")) {
+            throw new MojoExecutionException("The instance-name may only contain letters, digits, '.', '_' and '-': " + instanceName);
+        }
         executeGoal();
     }
 
     // CHECKSTYLE:OFF Cyclomatic complexity - Not nice, but OK for now
     private void init() throws MojoExecutionException {
 
+        // Other goals of the session may have resolved the same configuration already
+        final String key = resolutionKey();
+        final ResolutionCache.Resolution resolution = getResolutionCache().getResolution(key);
+        if (resolution != null) {
+            downloadUrl = resolution.getDownloadUrl();
+            downloadOsQualifier = resolution.getDownloadOsQualifier();
+            eventStoreDir = resolution.getEventStoreDir();
+            return;
+        }
+
         // Only initialize other stuff if no full URL is provided
         if (downloadUrl == null) {
             initUsingLatest();
@@ -138,10 +223,56 @@ public abstract class AbstractEventStoreMojo extends AbstractMojo {
 
         }
 
+        getResolutionCache().putResolution(key, new ResolutionCache.Resolution(downloadUrl, downloadOsQualifier, eventStoreDir));
+
     }
 
     // CHECKSTYLE:ON
 
+    private String resolutionKey() throws MojoExecutionException {
+        return versionUrl + "|" + downloadUrl + "|" + downloadOsQualifier + "|" + isIncludeRc() + "|" + canonicalFile(targetDir) + "|"
+                + eventStoreDir;
+    }
+
+    private boolean isOffline() {
+        return session != null && session.isOffline();
+    }
+
+    /**
+     * Returns the proxy for HTTP connections. It is taken from the active proxy of the settings like Maven does for its own downloads.
+     * 
+     * @return Proxy or {@link HttpProxy#NONE} if there is no active proxy.
+     */
+    protected final HttpProxy getHttpProxy() {
+        if (httpProxy == null) {
+            httpProxy = createHttpProxy();
+            LOG.info("proxy={}", httpProxy);
+        }
+        return httpProxy;
+    }
+
+    private HttpProxy createHttpProxy() {
+        if (session == null || session.getSettings() == null) {
+            return HttpProxy.NONE;
+        }
+        Proxy proxy = session.getSettings().getActiveProxy();
+        if (proxy != null && settingsDecrypter != null) {
+            final SettingsDecryptionResult result = settingsDecrypter.decrypt(new DefaultSettingsDecryptionRequest(proxy));
+            for (final SettingsProblem problem : result.getProblems()) {
+                LOG.warn("Proxy '{}': {}", proxy.getId(), problem.getMessage());
+            }
+            proxy = result.getProxy();
+        }
+        return HttpProxy.of(proxy);
+    }
+
+    private ResolutionCache getResolutionCache() {
+        if (resolutionCache == null) {
+            resolutionCache = ResolutionCache.get(session);
+        }
+        return resolutionCache;
+    }
+
     private void initDownloadOSQualifier() throws MojoExecutionException {
         if (downloadOsQualifier == null) {
             if (OS.isFamilyWindows()) {
@@ -175,24 +306,20 @@ public abstract class AbstractEventStoreMojo extends AbstractMojo {
 
         try {
             final URL versionURL = new URL(versionUrl);
-            final File jsonVersionFile = new File(canonicalFile(targetDir), "event-store-versions.json");
-            final Downloads downloads = new Downloads(versionURL, jsonVersionFile);
-            downloads.parse();
-
+            final CatalogCache catalogCache = new CatalogCache(new File(cacheDir, "catalogs"),
+                    TimeUnit.MINUTES.toMillis(versionTtl), TIMEOUT_30_SECONDS, getHttpProxy());
+            final File jsonVersionFile = catalogCache.fetch(versionURL, isOffline());
             final String os = getOS();
+            final DownloadFilter filter = new DownloadFilter(os, downloadOsQualifier, isIncludeRc());
 
-            final DownloadVersion version = downloads.findLatest(isIncludeRc());
-
-            final DownloadOSFamily family = version.findFamily(os);
-            if (family == null) {
-                throw new MojoExecutionException("Couldn't find OS family '" + os + "' in '" + downloads.getJsonDownloadsFile() + "'");
+            final DownloadVersion version = getResolutionCache().findLatest(versionURL, jsonVersionFile, filter);
+            if (version == null) {
+                throw new MojoExecutionException("Couldn't find a version with OS family '" + os + "' and download OS qualifier '"
+                        + downloadOsQualifier + "' in '" + jsonVersionFile + "'");
             }
 
+            final DownloadOSFamily family = version.findFamily(os);
             final DownloadOS download = family.findLatestDownload(downloadOsQualifier);
-            if (download == null) {
-                throw new MojoExecutionException("Couldn't find eyntr with download OS qualifier '" + downloadOsQualifier + "' (version='"
-                        + version + "', family='" + family + "') in '" + downloads.getJsonDownloadsFile() + "'");
-            }
 
             downloadUrl = download.getUrl();
 
@@ -260,6 +387,25 @@ public abstract class AbstractEventStoreMojo extends AbstractMojo {
         this.eventStoreDir = eventStoreDir;
     }
 
+    /**
+     * Returns the directory that caches the version file, downloaded archives and their extracted content.
+     * 
+     * @return Cache directory.
+     */
+    public final File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Sets the directory that caches the version file, downloaded archives and their extracted content.
+     * 
+     * @param cacheDir
+     *            Cache directory to set.
+     */
+    public final void setCacheDir(final File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
     /**
      * Returns the target build directory.
      * 
@@ -349,58 +495,183 @@ public abstract class AbstractEventStoreMojo extends AbstractMojo {
     }
 
     /**
-     * Writes the process ID of the event store to a file in the target directory.
+     * Sets a property of the current project, so following plugins (like failsafe) can use it.
      * 
-     * @param pid
-     *            PID to write.
+     * @param name
+     *            Name of the property.
+     * @param value
+     *            Value to set.
+     */
+    protected final void setProjectProperty(final String name, final String value) {
+        if (project != null) {
+            project.getProperties().setProperty(name, value);
+            LOG.info("{}={}", name, value);
+        }
+    }
+
+    /**
+     * Writes the state of an event store instance to a file in the target directory. The file name is derived from the name of the
+     * instance.
+     * 
+     * @param state
+     *            State to write.
      * 
      * @throws MojoExecutionException
-     *             Error writing the PID to file.
+     *             Error writing the state to file.
      */
-    protected final void writePid(final String pid) throws MojoExecutionException {
+    protected final void writeState(final InstanceState state) throws MojoExecutionException {
+        final File file = getStateFile(state.getName());
         try {
-            FileUtils.write(getPidFile(), pid);
+            state.save(file);
         } catch (final IOException ex) {
-            throw new MojoExecutionException("Couldn't write the PID '" + pid + "' to file: " + getPidFile(), ex);
+            throw new MojoExecutionException("Couldn't write the state '" + state + "' to file: " + file, ex);
         }
     }
 
     /**
-     * Reads the process ID of the event store from a file in the target directory.
+     * Reads the state of the event store instance from a file in the target directory.
      * 
-     * @return PID from file.
+     * @return State from file or {@code null} if the instance was not started.
      * 
      * @throws MojoExecutionException
-     *             Error reading the PID from file.
+     *             Error reading the state from file.
      */
-    protected final String readPid() throws MojoExecutionException {
+    protected final InstanceState readState() throws MojoExecutionException {
+        return readState(instanceName);
+    }
+
+    /**
+     * Reads the state of an event store instance from a file in the target directory.
+     * 
+     * @param name
+     *            Name of the instance.
+     * 
+     * @return State from file or {@code null} if the instance was not started.
+     * 
+     * @throws MojoExecutionException
+     *             Error reading the state from file.
+     */
+    protected final InstanceState readState(final String name) throws MojoExecutionException {
+        final File file = getStateFile(name);
         try {
-            return FileUtils.readFileToString(getPidFile());
+            return InstanceState.load(file);
         } catch (final IOException ex) {
-            throw new MojoExecutionException("Couldn't read the PID from file: " + getPidFile(), ex);
+            throw new MojoExecutionException("Couldn't read the state from file: " + file, ex);
         }
     }
 
     /**
-     * Deletes the process ID file in the target directory.
+     * Reads the states of all event store instances whose name matches a pattern.
+     * 
+     * @param namePattern
+     *            Pattern for the instance names.
+     * 
+     * @return States sorted by instance name.
+     * 
+     * @throws MojoExecutionException
+     *             Error reading a state from file.
+     */
+    protected final List<InstanceState> readStates(final Pattern namePattern) throws MojoExecutionException {
+        final List<InstanceState> states = new ArrayList<>();
+        final String[] names = getTargetDir().list();
+        if (names != null) {
+            Arrays.sort(names);
+            for (final String fileName : names) {
+                if (fileName.startsWith(STATE_FILE_PREFIX) && fileName.endsWith(STATE_FILE_SUFFIX)) {
+                    final String name = fileName.substring(STATE_FILE_PREFIX.length(),
+                            fileName.length() - STATE_FILE_SUFFIX.length());
+                    if (namePattern.matcher(name).matches()) {
+                        states.add(readState(name));
+                    }
+                }
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Deletes the state file of the event store instance in the target directory.
+     * 
+     * @throws MojoExecutionException
+     *             Error deleting the state file.
+     */
+    protected final void deleteState() throws MojoExecutionException {
+        deleteState(instanceName);
+    }
+
+    /**
+     * Deletes the state file of an event store instance in the target directory.
+     * 
+     * @param name
+     *            Name of the instance.
      * 
      * @throws MojoExecutionException
-     *             Error deleting the PID file.
+     *             Error deleting the state file.
      */
-    protected final void deletePid() throws MojoExecutionException {
-        final boolean ok = getPidFile().delete();
+    protected final void deleteState(final String name) throws MojoExecutionException {
+        final File file = getStateFile(name);
+        final boolean ok = file.delete();
         if (!ok) {
-            throw new MojoExecutionException("Couldn't delete the PID file: " + getPidFile());
+            throw new MojoExecutionException("Couldn't delete the state file: " + file);
         }
     }
 
     /**
-     * Returns the PID file.
+     * Returns the state file of the event store instance.
+     * 
+     * @return State file.
+     */
+    protected final File getStateFile() {
+        return getStateFile(instanceName);
+    }
+
+    /**
+     * Returns the state file of an event store instance.
+     * 
+     * @param name
+     *            Name of the instance.
+     * 
+     * @return State file.
+     */
+    protected final File getStateFile(final String name) {
+        return new File(getTargetDir(), STATE_FILE_PREFIX + name + STATE_FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the current session.
+     * 
+     * @return Session or {@code null} if the mojo doesn't run inside Maven.
+     */
+    protected final MavenSession getSession() {
+        return session;
+    }
+
+    /**
+     * Returns the current project.
+     * 
+     * @return Project or {@code null} if the mojo doesn't run inside a project.
+     */
+    protected final MavenProject getProject() {
+        return project;
+    }
+
+    /**
+     * Returns the name of the event store instance.
+     * 
+     * @return Instance name.
+     */
+    public final String getInstanceName() {
+        return instanceName;
+    }
+
+    /**
+     * Sets the name of the event store instance.
      * 
-     * @return Process ID file.
+     * @param instanceName
+     *            Instance name to set.
      */
-    protected final File getPidFile() {
-        return new File(getTargetDir(), PID_FILE_NAME);
+    public final void setInstanceName(final String instanceName) {
+        this.instanceName = instanceName;
     }
 
     /**
@@ -0,0 +1,494 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecuteResultHandler;
+import org.apache.commons.exec.ExecuteException;
+import org.apache.commons.exec.OS;
+import org.apache.commons.exec.PumpStreamHandler;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class for goals that launch event store processes.
+ */
+public abstract class AbstractEventStoreStartMojo extends AbstractEventStoreMojo {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(AbstractEventStoreStartMojo.class);
+
+    /** Argument with the external IP address. */
+    protected static final String EXT_IP = "--ext-ip";
+
+    /** Argument with the external TCP port. */
+    protected static final String EXT_TCP_PORT = "--ext-tcp-port";
+
+    /** Argument with the external HTTP port. */
+    protected static final String EXT_HTTP_PORT = "--ext-http-port";
+
+    /** Argument with the external secure TCP port. */
+    protected static final String EXT_SECURE_TCP_PORT = "--ext-secure-tcp-port";
+
+    /** Argument with the database directory. */
+    protected static final String DB = "--db";
+
+    /**
+     * Name of the executable or shell script to start the event store. Defaults
+     * to the OS specific name for Windows, Linux and Mac OS families. Other OS
+     * families will cause an error if this value is not set.
+     * 
+     */
+    @Parameter(name = "command")
+    private String command;
+
+    /**
+     * Number of times to wait for the server until it's up and running. After
+     * this time passed, the build will fail. This means the mojo will wait
+     * at most <code>maxWaitCycles</code> * <code>sleepMs</code> milliseconds
+     * for the server to finish it's startup process. The mojo returns as soon
+     * as the up message appears. Defaults to 20 times.
+     * 
+     */
+    @Parameter(name = "max-wait-cycles", defaultValue = "20")
+    private int maxWaitCycles = 20;
+
+    /**
+     * Number of milliseconds per wait cycle. This means the mojo will wait at
+     * most <code>maxWaitCycles</code> * <code>sleepMs</code> milliseconds for
+     * the server to finish it's startup process. Defaults to 500 ms.
+     * 
+     */
+    @Parameter(name = "sleep-ms", defaultValue = "500")
+    private int sleepMs = 500;
+
+    /**
+     * Message from the event store log to wait for.
+     * 
+     */
+    @Parameter(name = "up-message", defaultValue = "'admin' user account has been created")
+    private String upMessage = "'admin' user account has been created";
+
+    /**
+     * Path requested from the external HTTP port if the HTTP probe is used.
+     * Defaults to <code>/ping</code>.
+     * 
+     */
+    @Parameter(name = "readiness-http-path", defaultValue = "/ping")
+    private String readinessHttpPath = "/ping";
+
+    /**
+     * Connect (and read) timeout in milliseconds for a single TCP or HTTP
+     * probe. Defaults to 250 ms.
+     * 
+     */
+    @Parameter(name = "probe-timeout-ms", defaultValue = "250")
+    private int probeTimeoutMs = 250;
+
+    /**
+     * Maximum number of output lines of the event store that are kept in
+     * memory. They are logged if the startup fails. Defaults to 1000 lines.
+     * 
+     */
+    @Parameter(name = "output-max-lines", defaultValue = "1000")
+    private int outputMaxLines = UpMessageDetector.DEFAULT_MAX_LINES;
+
+    /**
+     * Maximum size of the output lines of the event store that are kept in
+     * memory (KB). Defaults to 256 KB.
+     * 
+     */
+    @Parameter(name = "output-max-kb", defaultValue = "256")
+    private int outputMaxKb = UpMessageDetector.DEFAULT_MAX_CHARS / 1024;
+
+    /**
+     * Size at which the log file is rotated (KB). Defaults to 10240 KB.
+     * 
+     */
+    @Parameter(name = "log-file-max-kb", defaultValue = "10240")
+    private int logFileMaxKb = 10240;
+
+    /**
+     * Number of rotated log files to keep. Defaults to 5.
+     * 
+     */
+    @Parameter(name = "log-file-backups", defaultValue = "5")
+    private int logFileBackups = 5;
+
+    /**
+     * Supplies the OS dependent default command.
+     * 
+     * @throws MojoExecutionException
+     *             Unknown OS and no command set.
+     */
+    protected final void initCommand() throws MojoExecutionException {
+        if (OS.isFamilyWindows()) {
+            if (command == null) {
+                // For some strange reasons this does not work without the
+                // path...
+                command = getEventStoreDir() + File.separator
+                        + "EventStore.ClusterNode.exe";
+            }
+        } else if (OS.isFamilyUnix()) {
+            if (command == null) {
+                command = "./run-node.sh";
+            }
+        } else if (OS.isFamilyMac()) {
+            if (command == null) {
+                command = "./run-node.sh";
+            }
+        } else {
+            if (command == null) {
+                throw new MojoExecutionException(
+                        "Unknown OS - You must use the 'command' parameter");
+            }
+        }
+    }
+
+    /**
+     * Launches an event store process and waits until it's ready. The state is
+     * written as soon as the process ID is known and again when the server is
+     * ready. This method may be called by several threads at the same time for
+     * different instances.
+     * 
+     * @param state
+     *            Name, host, ports and data directory of the instance.
+     * @param arguments
+     *            Command line arguments.
+     * @param logFile
+     *            File that receives the complete output.
+     * @param readinessMode
+     *            How to detect that the server is ready.
+     * 
+     * @return State of the ready instance.
+     * 
+     * @throws MojoExecutionException
+     *             Error launching the process or the server didn't get
+     *             ready in time.
+     */
+    protected final InstanceState launch(final InstanceState state,
+            final String[] arguments, final File logFile,
+            final ReadinessMode readinessMode) throws MojoExecutionException {
+
+        LOG.info("Starting '{}' with arguments={}", state.getName(),
+                Arrays.toString(arguments));
+
+        final CommandLine cmdLine = new CommandLine(command);
+        for (final String argument : arguments) {
+            cmdLine.addArgument(argument);
+        }
+        final RotatingLogFile rotatingLogFile = new RotatingLogFile(logFile, logFileMaxKb * 1024L, logFileBackups);
+        final UpMessageDetector detector = new UpMessageDetector(upMessage, outputMaxLines, outputMaxKb * 1024,
+                rotatingLogFile);
+        final DefaultExecuteResultHandler resultHandler = new DefaultExecuteResultHandler() {
+            @Override
+            public void onProcessComplete(final int exitValue) {
+                super.onProcessComplete(exitValue);
+                detector.processEnded();
+            }
+
+            @Override
+            public void onProcessFailed(final ExecuteException ex) {
+                super.onProcessFailed(ex);
+                detector.processEnded();
+            }
+        };
+        final ProcessExecutor executor = new ProcessExecutor();
+        try {
+            final PumpStreamHandler psh = new PumpStreamHandler(
+                    detector.createLineStream(), detector.createLineStream());
+            executor.setStreamHandler(psh);
+            executor.setWorkingDirectory(getEventStoreDir());
+            final long started = System.currentTimeMillis();
+            executor.execute(cmdLine, resultHandler);
+            final Long pid = waitForProcess(executor, cmdLine);
+            final InstanceState launched = state.launched(pid, started);
+            if (pid != null) {
+                // Recorded before waiting, so a server that never gets ready can still be stopped
+                LOG.info("Event store process ID of '{}': {}", state.getName(), pid);
+                writeState(launched);
+            }
+            final String readyBy = waitForServer(launched, readinessMode,
+                    resultHandler, detector, logFile);
+            final long readyTime = System.currentTimeMillis();
+            LOG.info("Event store '" + state.getName()
+                    + "' ready after {} ms (detected by '{}')",
+                    readyTime - started, readyBy);
+            logDebug(detector.getLines());
+            final InstanceState ready;
+            if (pid == null) {
+                final Long logPid = extractPid(detector.getFirstLine());
+                LOG.info("Event store process ID of '{}' (from log): {}",
+                        state.getName(), logPid);
+                ready = launched.ready(logPid, readyTime);
+            } else {
+                ready = launched.ready(pid, readyTime);
+            }
+            writeState(ready);
+            return ready;
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                    "Error executing the command line: " + cmdLine, ex);
+        }
+    }
+
+    private Long waitForProcess(final ProcessExecutor executor,
+            final CommandLine cmdLine) throws MojoExecutionException {
+        try {
+            final Process process = executor.getProcess()
+                    .get(getMaxWaitMs(), TimeUnit.MILLISECONDS);
+            return ProcessExecutor.pid(process);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException(
+                    "Interrupted while launching the server", ex);
+        } catch (final ExecutionException ex) {
+            throw new MojoExecutionException(
+                    "Error executing the command line: " + cmdLine, ex.getCause());
+        } catch (final TimeoutException ex) {
+            throw new MojoExecutionException(
+                    "Waited too long for the server process to launch: " + cmdLine);
+        }
+    }
+
+    private String waitForServer(final InstanceState state,
+            final ReadinessMode readinessMode,
+            final DefaultExecuteResultHandler resultHandler,
+            final UpMessageDetector detector, final File logFile)
+            throws MojoExecutionException {
+
+        final CompletableFuture<String> ready = new CompletableFuture<>();
+        detector.getUp().whenComplete((line, ex) -> {
+            if (ex != null) {
+                ready.completeExceptionally(ex);
+            } else if (readinessMode.isLog()) {
+                ready.complete("log");
+            }
+        });
+        if (readinessMode.isTcp()) {
+            new TcpReadinessProbe(state.getHost(), state.getTcpPort(), probeTimeoutMs).start(ready, sleepMs);
+        }
+        if (readinessMode.isHttp()) {
+            new HttpReadinessProbe(createURL(state, readinessHttpPath), probeTimeoutMs).start(ready, sleepMs);
+        }
+
+        try {
+            return ready.get(getMaxWaitMs(), TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException(
+                    "Interrupted while waiting for the server to start", ex);
+        } catch (final ExecutionException ex) {
+            // Process ended
+            logOutput(detector, logFile);
+            throw new MojoExecutionException(
+                    "Error starting the server '" + state.getName()
+                            + "'. Exit code=" + resultHandler.getExitValue(),
+                    resultHandler.getException());
+        } catch (final TimeoutException ex) {
+            logOutput(detector, logFile);
+            throw new MojoExecutionException(
+                    "Waited too long for the server '" + state.getName()
+                            + "' to start!");
+        } finally {
+            // Stops all probes that are still running
+            ready.cancel(false);
+        }
+
+    }
+
+    private void logOutput(final UpMessageDetector detector, final File logFile) {
+        if (detector.getDropped() > 0) {
+            LOG.error("{} earlier lines are only available in: {}",
+                    detector.getDropped(), logFile);
+        }
+        logError(detector.getLines());
+    }
+
+    /**
+     * Creates an URL for the external HTTP port of an instance.
+     * 
+     * @param state
+     *            Instance to request.
+     * @param path
+     *            Path starting with a slash.
+     * 
+     * @return URL like "http://127.0.0.1:2113/ping".
+     * 
+     * @throws MojoExecutionException
+     *             The URL is invalid.
+     */
+    protected static URL createURL(final InstanceState state, final String path) throws MojoExecutionException {
+        final String url = "http://" + state.getHost() + ":" + state.getHttpPort() + path;
+        try {
+            return new URL(url);
+        } catch (final MalformedURLException ex) {
+            throw new MojoExecutionException("Failed to construct URL: " + url, ex);
+        }
+    }
+
+    /**
+     * Fails if the event store instance with the given name is still running.
+     * The state of a terminated instance is replaced later.
+     * 
+     * @param name
+     *            Name of the instance.
+     * 
+     * @throws MojoExecutionException
+     *             The instance is running or the process couldn't be checked.
+     */
+    protected final void checkNotRunning(final String name) throws MojoExecutionException {
+        final InstanceState state = readState(name);
+        if (state == null || state.getPid() == null) {
+            return;
+        }
+        try {
+            final ProcessControl.Identity identity = new ProcessControl(null)
+                    .identify(state.getPid(), state.getStartTime());
+            if (identity == ProcessControl.Identity.SAME) {
+                throw new MojoExecutionException("Event store instance '"
+                        + name + "' is already running (PID "
+                        + state.getPid()
+                        + ") - Use another 'instance-name' or stop it first");
+            }
+            if (identity == ProcessControl.Identity.UNKNOWN) {
+                // Can't tell a reused process ID from the running instance
+                throw new MojoExecutionException("Event store instance '"
+                        + name + "' might still be running (PID "
+                        + state.getPid() + ", start time unknown)"
+                        + " - Use another 'instance-name' or stop it first");
+            }
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                    "Couldn't check the process: " + state.getPid(), ex);
+        }
+        LOG.info("Replacing the state of the terminated instance: {}", state);
+    }
+
+    // Only used if the ID cannot be obtained from the process itself
+    private Long extractPid(final String first)
+            throws MojoExecutionException {
+        if (first == null) {
+            throw new MojoExecutionException(
+                    "Starting the event store didn't return any messages");
+        }
+        // Prefix looks like this: [19648,10,12:47:52.297]
+        final int p0 = first.indexOf('[');
+        if (p0 == -1) {
+            throw new MojoExecutionException(
+                    "Couldn't locate the starting bracket '[': " + first);
+        }
+        final int p1 = first.indexOf(',', p0 + 1);
+        if (p1 == -1) {
+            throw new MojoExecutionException(
+                    "Couldn't locate the ending comma ',': " + first);
+        }
+        try {
+            return Long.valueOf(first.substring(p0 + 1, p1).trim());
+        } catch (final NumberFormatException ex) {
+            throw new MojoExecutionException(
+                    "Couldn't parse the process ID: " + first, ex);
+        }
+    }
+
+    /**
+     * Returns the value of a command line argument like
+     * <code>--ext-tcp-port=1113</code>.
+     * 
+     * @param arguments
+     *            Arguments to search or {@code null}.
+     * @param name
+     *            Name of the argument including the dashes.
+     * @param defaultValue
+     *            Value to return if the argument is not set.
+     * 
+     * @return Argument value.
+     */
+    protected static String argumentValue(final String[] arguments,
+            final String name, final String defaultValue) {
+        if (arguments != null) {
+            final String prefix = name + "=";
+            for (final String argument : arguments) {
+                if (argument.startsWith(prefix)) {
+                    return argument.substring(prefix.length());
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the maximum time to wait for a server to start.
+     * 
+     * @return <code>maxWaitCycles</code> * <code>sleepMs</code> milliseconds.
+     */
+    protected final long getMaxWaitMs() {
+        return (long) maxWaitCycles * sleepMs;
+    }
+
+    /**
+     * Returns the number of milliseconds per wait cycle.
+     * 
+     * @return Maximum pause between two probes.
+     */
+    protected final int getSleepMs() {
+        return sleepMs;
+    }
+
+    /**
+     * Returns the timeout for a single probe.
+     * 
+     * @return Connect (and read) timeout in milliseconds.
+     */
+    protected final int getProbeTimeoutMs() {
+        return probeTimeoutMs;
+    }
+
+    /**
+     * Returns the name of the executable or shell script to start the event
+     * store.
+     * 
+     * @return Executable name.
+     */
+    public final String getCommand() {
+        return command;
+    }
+
+    /**
+     * Sets the name of the executable or shell script to start the event store.
+     * 
+     * @param command
+     *            Executable name to set.
+     */
+    public final void setCommand(final String command) {
+        this.command = command;
+    }
+
+}
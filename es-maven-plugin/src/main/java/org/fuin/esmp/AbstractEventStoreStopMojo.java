@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.IOException;
+
+import org.apache.commons.exec.OS;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Base class for goals that stop event store processes. A graceful shutdown is
+ * requested via HTTP first. If the process doesn't exit in time, it is asked to
+ * terminate (SIGTERM) and finally killed (SIGKILL) together with all its
+ * descendants.
+ */
+public abstract class AbstractEventStoreStopMojo extends AbstractEventStoreMojo {
+
+    /**
+     * Name of the executable to terminate the event store. Only used if the
+     * Java runtime has no <code>ProcessHandle</code> (Java 8). Defaults to the
+     * OS specific name for Windows, Linux and Mac OS families. Other OS
+     * families will cause an error if this value is not set.
+     * 
+     */
+    @Parameter(name = "command")
+    private String command;
+
+    /**
+     * Determines if a graceful shutdown is requested with a HTTP
+     * <code>POST /admin/shutdown</code> before the process is terminated.
+     * Defaults to <code>true</code>.
+     * 
+     */
+    @Parameter(name = "graceful", defaultValue = "true")
+    private boolean graceful = true;
+
+    /**
+     * User for the graceful shutdown request. Defaults to <code>admin</code>.
+     * 
+     */
+    @Parameter(name = "admin-user", defaultValue = "admin")
+    private String adminUser = "admin";
+
+    /**
+     * Password for the graceful shutdown request. Defaults to
+     * <code>changeit</code>.
+     * 
+     */
+    @Parameter(name = "admin-password", defaultValue = "changeit")
+    private String adminPassword = "changeit";
+
+    /**
+     * Milliseconds to wait for the process to exit after the graceful shutdown
+     * request. Defaults to 10000 ms.
+     * 
+     */
+    @Parameter(name = "shutdown-timeout-ms", defaultValue = "10000")
+    private int shutdownTimeoutMs = 10000;
+
+    /**
+     * Milliseconds to wait for the process to exit after SIGTERM and again
+     * after SIGKILL. Defaults to 5000 ms.
+     * 
+     */
+    @Parameter(name = "terminate-timeout-ms", defaultValue = "5000")
+    private int terminateTimeoutMs = 5000;
+
+    /**
+     * Milliseconds to wait for the TCP and HTTP ports to become free after the
+     * process exited. Defaults to 10000 ms.
+     * 
+     */
+    @Parameter(name = "port-timeout-ms", defaultValue = "10000")
+    private int portTimeoutMs = 10000;
+
+    /**
+     * Stops an event store instance and waits until its TCP and HTTP ports are
+     * free. This method may be called by several threads at the same time for
+     * different instances. The state file is not deleted.
+     * 
+     * @param state
+     *            Instance to stop.
+     * 
+     * @return How the instance was stopped like "graceful" or "SIGKILL".
+     * 
+     * @throws MojoExecutionException
+     *             Error stopping the process or the process is still running.
+     */
+    protected final String stopInstance(final InstanceState state)
+            throws MojoExecutionException {
+        try {
+            return createStopper().stop(state);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                    "Error stopping the event store: " + state, ex);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException(
+                    "Interrupted while stopping the event store: " + state, ex);
+        }
+    }
+
+    /**
+     * Creates a stopper with the configuration of this goal.
+     * 
+     * @return New stopper.
+     */
+    protected final InstanceStopper createStopper() {
+        return new InstanceStopper(command, graceful, adminUser,
+                adminPassword, shutdownTimeoutMs, terminateTimeoutMs,
+                portTimeoutMs);
+    }
+
+    /**
+     * Supplies the OS dependent default command.
+     * 
+     * @throws MojoExecutionException
+     *             Unknown OS and no command set.
+     */
+    protected final void initCommand() throws MojoExecutionException {
+
+        // Supply variables that are OS dependent
+        if (OS.isFamilyWindows()) {
+            if (command == null) {
+                command = "taskkill";
+            }
+        } else if (OS.isFamilyUnix() || OS.isFamilyMac()) {
+            if (command == null) {
+                command = "kill";
+            }
+        } else {
+            if (command == null) {
+                throw new MojoExecutionException(
+                        "Unknown OS - You must use the 'command' parameter");
+            }
+        }
+
+    }
+
+    /**
+     * Returns the name of the executable to terminate the event
+     * store.
+     * 
+     * @return Executable name.
+     */
+    public final String getCommand() {
+        return command;
+    }
+
+    /**
+     * Sets the name of the executable to terminate the event store.
+     * 
+     * @param command
+     *            Executable name to set.
+     */
+    public final void setCommand(final String command) {
+        this.command = command;
+    }
+
+    /**
+     * Determines if a graceful shutdown is requested via HTTP.
+     * 
+     * @return {@code true} to send a shutdown request first.
+     */
+    public final boolean isGraceful() {
+        return graceful;
+    }
+
+    /**
+     * Sets if a graceful shutdown is requested via HTTP.
+     * 
+     * @param graceful
+     *            {@code true} to send a shutdown request first.
+     */
+    public final void setGraceful(final boolean graceful) {
+        this.graceful = graceful;
+    }
+
+    /**
+     * Returns the user for the graceful shutdown request.
+     * 
+     * @return User name.
+     */
+    public final String getAdminUser() {
+        return adminUser;
+    }
+
+    /**
+     * Sets the user for the graceful shutdown request.
+     * 
+     * @param adminUser
+     *            User name.
+     */
+    public final void setAdminUser(final String adminUser) {
+        this.adminUser = adminUser;
+    }
+
+    /**
+     * Returns the password for the graceful shutdown request.
+     * 
+     * @return Password.
+     */
+    public final String getAdminPassword() {
+        return adminPassword;
+    }
+
+    /**
+     * Sets the password for the graceful shutdown request.
+     * 
+     * @param adminPassword
+     *            Password.
+     */
+    public final void setAdminPassword(final String adminPassword) {
+        this.adminPassword = adminPassword;
+    }
+
+    /**
+     * Returns the time to wait for the process to exit after the shutdown request.
+     * 
+     * @return Milliseconds.
+     */
+    public final int getShutdownTimeoutMs() {
+        return shutdownTimeoutMs;
+    }
+
+    /**
+     * Sets the time to wait for the process to exit after the shutdown request.
+     * 
+     * @param shutdownTimeoutMs
+     *            Milliseconds.
+     */
+    public final void setShutdownTimeoutMs(final int shutdownTimeoutMs) {
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+    }
+
+    /**
+     * Returns the time to wait for the process to exit after SIGTERM and SIGKILL.
+     * 
+     * @return Milliseconds.
+     */
+    public final int getTerminateTimeoutMs() {
+        return terminateTimeoutMs;
+    }
+
+    /**
+     * Sets the time to wait for the process to exit after SIGTERM and SIGKILL.
+     * 
+     * @param terminateTimeoutMs
+     *            Milliseconds.
+     */
+    public final void setTerminateTimeoutMs(final int terminateTimeoutMs) {
+        this.terminateTimeoutMs = terminateTimeoutMs;
+    }
+
+    /**
+     * Returns the time to wait for the ports to become free.
+     * 
+     * @return Milliseconds.
+     */
+    public final int getPortTimeoutMs() {
+        return portTimeoutMs;
+    }
+
+    /**
+     * Sets the time to wait for the ports to become free.
+     * 
+     * @param portTimeoutMs
+     *            Milliseconds.
+     */
+    public final void setPortTimeoutMs(final int portTimeoutMs) {
+        this.portTimeoutMs = portTimeoutMs;
+    }
+
+}
@@ -0,0 +1,512 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content addressed cache for downloaded archives and their extracted installations. Archives are stored by the SHA-256 of their URL,
+ * installations by the SHA-256 of the archive content. The cache can be shared by all builds of a user.
+ *
+ * <pre>
+ * cache-dir
+ * +-- archives/&lt;sha256(url)&gt;/&lt;archive&gt;           Downloaded archive
+ * +-- archives/&lt;sha256(url)&gt;/&lt;archive&gt;.sha256    SHA-256 and size of the archive
+ * +-- installs/&lt;sha256(archive)&gt;/                Extracted archive
+ * +-- installs/&lt;sha256(archive)&gt;.manifest        Files of the extracted archive, see {@link InstallManifest}
+ * \-- installs/&lt;sha256(archive)&gt;.complete        Marker for a fully extracted archive
+ * </pre>
+ */
+public final class ArchiveCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ArchiveCache.class);
+
+    private static final int BUF_SIZE = 64 * 1024;
+
+    /** Locks inside this JVM - File locks are held by the whole JVM and cannot be used between threads. */
+    private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final File cacheDir;
+
+    /**
+     * Constructor with cache directory.
+     *
+     * @param cacheDir
+     *            Base directory of the cache.
+     */
+    public ArchiveCache(final File cacheDir) {
+        super();
+        if (cacheDir == null) {
+            throw new IllegalArgumentException("cacheDir == null");
+        }
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * Returns the base directory of the cache.
+     *
+     * @return Cache directory.
+     */
+    public final File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Returns the location of the archive for an URL. The file does not necessarily exist.
+     *
+     * @param url
+     *            Download URL.
+     *
+     * @return Archive file in the cache.
+     */
+    public final File getArchive(final String url) {
+        final File dir = new File(new File(cacheDir, "archives"), sha256(url));
+        return new File(dir, FilenameUtils.getName(url));
+    }
+
+    /**
+     * Returns the SHA-256 of an archive in the cache. The hash is calculated once and stored next to the archive.
+     *
+     * @param archive
+     *            Archive file in the cache.
+     *
+     * @return Hex encoded SHA-256 of the archive content.
+     *
+     * @throws IOException
+     *             Error reading the archive.
+     */
+    public final String getArchiveSha256(final File archive) throws IOException {
+        final String[] parts = readShaFile(archive);
+        if (parts != null && Long.parseLong(parts[1]) == archive.length()) {
+            return parts[0];
+        }
+        final String sha256 = sha256(archive);
+        writeShaFile(archive, sha256, archive.length());
+        return sha256;
+    }
+
+    /**
+     * Stores the SHA-256 of an archive that was hashed while it was loaded. This also works if the archive itself was not kept in
+     * the cache.
+     *
+     * @param url
+     *            Download URL.
+     * @param archiveSha256
+     *            SHA-256 of the archive.
+     * @param size
+     *            Size of the archive in bytes.
+     *
+     * @throws IOException
+     *             Error writing the file.
+     */
+    public final void setArchiveSha256(final String url, final String archiveSha256, final long size) throws IOException {
+        final File archive = getArchive(url);
+        Files.createDirectories(archive.getParentFile().toPath());
+        writeShaFile(archive, archiveSha256, size);
+    }
+
+    /**
+     * Returns the SHA-256 of the archive for an URL if the archive is already completely extracted. The archive itself is not
+     * required for this.
+     *
+     * @param url
+     *            Download URL.
+     *
+     * @return Hex encoded SHA-256 of the archive content or {@code null} if there is no installation for the URL.
+     *
+     * @throws IOException
+     *             Error reading the hash file.
+     */
+    public final String findInstalledSha256(final String url) throws IOException {
+        final String[] parts = readShaFile(getArchive(url));
+        if (parts != null && isInstalled(parts[0])) {
+            return parts[0];
+        }
+        return null;
+    }
+
+    private String[] readShaFile(final File archive) throws IOException {
+        final File shaFile = new File(archive.getParentFile(), archive.getName() + ".sha256");
+        if (!shaFile.exists()) {
+            return null;
+        }
+        final String[] parts = FileUtils.readFileToString(shaFile, StandardCharsets.US_ASCII).trim().split(" ");
+        if (parts.length != 2) {
+            return null;
+        }
+        return parts;
+    }
+
+    private void writeShaFile(final File archive, final String archiveSha256, final long size) throws IOException {
+        final File shaFile = new File(archive.getParentFile(), archive.getName() + ".sha256");
+        FileUtils.write(shaFile, archiveSha256 + " " + size, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the installation directory for an archive. The directory only exists if {@link #isInstalled(String)} returns
+     * {@code true}.
+     *
+     * @param archiveSha256
+     *            SHA-256 of the archive.
+     *
+     * @return Directory with the extracted archive.
+     */
+    public final File getInstallDir(final String archiveSha256) {
+        return new File(new File(cacheDir, "installs"), archiveSha256);
+    }
+
+    /**
+     * Determines if an archive is completely extracted.
+     *
+     * @param archiveSha256
+     *            SHA-256 of the archive.
+     *
+     * @return {@code true} if the installation directory can be used.
+     */
+    public final boolean isInstalled(final String archiveSha256) {
+        return getCompleteMarker(archiveSha256).exists() && getInstallDir(archiveSha256).isDirectory();
+    }
+
+    /**
+     * Creates a new empty directory to extract an archive to. It has to be passed to {@link #commitInstall(File, String)} when the
+     * extraction is finished.
+     *
+     * @param archiveSha256
+     *            SHA-256 of the archive.
+     *
+     * @return Temporary directory on the same file system as the installation directory.
+     *
+     * @throws IOException
+     *             Error creating the directory.
+     */
+    public final File createStagingDir(final String archiveSha256) throws IOException {
+        final File dir = new File(new File(cacheDir, "installs"), archiveSha256 + ".tmp-" + UUID.randomUUID());
+        Files.createDirectories(dir.toPath());
+        return dir;
+    }
+
+    /**
+     * Moves a completely extracted staging directory to the installation directory and marks it as complete.
+     *
+     * @param stagingDir
+     *            Directory created with {@link #createStagingDir(String)}.
+     * @param archiveSha256
+     *            SHA-256 of the archive.
+     *
+     * @throws IOException
+     *             Error moving the directory.
+     */
+    public final void commitInstall(final File stagingDir, final String archiveSha256) throws IOException {
+        final File installDir = getInstallDir(archiveSha256);
+        if (installDir.exists()) {
+            // Left over from an incomplete run
+            FileUtils.deleteDirectory(installDir);
+        }
+        try {
+            Files.move(stagingDir.toPath(), installDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(stagingDir.toPath(), installDir.toPath());
+        }
+        InstallManifest.create(archiveSha256, installDir).save(getManifestFile(archiveSha256));
+        Files.write(getCompleteMarker(archiveSha256).toPath(), new byte[0]);
+    }
+
+    /**
+     * Returns the manifest of a complete installation. The manifest is created if it does not exist yet.
+     *
+     * @param archiveSha256
+     *            SHA-256 of the archive.
+     *
+     * @return Manifest with all files of the installation directory.
+     *
+     * @throws IOException
+     *             Error reading or creating the manifest.
+     */
+    public final InstallManifest getManifest(final String archiveSha256) throws IOException {
+        final File file = getManifestFile(archiveSha256);
+        InstallManifest manifest = InstallManifest.load(file);
+        if (manifest == null) {
+            manifest = InstallManifest.create(archiveSha256, getInstallDir(archiveSha256));
+            manifest.save(file);
+        }
+        return manifest;
+    }
+
+    /**
+     * Removes an installation from the cache, for example because the content of a file was changed.
+     *
+     * @param archiveSha256
+     *            SHA-256 of the archive.
+     *
+     * @throws IOException
+     *             Error deleting the files.
+     */
+    public final void invalidate(final String archiveSha256) throws IOException {
+        Files.deleteIfExists(getCompleteMarker(archiveSha256).toPath());
+        Files.deleteIfExists(getManifestFile(archiveSha256).toPath());
+        final File installDir = getInstallDir(archiveSha256);
+        if (installDir.exists()) {
+            FileUtils.deleteDirectory(installDir);
+        }
+    }
+
+    private File getManifestFile(final String archiveSha256) {
+        return new File(new File(cacheDir, "installs"), archiveSha256 + ".manifest");
+    }
+
+    private File getCompleteMarker(final String archiveSha256) {
+        return new File(new File(cacheDir, "installs"), archiveSha256 + ".complete");
+    }
+
+    /**
+     * Acquires an exclusive lock for a key. The lock works between threads and between processes and must be released by the
+     * caller.
+     *
+     * @param key
+     *            Key to lock like the URL of an archive.
+     *
+     * @return Lock to release.
+     *
+     * @throws IOException
+     *             Error creating the lock file.
+     */
+    public final CacheLock lock(final String key) throws IOException {
+        final String hash = sha256(key);
+        final ReentrantLock lock = LOCKS.computeIfAbsent(hash, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            final File lockFile = new File(new File(cacheDir, "locks"), hash + ".lock");
+            Files.createDirectories(lockFile.getParentFile().toPath());
+            final RandomAccessFile raf = new RandomAccessFile(lockFile, "rw");
+            try {
+                return new CacheLock(lock, raf, raf.getChannel().lock());
+            } catch (final IOException | RuntimeException ex) {
+                raf.close();
+                throw ex;
+            }
+        } catch (final IOException | RuntimeException ex) {
+            lock.unlock();
+            throw ex;
+        }
+    }
+
+    /**
+     * Places all files of a source directory into a target directory. Directories are created, files are linked or copied depending
+     * on the mode. If linking is not possible, the method falls back to copying.
+     *
+     * @param srcDir
+     *            Directory with the files to place.
+     * @param destDir
+     *            Target directory.
+     * @param mode
+     *            Determines how files are placed.
+     *
+     * @throws IOException
+     *             Error creating the directories, links or copies.
+     */
+    public static void install(final File srcDir, final File destDir, final InstallMode mode) throws IOException {
+        final Path src = srcDir.toPath();
+        final Path dest = destDir.toPath();
+        Files.createDirectories(dest);
+        Files.walkFileTree(src, new SimpleFileVisitor<Path>() {
+
+            private InstallMode current = mode;
+
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                final Path target = dest.resolve(src.relativize(dir).toString());
+                Files.createDirectories(target);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                current = installFile(file, dest.resolve(src.relativize(file).toString()), current);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException ex) throws IOException {
+                if (ex != null) {
+                    throw ex;
+                }
+                final PosixFileAttributeView view = Files.getFileAttributeView(dir, PosixFileAttributeView.class);
+                if (view != null && !dir.equals(src)) {
+                    final Path target = dest.resolve(src.relativize(dir).toString());
+                    Files.setPosixFilePermissions(target, view.readAttributes().permissions());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+        });
+    }
+
+    /**
+     * Places a single file. An existing target file is replaced. If linking is not possible, the method falls back to copying.
+     *
+     * @param file
+     *            File to place.
+     * @param target
+     *            Location of the link or copy. The parent directory must exist.
+     * @param mode
+     *            Determines how the file is placed.
+     *
+     * @return Mode that was actually used and should be used for further files.
+     *
+     * @throws IOException
+     *             Error creating the link or copy.
+     */
+    public static InstallMode installFile(final Path file, final Path target, final InstallMode mode) throws IOException {
+        Files.deleteIfExists(target);
+        if (mode == InstallMode.HARDLINK || mode == InstallMode.SYMLINK) {
+            try {
+                if (mode == InstallMode.HARDLINK) {
+                    Files.createLink(target, file);
+                } else {
+                    Files.createSymbolicLink(target, file);
+                }
+                return mode;
+            } catch (final UnsupportedOperationException | FileSystemException ex) {
+                LOG.info("Cannot create {} links ({}) - Falling back to copy", mode, ex.getMessage());
+            }
+        }
+        Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+        return InstallMode.COPY;
+    }
+
+    /**
+     * Calculates the SHA-256 of a string.
+     *
+     * @param str
+     *            String to hash.
+     *
+     * @return Hex encoded hash.
+     */
+    public static String sha256(final String str) {
+        final MessageDigest md = createSha256();
+        return toHex(md.digest(str.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Calculates the SHA-256 of a file.
+     *
+     * @param file
+     *            File to hash.
+     *
+     * @return Hex encoded hash.
+     *
+     * @throws IOException
+     *             Error reading the file.
+     */
+    public static String sha256(final File file) throws IOException {
+        final MessageDigest md = createSha256();
+        final InputStream in = Files.newInputStream(file.toPath());
+        try {
+            final byte[] buf = new byte[BUF_SIZE];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                md.update(buf, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+        return toHex(md.digest());
+    }
+
+    static MessageDigest createSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    static String toHex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Exclusive lock on a cache key.
+     */
+    public static final class CacheLock {
+
+        private final ReentrantLock lock;
+
+        private final RandomAccessFile raf;
+
+        private final FileLock fileLock;
+
+        private CacheLock(final ReentrantLock lock, final RandomAccessFile raf, final FileLock fileLock) {
+            super();
+            this.lock = lock;
+            this.raf = raf;
+            this.fileLock = fileLock;
+        }
+
+        /**
+         * Releases the lock.
+         *
+         * @throws IOException
+         *             Error releasing the file lock.
+         */
+        public final void release() throws IOException {
+            try {
+                try {
+                    fileLock.release();
+                } finally {
+                    raf.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,273 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a multi-member GZIP stream whose members carry their compressed size in a "BC" extra field (BGZF). Because member
+ * boundaries are known without inflating, the members are read sequentially and inflated concurrently by a pool of threads. The
+ * output keeps the original order.
+ */
+public final class BgzfInputStream extends InputStream {
+
+    private static final int HEADER_SIZE = 12;
+
+    private static final int TRAILER_SIZE = 8;
+
+    private static final int FEXTRA = 4;
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final InputStream in;
+
+    private final ExecutorService executor;
+
+    private final int maxPending;
+
+    private final Deque<Future<byte[]>> pending;
+
+    private byte[] current;
+
+    private int pos;
+
+    private boolean eof;
+
+    /**
+     * Constructor with stream and number of threads.
+     *
+     * @param in
+     *            BGZF stream to read.
+     * @param threads
+     *            Number of members inflated in parallel.
+     */
+    public BgzfInputStream(final InputStream in, final int threads) {
+        super();
+        if (in == null) {
+            throw new IllegalArgumentException("in == null");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads < 1: " + threads);
+        }
+        this.in = in;
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread thread = new Thread(r, "es-bgzf");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxPending = threads * 2;
+        this.pending = new ArrayDeque<>();
+    }
+
+    /**
+     * Determines if a header belongs to a BGZF member.
+     *
+     * @param header
+     *            Bytes at the start of the stream.
+     * @param len
+     *            Number of valid bytes in the header array.
+     *
+     * @return {@code true} if the stream starts with a GZIP header that contains a "BC" extra field.
+     */
+    public static boolean isBgzf(final byte[] header, final int len) {
+        if (len < 18 || (header[0] & 0xFF) != 0x1f || (header[1] & 0xFF) != 0x8b || header[2] != 8
+                || header[3] != FEXTRA) {
+            return false;
+        }
+        return header[12] == 'B' && header[13] == 'C' && u16(header, 14) == 2;
+    }
+
+    private boolean fill() throws IOException {
+        while (!eof && pending.size() < maxPending) {
+            final byte[] member = readMember();
+            if (member == null) {
+                eof = true;
+            } else {
+                pending.add(executor.submit(() -> inflate(member)));
+            }
+        }
+        while (current == null || pos == current.length) {
+            final Future<byte[]> future = pending.poll();
+            if (future == null) {
+                return false;
+            }
+            current = waitFor(future);
+            pos = 0;
+            if (!eof) {
+                final byte[] member = readMember();
+                if (member == null) {
+                    eof = true;
+                } else {
+                    pending.add(executor.submit(() -> inflate(member)));
+                }
+            }
+        }
+        return true;
+    }
+
+    private byte[] readMember() throws IOException {
+        final byte[] header = new byte[HEADER_SIZE];
+        final int first = readFully(header, 0, header.length);
+        if (first == 0) {
+            return null;
+        }
+        if (first < header.length) {
+            throw new EOFException("Truncated GZIP header");
+        }
+        if ((header[0] & 0xFF) != 0x1f || (header[1] & 0xFF) != 0x8b || header[2] != 8 || header[3] != FEXTRA) {
+            throw new ZipException("Not a BGZF member");
+        }
+        final int xlen = u16(header, 10);
+        final byte[] extra = new byte[xlen];
+        if (readFully(extra, 0, xlen) < xlen) {
+            throw new EOFException("Truncated GZIP extra field");
+        }
+        int bsize = -1;
+        int i = 0;
+        while (i + 4 <= xlen) {
+            final int slen = u16(extra, i + 2);
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && slen == 2) {
+                bsize = u16(extra, i + 4);
+            }
+            i = i + 4 + slen;
+        }
+        if (bsize < 0) {
+            throw new ZipException("GZIP member without BGZF block size");
+        }
+        final int size = bsize + 1;
+        final byte[] member = new byte[size];
+        System.arraycopy(header, 0, member, 0, HEADER_SIZE);
+        System.arraycopy(extra, 0, member, HEADER_SIZE, xlen);
+        final int rest = size - HEADER_SIZE - xlen;
+        if (rest < TRAILER_SIZE || readFully(member, HEADER_SIZE + xlen, rest) < rest) {
+            throw new EOFException("Truncated BGZF member");
+        }
+        return member;
+    }
+
+    private static byte[] inflate(final byte[] member) throws IOException {
+        final int xlen = u16(member, 10);
+        final int start = HEADER_SIZE + xlen;
+        final int end = member.length - TRAILER_SIZE;
+        final long crc = u32(member, end);
+        final int isize = (int) u32(member, end + 4);
+        final byte[] out = new byte[isize];
+        final Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(member, start, end - start);
+        try {
+            int count = 0;
+            while (count < isize && !inflater.finished()) {
+                final int len = inflater.inflate(out, count, isize - count);
+                if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ZipException("Truncated deflate data in BGZF member");
+                }
+                count += len;
+            }
+            if (count != isize) {
+                throw new ZipException("Expected " + isize + " bytes, but was " + count);
+            }
+        } catch (final DataFormatException ex) {
+            final ZipException zex = new ZipException("Invalid deflate data in BGZF member");
+            zex.initCause(ex);
+            throw zex;
+        }
+        final CRC32 check = new CRC32();
+        check.update(out);
+        if (check.getValue() != crc) {
+            throw new ZipException("CRC mismatch in BGZF member");
+        }
+        return out;
+    }
+
+    private static byte[] waitFor(final Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while inflating");
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Error inflating BGZF member", ex.getCause());
+        }
+    }
+
+    private int readFully(final byte[] b, final int off, final int len) throws IOException {
+        int count = 0;
+        while (count < len) {
+            final int n = in.read(b, off + count, len - count);
+            if (n == -1) {
+                break;
+            }
+            count += n;
+        }
+        return count;
+    }
+
+    private static int u16(final byte[] b, final int off) {
+        return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8);
+    }
+
+    private static long u32(final byte[] b, final int off) {
+        return (u16(b, off) | ((long) u16(b, off + 2) << 16)) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public final int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[pos++] & 0xFF;
+    }
+
+    @Override
+    public final int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        final int count = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, count);
+        pos += count;
+        return count;
+    }
+
+    @Override
+    public final void close() throws IOException {
+        executor.shutdownNow();
+        in.close();
+    }
+
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * User level cache for the JSON file with the available event store versions. A cached file is used without network access until
+ * its time to live expires. After that it is revalidated with a conditional request ("If-None-Match" / "If-Modified-Since"), so an
+ * unchanged file is not transferred again. Offline builds and builds that cannot reach the server use the cached file.
+ *
+ * <pre>
+ * dir
+ * +-- &lt;sha256(url)&gt;.json         Cached version file
+ * \-- &lt;sha256(url)&gt;.json.meta    Validators of the cached file and time of the last check
+ * </pre>
+ */
+public final class CatalogCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CatalogCache.class);
+
+    private static final String ETAG = "etag";
+
+    private static final String LAST_MODIFIED = "lastModified";
+
+    private static final String CHECKED = "checked";
+
+    private final File dir;
+
+    private final long ttlMs;
+
+    private final int timeoutMs;
+
+    private final HttpProxy proxy;
+
+    /**
+     * Constructor without proxy.
+     *
+     * @param dir
+     *            Directory for the cached files.
+     * @param ttlMs
+     *            Milliseconds a cached file is used without checking the server.
+     * @param timeoutMs
+     *            Connect and read timeout in milliseconds.
+     */
+    public CatalogCache(final File dir, final long ttlMs, final int timeoutMs) {
+        this(dir, ttlMs, timeoutMs, HttpProxy.NONE);
+    }
+
+    /**
+     * Constructor with all data.
+     *
+     * @param dir
+     *            Directory for the cached files.
+     * @param ttlMs
+     *            Milliseconds a cached file is used without checking the server.
+     * @param timeoutMs
+     *            Connect and read timeout in milliseconds.
+     * @param proxy
+     *            Proxy to use.
+     */
+    public CatalogCache(final File dir, final long ttlMs, final int timeoutMs, final HttpProxy proxy) {
+        super();
+        if (dir == null) {
+            throw new IllegalArgumentException("dir == null");
+        }
+        if (proxy == null) {
+            throw new IllegalArgumentException("proxy == null");
+        }
+        this.dir = dir;
+        this.ttlMs = ttlMs;
+        this.timeoutMs = timeoutMs;
+        this.proxy = proxy;
+    }
+
+    /**
+     * Returns the cached file for an URL. The file may not exist.
+     *
+     * @param url
+     *            URL of the version file.
+     *
+     * @return Cached file.
+     */
+    public final File getFile(final URL url) {
+        return new File(dir, ArchiveCache.sha256(url.toExternalForm()) + ".json");
+    }
+
+    /**
+     * Returns an up to date copy of the version file.
+     *
+     * @param url
+     *            URL of the version file.
+     * @param offline
+     *            {@code true} if the network must not be used.
+     *
+     * @return Cached file.
+     *
+     * @throws IOException
+     *             There is no cached file and loading it failed or the build is offline.
+     */
+    public final File fetch(final URL url, final boolean offline) throws IOException {
+        final File file = getFile(url);
+        final File metaFile = getMetaFile(file);
+        final Properties meta = loadMeta(metaFile);
+        if (file.exists()) {
+            if (offline) {
+                LOG.info("Offline - Using cached version file: {}", file);
+                return file;
+            }
+            final long age = System.currentTimeMillis() - parseLong(meta.getProperty(CHECKED));
+            if (age >= 0 && age < ttlMs) {
+                LOG.info("Cached version file: {}", file);
+                return file;
+            }
+        } else if (offline) {
+            throw new IOException("Offline and no cached version file for: " + url);
+        }
+        try {
+            refresh(url, file, metaFile, file.exists() ? meta : new Properties());
+        } catch (final IOException ex) {
+            if (!file.exists()) {
+                throw ex;
+            }
+            LOG.warn("Couldn't check version file - Using cached copy: " + file, ex);
+        }
+        return file;
+    }
+
+    private void refresh(final URL url, final File file, final File metaFile, final Properties meta) throws IOException {
+        Files.createDirectories(dir.toPath());
+        final URLConnection con = proxy.openConnection(url);
+        con.setConnectTimeout(timeoutMs);
+        con.setReadTimeout(timeoutMs);
+        con.setUseCaches(false);
+        if (meta.getProperty(ETAG) != null) {
+            con.setRequestProperty("If-None-Match", meta.getProperty(ETAG));
+        }
+        if (meta.getProperty(LAST_MODIFIED) != null) {
+            con.setRequestProperty("If-Modified-Since", meta.getProperty(LAST_MODIFIED));
+        }
+        try {
+            if (con instanceof HttpURLConnection) {
+                final int status = ((HttpURLConnection) con).getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    LOG.info("Version file not modified: {}", url);
+                    meta.setProperty(CHECKED, String.valueOf(System.currentTimeMillis()));
+                    saveMeta(metaFile, meta);
+                    return;
+                }
+                if (status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Unexpected HTTP status " + status + " for: " + url);
+                }
+            }
+            LOG.info("Download version file: {}", url);
+            final File tmpFile = new File(dir, file.getName() + ".tmp-" + UUID.randomUUID());
+            try {
+                final InputStream in = con.getInputStream();
+                try {
+                    Files.copy(in, tmpFile.toPath());
+                } finally {
+                    in.close();
+                }
+                move(tmpFile, file);
+            } finally {
+                Files.deleteIfExists(tmpFile.toPath());
+            }
+            final Properties newMeta = new Properties();
+            if (con.getHeaderField("ETag") != null) {
+                newMeta.setProperty(ETAG, con.getHeaderField("ETag"));
+            }
+            if (con.getHeaderField("Last-Modified") != null) {
+                newMeta.setProperty(LAST_MODIFIED, con.getHeaderField("Last-Modified"));
+            }
+            newMeta.setProperty(CHECKED, String.valueOf(System.currentTimeMillis()));
+            saveMeta(metaFile, newMeta);
+        } finally {
+            if (con instanceof HttpURLConnection) {
+                ((HttpURLConnection) con).disconnect();
+            }
+        }
+    }
+
+    private static File getMetaFile(final File file) {
+        return new File(file.getParentFile(), file.getName() + ".meta");
+    }
+
+    private static Properties loadMeta(final File metaFile) {
+        final Properties props = new Properties();
+        if (metaFile.exists()) {
+            try {
+                final InputStream in = Files.newInputStream(metaFile.toPath());
+                try {
+                    props.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (final IOException ex) {
+                // Broken meta data - Revalidate without validators
+                props.clear();
+            }
+        }
+        return props;
+    }
+
+    private static void saveMeta(final File metaFile, final Properties meta) throws IOException {
+        final File tmpFile = new File(metaFile.getParentFile(), metaFile.getName() + ".tmp-" + UUID.randomUUID());
+        try {
+            final OutputStream out = Files.newOutputStream(tmpFile.toPath());
+            try {
+                meta.store(out, "Version file cache");
+            } finally {
+                out.close();
+            }
+            move(tmpFile, metaFile);
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    private static void move(final File from, final File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static long parseLong(final String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (final NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+}
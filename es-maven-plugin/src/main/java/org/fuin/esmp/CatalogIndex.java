@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary form of a parsed version file that is stored next to the JSON file. Loading it only requires reading the file and
+ * decoding the strings, the JSON object tree is not built again. The index records size and modification time of the JSON file it
+ * was compiled from and is ignored as soon as the JSON file changes. {@link Downloads#resolveLatest(DownloadFilter)} selects the
+ * latest version from it and rebuilds it after the JSON file changed.
+ *
+ * <pre>
+ * int     Magic number
+ * int     Format version
+ * long    Size of the JSON file
+ * long    Last modification of the JSON file
+ * int     Number of versions
+ *         Version name, number of families
+ *             Family name, number of downloads
+ *                 Download name, download URL
+ * </pre>
+ *
+ * Strings are stored as length followed by the UTF-8 bytes, all numbers in big endian byte order.
+ */
+public final class CatalogIndex {
+
+    private static final int MAGIC = 0x45534349;
+
+    private static final int FORMAT = 1;
+
+    private CatalogIndex() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Returns the index file for a JSON version file.
+     *
+     * @param jsonFile
+     *            JSON version file.
+     *
+     * @return Index file in the same directory.
+     */
+    public static File getIndexFile(final File jsonFile) {
+        return new File(jsonFile.getParentFile(), jsonFile.getName() + ".idx");
+    }
+
+    /**
+     * Loads the versions from the index of a JSON file.
+     *
+     * @param jsonFile
+     *            JSON version file.
+     *
+     * @return Sealed versions in the order of the JSON file or {@code null} if there is no index or it doesn't belong to the current
+     *         content of the JSON file.
+     *
+     * @throws IOException
+     *             Error reading the index.
+     */
+    public static List<DownloadVersion> load(final File jsonFile) throws IOException {
+        final File indexFile = getIndexFile(jsonFile);
+        if (!indexFile.exists()) {
+            return null;
+        }
+        // The index is small - Reading it avoids keeping a mapping (and a file lock on Windows) until the next garbage collection
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT || buffer.getLong() != jsonFile.length()
+                    || buffer.getLong() != jsonFile.lastModified()) {
+                return null;
+            }
+            final int versionCount = buffer.getInt();
+            final List<DownloadVersion> versions = new ArrayList<>(versionCount);
+            for (int i = 0; i < versionCount; i++) {
+                final DownloadVersion version = new DownloadVersion(readString(buffer));
+                final int familyCount = buffer.getInt();
+                for (int j = 0; j < familyCount; j++) {
+                    final DownloadOSFamily family = new DownloadOSFamily(readString(buffer));
+                    final int downloadCount = buffer.getInt();
+                    for (int k = 0; k < downloadCount; k++) {
+                        family.addOS(new DownloadOS(readString(buffer), readString(buffer)));
+                    }
+                    version.addOSFamily(family);
+                }
+                version.seal();
+                versions.add(version);
+            }
+            return versions;
+        } catch (final BufferUnderflowException | IllegalArgumentException ex) {
+            // Truncated or broken index - Parse the JSON file again
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index for a JSON file. An existing index is replaced atomically if the file system supports it.
+     *
+     * @param jsonFile
+     *            JSON version file the versions were parsed from.
+     * @param versions
+     *            Versions to store.
+     *
+     * @throws IOException
+     *             Error writing the index.
+     */
+    public static void save(final File jsonFile, final List<DownloadVersion> versions) throws IOException {
+        final File indexFile = getIndexFile(jsonFile);
+        final File tmpFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp-" + UUID.randomUUID());
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath())));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(jsonFile.length());
+                out.writeLong(jsonFile.lastModified());
+                out.writeInt(versions.size());
+                for (final DownloadVersion version : versions) {
+                    writeString(out, version.getName());
+                    out.writeInt(version.getOSFamilies().size());
+                    for (final DownloadOSFamily family : version.getOSFamilies()) {
+                        writeString(out, family.getName());
+                        out.writeInt(family.getDownloads().size());
+                        for (final DownloadOS download : family.getDownloads()) {
+                            writeString(out, download.getName());
+                            writeString(out, download.getUrl());
+                        }
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException ex) {
+                Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String str) throws IOException {
+        final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int len = buffer.getInt();
+        if (len < 0 || len > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid string length: " + len);
+        }
+        final byte[] bytes = new byte[len];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+/**
+ * Selects the downloads that are of interest for a build: One OS family, optionally a qualifier for the download name and whether
+ * release candidates are included. Only archives (".tar.gz" and ".zip") are accepted.
+ */
+public final class DownloadFilter {
+
+    private final String family;
+
+    private final String qualifier;
+
+    private final boolean includeRc;
+
+    /**
+     * Constructor with all data.
+     * 
+     * @param family
+     *            OS family (like "Windows", "Mac" or "Linux").
+     * @param qualifier
+     *            Part of the download name (like "Ubuntu") or {@code null} (any).
+     * @param includeRc
+     *            {@code true} if release candidates should be included.
+     */
+    public DownloadFilter(final String family, final String qualifier, final boolean includeRc) {
+        super();
+        if (family == null) {
+            throw new IllegalArgumentException("family == null");
+        }
+        this.family = family;
+        this.qualifier = qualifier;
+        this.includeRc = includeRc;
+    }
+
+    /**
+     * Returns the OS family.
+     * 
+     * @return Family name (like "Windows", "Mac" or "Linux").
+     */
+    public final String getFamily() {
+        return family;
+    }
+
+    /**
+     * Returns the qualifier for the download name.
+     * 
+     * @return Qualifier (like "Ubuntu") or {@code null} (any).
+     */
+    public final String getQualifier() {
+        return qualifier;
+    }
+
+    /**
+     * Determines if release candidates are included.
+     * 
+     * @return {@code true} if release candidates are included.
+     */
+    public final boolean isIncludeRc() {
+        return includeRc;
+    }
+
+    /**
+     * Determines if a version is accepted.
+     * 
+     * @param name
+     *            Version name.
+     * 
+     * @return {@code true} if release candidates are included or the version is a release.
+     */
+    public final boolean acceptsVersion(final String name) {
+        return includeRc || DownloadVersion.isRelease(name);
+    }
+
+    /**
+     * Determines if an OS family is accepted.
+     * 
+     * @param name
+     *            Family name.
+     * 
+     * @return {@code true} if the name equals the family of the filter.
+     */
+    public final boolean acceptsFamily(final String name) {
+        return family.equals(name);
+    }
+
+    /**
+     * Determines if a download is accepted.
+     * 
+     * @param name
+     *            Download name.
+     * @param url
+     *            Download URL.
+     * 
+     * @return {@code true} if the name contains the qualifier and the URL points to an archive.
+     */
+    public final boolean acceptsDownload(final String name, final String url) {
+        return (qualifier == null || name.contains(qualifier)) && (url.endsWith(".tar.gz") || url.endsWith(".zip"));
+    }
+
+    @Override
+    public final String toString() {
+        return "family=" + family + ", qualifier=" + qualifier + ", includeRc=" + includeRc;
+    }
+
+}
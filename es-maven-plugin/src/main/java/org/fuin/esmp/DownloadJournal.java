@@ -0,0 +1,335 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Sidecar file of a partial download that records how far each segment got and the validators (ETag and Last-Modified) of the loaded
+ * content. An interrupted download can be resumed using this information.
+ */
+public final class DownloadJournal {
+
+    private final File file;
+
+    private final String url;
+
+    private final long length;
+
+    private final String etag;
+
+    private final String lastModified;
+
+    private final List<Segment> segments;
+
+    /**
+     * Constructor with all data.
+     *
+     * @param file
+     *            Journal file.
+     * @param url
+     *            Downloaded URL.
+     * @param length
+     *            Content length.
+     * @param etag
+     *            ETag header of the content or {@code null}.
+     * @param lastModified
+     *            Last-Modified header of the content or {@code null}.
+     * @param segments
+     *            Segments the content is divided into.
+     */
+    public DownloadJournal(final File file, final String url, final long length, final String etag, final String lastModified,
+            final List<Segment> segments) {
+        super();
+        if (file == null) {
+            throw new IllegalArgumentException("file == null");
+        }
+        if (url == null) {
+            throw new IllegalArgumentException("url == null");
+        }
+        if (segments == null) {
+            throw new IllegalArgumentException("segments == null");
+        }
+        this.file = file;
+        this.url = url;
+        this.length = length;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.segments = new ArrayList<>(segments);
+    }
+
+    /**
+     * Returns the downloaded URL.
+     *
+     * @return URL.
+     */
+    public final String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the content length.
+     *
+     * @return Number of bytes.
+     */
+    public final long getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the ETag header of the content.
+     *
+     * @return ETag or {@code null}.
+     */
+    public final String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Returns the Last-Modified header of the content.
+     *
+     * @return Last modified date or {@code null}.
+     */
+    public final String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the validator to use for an "If-Range" header.
+     *
+     * @return ETag, Last-Modified or {@code null} if both are unknown.
+     */
+    public final String getIfRange() {
+        if (etag != null) {
+            return etag;
+        }
+        return lastModified;
+    }
+
+    /**
+     * Returns the segments.
+     *
+     * @return Unmodifiable list of segments.
+     */
+    public final List<Segment> getSegments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Determines if the journal belongs to the same content.
+     *
+     * @param otherUrl
+     *            Downloaded URL.
+     * @param otherLength
+     *            Content length.
+     * @param otherEtag
+     *            ETag header of the content or {@code null}.
+     * @param otherLastModified
+     *            Last-Modified header of the content or {@code null}.
+     *
+     * @return {@code true} if the journal can be used to resume the download.
+     */
+    public final boolean matches(final String otherUrl, final long otherLength, final String otherEtag,
+            final String otherLastModified) {
+        return url.equals(otherUrl) && length == otherLength && getIfRange() != null && Objects.equals(etag, otherEtag)
+                && Objects.equals(lastModified, otherLastModified);
+    }
+
+    /**
+     * Returns the number of bytes already loaded.
+     *
+     * @return Sum of all bytes loaded by the segments.
+     */
+    public final long getLoaded() {
+        long loaded = 0;
+        for (final Segment segment : segments) {
+            loaded += segment.getNext() - segment.getFirst();
+        }
+        return loaded;
+    }
+
+    /**
+     * Writes the current state to the journal file. The file is replaced atomically if the file system supports it.
+     *
+     * @throws IOException
+     *             Error writing the file.
+     */
+    public final synchronized void save() throws IOException {
+        final Properties props = new Properties();
+        props.setProperty("url", url);
+        props.setProperty("length", String.valueOf(length));
+        if (etag != null) {
+            props.setProperty("etag", etag);
+        }
+        if (lastModified != null) {
+            props.setProperty("lastModified", lastModified);
+        }
+        props.setProperty("segments", String.valueOf(segments.size()));
+        for (int i = 0; i < segments.size(); i++) {
+            final Segment segment = segments.get(i);
+            props.setProperty("segment." + i, segment.getFirst() + "," + segment.getNext() + "," + segment.getLast());
+        }
+        final File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        final OutputStream out = Files.newOutputStream(tmpFile.toPath());
+        try {
+            props.store(out, "Download journal");
+        } finally {
+            out.close();
+        }
+        try {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes the journal file.
+     *
+     * @throws IOException
+     *             Error deleting the file.
+     */
+    public final void delete() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Loads a journal from a file.
+     *
+     * @param file
+     *            File to read.
+     *
+     * @return Journal or {@code null} if the file does not exist or cannot be read.
+     */
+    public static DownloadJournal load(final File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final Properties props = new Properties();
+            final InputStream in = Files.newInputStream(file.toPath());
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+            final int count = Integer.parseInt(props.getProperty("segments"));
+            final List<Segment> segments = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                final String[] parts = props.getProperty("segment." + i).split(",");
+                segments.add(new Segment(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+            }
+            return new DownloadJournal(file, props.getProperty("url"), Long.parseLong(props.getProperty("length")),
+                    props.getProperty("etag"), props.getProperty("lastModified"), segments);
+        } catch (final IOException | RuntimeException ex) {
+            // Broken journal - Start over
+            return null;
+        }
+    }
+
+    /**
+     * Part of the content that is loaded with a single range request.
+     */
+    public static final class Segment {
+
+        private final long first;
+
+        private final long last;
+
+        private volatile long next;
+
+        /**
+         * Constructor with all data.
+         *
+         * @param first
+         *            Position of the first byte (inclusive).
+         * @param next
+         *            Position of the next byte to load.
+         * @param last
+         *            Position of the last byte (inclusive).
+         */
+        public Segment(final long first, final long next, final long last) {
+            super();
+            if (next < first || next > last + 1) {
+                throw new IllegalArgumentException("next=" + next + " is outside of " + first + "-" + last);
+            }
+            this.first = first;
+            this.next = next;
+            this.last = last;
+        }
+
+        /**
+         * Returns the position of the first byte.
+         *
+         * @return First position (inclusive).
+         */
+        public final long getFirst() {
+            return first;
+        }
+
+        /**
+         * Returns the position of the next byte to load.
+         *
+         * @return Next position.
+         */
+        public final long getNext() {
+            return next;
+        }
+
+        /**
+         * Returns the position of the last byte.
+         *
+         * @return Last position (inclusive).
+         */
+        public final long getLast() {
+            return last;
+        }
+
+        /**
+         * Determines if all bytes of the segment are loaded.
+         *
+         * @return {@code true} if the segment is complete.
+         */
+        public final boolean isComplete() {
+            return next > last;
+        }
+
+        /**
+         * Records that bytes were written.
+         *
+         * @param count
+         *            Number of bytes written at the next position.
+         */
+        final void advance(final int count) {
+            next = next + count;
+        }
+
+    }
+
+}
@@ -21,7 +21,8 @@ import java.net.MalformedURLException;
 import java.net.URL;
 
 /**
- * OS name of the Event Store that is available for download. Equals and hash code are based on the name.
+ * OS name of the Event Store that is available for download. Equals and hash code are based on the name, the natural order treats
+ * numbers in the name as numbers ("Ubuntu 9.10" is before "Ubuntu 18.04").
  */
 public final class DownloadOS implements Comparable<DownloadOS> {
 
@@ -117,7 +118,7 @@ public final class DownloadOS implements Comparable<DownloadOS> {
 
     @Override
     public final int compareTo(final DownloadOS other) {
-        return name.compareTo(other.name);
+        return VersionKey.compareNatural(name, other.name);
     }
 
 }
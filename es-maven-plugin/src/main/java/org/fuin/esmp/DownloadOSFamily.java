@@ -20,7 +20,9 @@ package org.fuin.esmp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Operation system family of the Event Store that is available for download. Equals and hash code are based on the family name.
@@ -31,6 +33,8 @@ public final class DownloadOSFamily implements Comparable<DownloadOSFamily> {
 
     private final List<DownloadOS> downloads;
 
+    private final Map<String, DownloadOS> downloadIndex;
+
     private boolean sealed;
 
     /**
@@ -61,6 +65,10 @@ public final class DownloadOSFamily implements Comparable<DownloadOSFamily> {
         }
         this.name = name;
         this.downloads = new ArrayList<>(downloads);
+        this.downloadIndex = new HashMap<>();
+        for (final DownloadOS download : downloads) {
+            downloadIndex.putIfAbsent(download.getName(), download);
+        }
     }
 
     /**
@@ -92,6 +100,7 @@ public final class DownloadOSFamily implements Comparable<DownloadOSFamily> {
             throw new IllegalStateException("The instance is sealed");
         }
         downloads.add(download);
+        downloadIndex.putIfAbsent(download.getName(), download);
     }
 
     /**
@@ -116,11 +125,7 @@ public final class DownloadOSFamily implements Comparable<DownloadOSFamily> {
      * @return Found instance or <code>null</code> if no download with that name was found.
      */
     public DownloadOS findDownload(final String name) {
-        final int idx = downloads.indexOf(new DownloadOS(name));
-        if (idx < 0) {
-            return null;
-        }
-        return downloads.get(idx);
+        return downloadIndex.get(name);
     }
 
     /**
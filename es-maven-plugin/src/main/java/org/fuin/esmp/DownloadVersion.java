@@ -19,17 +19,25 @@ package org.fuin.esmp;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
- * Version of the Event Store that is available for download. Equals and hash code are based on the version name.
+ * Version of the Event Store that is available for download. Equals and hash code are based on the version name, the natural order
+ * is semantic (see {@link VersionKey}).
  */
 public final class DownloadVersion implements Comparable<DownloadVersion> {
 
     private final String name;
 
+    private final VersionKey key;
+
     private final List<DownloadOSFamily> osFamilies;
 
+    private final Map<String, DownloadOSFamily> familyIndex;
+
     private boolean sealed;
 
     /**
@@ -59,7 +67,12 @@ public final class DownloadVersion implements Comparable<DownloadVersion> {
             throw new IllegalArgumentException("osFamilies == null");
         }
         this.name = name;
+        this.key = new VersionKey(name);
         this.osFamilies = new ArrayList<>(osFamilies);
+        this.familyIndex = new HashMap<>();
+        for (final DownloadOSFamily family : osFamilies) {
+            familyIndex.putIfAbsent(family.getName(), family);
+        }
     }
 
     /**
@@ -71,6 +84,15 @@ public final class DownloadVersion implements Comparable<DownloadVersion> {
         return name;
     }
 
+    /**
+     * Returns the parsed version used for ordering.
+     * 
+     * @return Semantic version key.
+     */
+    public final VersionKey getKey() {
+        return key;
+    }
+
     /**
      * Returns the list of OS families.
      * 
@@ -91,6 +113,7 @@ public final class DownloadVersion implements Comparable<DownloadVersion> {
             throw new IllegalStateException("The instance is sealed");
         }
         osFamilies.add(family);
+        familyIndex.putIfAbsent(family.getName(), family);
     }
 
     /**
@@ -115,11 +138,7 @@ public final class DownloadVersion implements Comparable<DownloadVersion> {
      * @return Found instance or <code>null</code> if no family with that name was found.
      */
     public DownloadOSFamily findFamily(final String name) {
-        final int idx = osFamilies.indexOf(new DownloadOSFamily(name));
-        if (idx < 0) {
-            return null;
-        }
-        return osFamilies.get(idx);
+        return familyIndex.get(name);
     }
 
     /**
@@ -128,7 +147,20 @@ public final class DownloadVersion implements Comparable<DownloadVersion> {
      * @return {@code true} if the version contains no "-rc" and no "preview" string.
      */
     public boolean isRelease() {
-        return !name.contains("-rc") && !name.contains("preview");
+        return isRelease(name);
+    }
+
+    /**
+     * Determines if a version name denotes a release.
+     * 
+     * @param name
+     *            Version (like "3.1.0", "5.0.0-rc1").
+     * 
+     * @return {@code true} if the name contains no "-rc" and no "preview" string (ignoring case).
+     */
+    static boolean isRelease(final String name) {
+        final String lower = name.toLowerCase(Locale.ROOT);
+        return !lower.contains("-rc") && !lower.contains("preview");
     }
 
     
@@ -159,7 +191,7 @@ public final class DownloadVersion implements Comparable<DownloadVersion> {
 
     @Override
     public final int compareTo(final DownloadVersion other) {
-        return name.compareTo(other.name);
+        return key.compareTo(other.key);
     }
 
 }
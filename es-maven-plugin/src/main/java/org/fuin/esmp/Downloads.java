@@ -24,13 +24,17 @@ import java.io.Reader;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.json.JsonReader;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
 
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
@@ -49,6 +53,12 @@ public final class Downloads {
 
     private final List<DownloadVersion> versions;
 
+    private final Map<String, DownloadVersion> versionIndex;
+
+    private DownloadVersion latest;
+
+    private DownloadVersion latestRelease;
+
     /**
      * Constructor with URL and local file. If the file does not exist, a current version of the version file will be loaded.
      * 
@@ -64,6 +74,7 @@ public final class Downloads {
         super();
         this.jsonDownloadsFile = jsonDownloadsFile;
         this.versions = new ArrayList<>();
+        this.versionIndex = new HashMap<>();
 
         if (!jsonDownloadsFile.exists()) {
             LOG.info("Download version file: " + versionURL);
@@ -73,6 +84,13 @@ public final class Downloads {
 
     }
 
+    private Downloads(final File jsonDownloadsFile) {
+        super();
+        this.jsonDownloadsFile = jsonDownloadsFile;
+        this.versions = new ArrayList<>();
+        this.versionIndex = new HashMap<>();
+    }
+
     /**
      * Returns the version with a given name.
      * 
@@ -82,21 +100,243 @@ public final class Downloads {
      * @return Found instance or <code>null</code> if no version with that name was found.
      */
     public DownloadVersion findVersion(final String name) {
-        final int idx = versions.indexOf(new DownloadVersion(name));
-        if (idx < 0) {
-            return null;
-        }
-        return versions.get(idx);
+        return versionIndex.get(name);
     }
 
     /**
-     * Loads the data from the JSON download versions file.
+     * Loads the data from the JSON download versions file. A binary index of the file is used if it is up to date, otherwise the
+     * JSON file is parsed and the index is (re-)created.
      * 
      * @throws IOException
      *             Parsing the event store version file failed.
      */
     public final void parse() throws IOException {
 
+        List<DownloadVersion> indexed = null;
+        try {
+            indexed = CatalogIndex.load(jsonDownloadsFile);
+        } catch (final IOException ex) {
+            LOG.warn("Couldn't read the index of the version file: " + jsonDownloadsFile, ex);
+        }
+        if (indexed == null) {
+            parseJson();
+            try {
+                CatalogIndex.save(jsonDownloadsFile, versions);
+            } catch (final IOException ex) {
+                LOG.warn("Couldn't write the index of the version file: " + jsonDownloadsFile, ex);
+            }
+        } else {
+            for (final DownloadVersion version : indexed) {
+                addVersion(version);
+            }
+        }
+
+        if (LOG.isInfoEnabled()) {
+            final StringBuilder sb = new StringBuilder();
+            for (final DownloadVersion version : versions) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(version);
+            }
+            LOG.info("Versions retrieved: {}", sb);
+        }
+        
+    }
+
+    /**
+     * Reads the latest version with a download accepted by a filter using a streaming parser. Versions and OS families that are not
+     * accepted are skipped without building objects for them, the same applies to all versions that are not newer than the best one
+     * found so far. Only the accepted family and downloads are added to the version.
+     * 
+     * @param filter
+     *            Selects the downloads of interest.
+     * 
+     * @return Found version (also added to the list of versions) or {@code null} if no version has an accepted download.
+     * 
+     * @throws IOException
+     *             Reading the event store version file failed.
+     */
+    public final DownloadVersion parseLatest(final DownloadFilter filter) throws IOException {
+
+        DownloadVersion found = null;
+        final Reader reader = new FileReader(jsonDownloadsFile);
+        try {
+            final JsonParser parser = Json.createParser(reader);
+            expect(parser, Event.START_OBJECT);
+            while (parser.next() == Event.KEY_NAME) {
+                final String versionName = parser.getString();
+                expect(parser, Event.START_OBJECT);
+                if (!filter.acceptsVersion(versionName)
+                        || (found != null && new VersionKey(versionName).compareTo(found.getKey()) <= 0)) {
+                    parser.skipObject();
+                    continue;
+                }
+                final DownloadVersion version = new DownloadVersion(versionName);
+                while (parser.next() == Event.KEY_NAME) {
+                    final String familyName = parser.getString();
+                    expect(parser, Event.START_ARRAY);
+                    if (!filter.acceptsFamily(familyName)) {
+                        parser.skipArray();
+                        continue;
+                    }
+                    final DownloadOSFamily family = parseFamily(parser, familyName, filter);
+                    if (!family.getDownloads().isEmpty()) {
+                        version.addOSFamily(family);
+                    }
+                }
+                if (!version.getOSFamilies().isEmpty()) {
+                    found = version;
+                }
+            }
+        } catch (final RuntimeException ex) {
+            // JSON-P reports syntax errors as unchecked exceptions
+            throw new IOException("Error parsing version file: " + jsonDownloadsFile, ex);
+        } finally {
+            reader.close();
+        }
+        if (found != null) {
+            found.seal();
+            addVersion(found);
+            LOG.info("Latest version for {}: {}", filter, found);
+        }
+        return found;
+
+    }
+
+    /**
+     * Returns the latest version with a download accepted by a filter. If the binary index of the version file is up to date, the
+     * version is selected from the indexed versions. Otherwise the file is read with {@link #parseLatest(DownloadFilter)} and the
+     * index is rebuilt by a background thread, so following builds don't have to parse the JSON file again.
+     * 
+     * @param filter
+     *            Selects the downloads of interest.
+     * 
+     * @return Found version (also added to the list of versions) or {@code null} if no version has an accepted download.
+     * 
+     * @throws IOException
+     *             Reading the event store version file failed.
+     */
+    public final DownloadVersion resolveLatest(final DownloadFilter filter) throws IOException {
+
+        List<DownloadVersion> indexed = null;
+        try {
+            indexed = CatalogIndex.load(jsonDownloadsFile);
+        } catch (final IOException ex) {
+            LOG.warn("Couldn't read the index of the version file: " + jsonDownloadsFile, ex);
+        }
+        if (indexed == null) {
+            final DownloadVersion found = parseLatest(filter);
+            startIndexRebuild();
+            return found;
+        }
+
+        DownloadVersion found = null;
+        for (final DownloadVersion version : indexed) {
+            if (!filter.acceptsVersion(version.getName()) || (found != null && version.getKey().compareTo(found.getKey()) <= 0)) {
+                continue;
+            }
+            final DownloadVersion accepted = select(version, filter);
+            if (!accepted.getOSFamilies().isEmpty()) {
+                found = accepted;
+            }
+        }
+        if (found != null) {
+            found.seal();
+            addVersion(found);
+            LOG.info("Latest version for {} (from index): {}", filter, found);
+        }
+        return found;
+
+    }
+
+    private static DownloadVersion select(final DownloadVersion version, final DownloadFilter filter) {
+        final DownloadVersion accepted = new DownloadVersion(version.getName());
+        for (final DownloadOSFamily family : version.getOSFamilies()) {
+            if (filter.acceptsFamily(family.getName())) {
+                final DownloadOSFamily acceptedFamily = new DownloadOSFamily(family.getName());
+                for (final DownloadOS download : family.getDownloads()) {
+                    if (filter.acceptsDownload(download.getName(), download.getUrl())) {
+                        acceptedFamily.addOS(download);
+                    }
+                }
+                if (!acceptedFamily.getDownloads().isEmpty()) {
+                    accepted.addOSFamily(acceptedFamily);
+                }
+            }
+        }
+        return accepted;
+    }
+
+    private void startIndexRebuild() {
+        final Thread thread = new Thread(() -> {
+            try {
+                final long length = jsonDownloadsFile.length();
+                final long lastModified = jsonDownloadsFile.lastModified();
+                final Downloads all = new Downloads(jsonDownloadsFile);
+                all.parseJson();
+                // The index stores size and time of the file, so it must not be written for content that was replaced meanwhile
+                if (jsonDownloadsFile.length() == length && jsonDownloadsFile.lastModified() == lastModified) {
+                    CatalogIndex.save(jsonDownloadsFile, all.versions);
+                }
+            } catch (final IOException | RuntimeException ex) {
+                LOG.warn("Couldn't write the index of the version file: " + jsonDownloadsFile, ex);
+            }
+        }, "es-catalog-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static DownloadOSFamily parseFamily(final JsonParser parser, final String familyName, final DownloadFilter filter)
+            throws IOException {
+        final DownloadOSFamily family = new DownloadOSFamily(familyName);
+        Event event;
+        while ((event = parser.next()) != Event.END_ARRAY) {
+            if (event != Event.START_OBJECT) {
+                throw new IOException("Expected a download object, but was: " + event);
+            }
+            String name = null;
+            String url = null;
+            while (parser.next() == Event.KEY_NAME) {
+                final String key = parser.getString();
+                final Event value = parser.next();
+                if (value == Event.VALUE_STRING && "name".equals(key)) {
+                    name = parser.getString();
+                } else if (value == Event.VALUE_STRING && "url".equals(key)) {
+                    url = parser.getString();
+                } else if (value == Event.START_OBJECT) {
+                    parser.skipObject();
+                } else if (value == Event.START_ARRAY) {
+                    parser.skipArray();
+                }
+            }
+            if (name != null && url != null && filter.acceptsDownload(name, url)) {
+                family.addOS(new DownloadOS(name, url));
+            }
+        }
+        return family;
+    }
+
+    private static void expect(final JsonParser parser, final Event expected) throws IOException {
+        final Event event = parser.next();
+        if (event != expected) {
+            throw new IOException("Expected " + expected + ", but was: " + event);
+        }
+    }
+
+    private void addVersion(final DownloadVersion version) {
+        versions.add(version);
+        versionIndex.putIfAbsent(version.getName(), version);
+        if (latest == null || version.compareTo(latest) > 0) {
+            latest = version;
+        }
+        if (version.isRelease() && (latestRelease == null || version.compareTo(latestRelease) > 0)) {
+            latestRelease = version;
+        }
+    }
+
+    private void parseJson() throws IOException {
+
         final Reader reader = new FileReader(jsonDownloadsFile);
         try {
 
@@ -105,7 +345,7 @@ public final class Downloads {
             final Iterator<String> versionIt = versionsObj.keySet().iterator();
             while (versionIt.hasNext()) {
                 final DownloadVersion version = new DownloadVersion(versionIt.next());
-                versions.add(version);
+                addVersion(version);
 
                 final JsonObject families = versionsObj.getJsonObject(version.getName());
                 final Iterator<String> familyIt = families.keySet().iterator();
@@ -133,17 +373,6 @@ public final class Downloads {
             reader.close();
         }
 
-        if (LOG.isInfoEnabled()) {
-            final StringBuilder sb = new StringBuilder();
-            for (final DownloadVersion version : versions) {
-                if (sb.length() > 0) {
-                    sb.append(", ");
-                }
-                sb.append(version);
-            }
-            LOG.info("Versions retrieved: {}", sb);
-        }
-        
     }
 
     /**
@@ -165,19 +394,18 @@ public final class Downloads {
     }
 
     /**
-     * Returns the latest available version.
+     * Returns the latest available version in semantic version order (see {@link VersionKey}).
      * 
      * @param includeRC Include release candidates ({@code true}) or only return releases ({@code false}).
      * 
      * @return Latest version.
      */
     public DownloadVersion findLatest(final boolean includeRC) {
-        for (final DownloadVersion version : versions) {
-            if (includeRC || version.isRelease()) {
-                return version;
-            }
+        final DownloadVersion version = includeRC ? latest : latestRelease;
+        if (version == null) {
+            throw new IllegalStateException("No version found");
         }
-        throw new IllegalStateException("No version found");
+        return version;
     }
 
 }
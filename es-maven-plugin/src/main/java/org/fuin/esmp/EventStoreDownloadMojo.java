@@ -17,17 +17,6 @@
  */
 package org.fuin.esmp;
 
-import static org.twdata.maven.mojoexecutor.MojoExecutor.artifactId;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.executeMojo;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.executionEnvironment;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.goal;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.groupId;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.name;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
-
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
@@ -35,31 +24,31 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Enumeration;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.List;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.exec.DefaultExecutor;
 import org.apache.commons.exec.Executor;
 import org.apache.commons.exec.OS;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
-import org.apache.maven.execution.MavenSession;
-import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.input.TeeInputStream;
 import org.apache.maven.plugin.MojoExecutionException;
-import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.MavenProject;
-import org.fuin.utils4j.Utils4J;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,55 +62,202 @@ public final class EventStoreDownloadMojo extends AbstractEventStoreMojo {
 
     private static final int MB = 1024 * 1024;
 
-    @Parameter(defaultValue = "${project}", readonly = true)
-    private MavenProject mavenProject;
+    private static final boolean POSIX_SUPPORTED = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private static final int TIMEOUT_30_SECONDS = 1000 * 30;
+
+    /**
+     * Maximum number of segments to download in parallel. Only used if the
+     * server supports HTTP range requests. Defaults to 4.
+     */
+    @Parameter(name = "download-segments", defaultValue = "4")
+    private int downloadSegments = 4;
+
+    /**
+     * Use the external "chmod" command to set the file mode of unpacked entries instead of setting the POSIX file permissions
+     * in-process. This starts one process per entry and is only intended as a fallback for file systems that don't handle POSIX
+     * permissions correctly.
+     */
+    @Parameter(name = "use-chmod", defaultValue = "false")
+    private boolean useChmod;
+
+    /**
+     * Determines how the files of the cached installation are placed into
+     * the event store directory: <code>HARDLINK</code>, <code>SYMLINK</code>
+     * or <code>COPY</code>. Links fall back to copying if the file system
+     * does not support them. Defaults to <code>HARDLINK</code>.
+     */
+    @Parameter(name = "install-mode", defaultValue = "HARDLINK")
+    private InstallMode installMode = InstallMode.HARDLINK;
+
+    /**
+     * Unpack a "tar.gz" archive while it is downloaded instead of
+     * downloading it completely first. The archive is then loaded with a
+     * single connection and an interrupted download starts again from the
+     * beginning. A download that can be resumed is always finished first.
+     * Defaults to <code>false</code>.
+     */
+    @Parameter(name = "pipelined-extract", defaultValue = "false")
+    private boolean pipelinedExtract = false;
+
+    /**
+     * Keep a copy of the downloaded archive in the cache directory when it
+     * is unpacked while downloading. The extracted content is always
+     * cached. Defaults to <code>true</code>.
+     */
+    @Parameter(name = "cache-archive", defaultValue = "true")
+    private boolean cacheArchive = true;
 
-    @Parameter(defaultValue = "${session}", readonly = true)
-    private MavenSession mavenSession;
+    /**
+     * Number of ZIP entries to extract in parallel. A value of
+     * <code>0</code> uses the number of available processors. Defaults to
+     * <code>0</code>.
+     */
+    @Parameter(name = "unpack-threads", defaultValue = "0")
+    private int unpackThreads;
+
+    /**
+     * Implementation used to extract ZIP archives: <code>ZIPFILE</code> or
+     * <code>MMAP</code> (memory maps the archive and falls back to
+     * <code>ZIPFILE</code> for archives it doesn't support). Defaults to
+     * <code>ZIPFILE</code>.
+     */
+    @Parameter(name = "unpack-engine", defaultValue = "ZIPFILE")
+    private UnpackEngine unpackEngine = UnpackEngine.ZIPFILE;
 
-    @Component
-    private BuildPluginManager pluginManager;
+    /**
+     * Number of threads used to decompress "tar.gz" archives. With more
+     * than one thread, reading, inflating and unpacking run in a pipeline,
+     * and BGZF archives are inflated in parallel. A value of <code>0</code>
+     * uses the number of available processors. Defaults to <code>1</code>.
+     */
+    @Parameter(name = "gzip-threads", defaultValue = "1")
+    private int gzipThreads = 1;
 
     @Override
     protected final void executeGoal() throws MojoExecutionException {
-        assertParametersNotNull();
+
+        final ArchiveCache cache = new ArchiveCache(getCacheDir());
+        final String url = getDownloadUrl();
 
         // Do nothing if already in place
-        if (getEventStoreDir().exists()) {
-            LOG.info("Events store directory already exists: " + getEventStoreDir());
-        } else {
-            final File archive = downloadEventStoreArchive();
-            unpack(archive);
+        if (getEventStoreDir().exists() && isInstalledOrRepaired(cache, url)) {
+            return;
         }
+
+        String sha256 = findInstalled(cache, url);
+        if (sha256 == null) {
+            if (pipelinedExtract && url.endsWith(".tar.gz") && !cache.getArchive(url).exists()
+                    && !HttpDownloader.getJournalFile(cache.getArchive(url)).exists()) {
+                sha256 = downloadAndUnpack(cache);
+            } else {
+                sha256 = unpackToCache(cache, downloadEventStoreArchive(cache));
+            }
+        }
+        install(cache, sha256);
+
+    }
+
+    /**
+     * Returns the manifest file that lists all files placed into the event
+     * store directory. It is written after the last file was placed.
+     * 
+     * @return Manifest file next to the event store directory.
+     * 
+     * @throws MojoExecutionException
+     *             Error initializing the variables necessary to construct the
+     *             result.
+     */
+    public final File getManifestFile() throws MojoExecutionException {
+        return new File(getEventStoreDir().getParentFile(), getEventStoreDir().getName() + ".manifest");
     }
 
-    private void assertParametersNotNull() throws MojoExecutionException {
-        LOG.info("mavenProject={}", mavenProject);
-        LOG.info("mavenSession={}", mavenSession);
-        LOG.info("pluginManager={}", pluginManager);
-        if (mavenProject == null) {
-            throw new MojoExecutionException("mavenProject==null");
+    private File getInstallBaseDir(final String url) throws MojoExecutionException {
+        if (url.endsWith(".zip")) {
+            // All files are in the root of the ZIP file (not in a sub folder as
+            // with "tar.gz")
+            return getEventStoreDir();
         }
-        if (mavenSession == null) {
-            throw new MojoExecutionException("mavenSession==null");
+        return getEventStoreDir().getParentFile();
+    }
+
+    private boolean isInstalledOrRepaired(final ArchiveCache cache, final String url) throws MojoExecutionException {
+
+        final InstallManifest manifest = InstallManifest.load(getManifestFile());
+        if (manifest == null) {
+            LOG.info("Events store directory has no install manifest (incomplete or from an older version) - Installing again: "
+                    + getEventStoreDir());
+            return false;
+        }
+        final String expected = findInstalled(cache, url);
+        if (expected != null && !expected.equals(manifest.getArchiveSha256())) {
+            LOG.info("Events store directory contains another archive - Installing again: " + getEventStoreDir());
+            return false;
         }
-        if (pluginManager == null) {
-            throw new MojoExecutionException("pluginManager==null");
+        final List<InstallManifest.Entry> broken = manifest.verify(getInstallBaseDir(url));
+        if (broken.isEmpty()) {
+            LOG.info("Events store directory already exists: " + getEventStoreDir());
+            return true;
+        }
+        LOG.info("Repairing " + broken.size() + " missing or changed file(s) in: " + getEventStoreDir());
+        try {
+            if (repair(cache, manifest.getArchiveSha256(), broken, getInstallBaseDir(url))) {
+                return true;
+            }
+        } catch (final IOException ex) {
+            throw new MojoExecutionException("Error repairing event store directory: " + getEventStoreDir(), ex);
+        }
+        LOG.info("Cached installation cannot be used for repair - Installing again: " + getEventStoreDir());
+        return false;
+
+    }
+
+    private boolean repair(final ArchiveCache cache, final String sha256, final List<InstallManifest.Entry> broken,
+            final File baseDir) throws IOException {
+
+        final ArchiveCache.CacheLock lock = cache.lock(sha256);
+        try {
+            if (!cache.isInstalled(sha256)) {
+                return false;
+            }
+            final File installDir = cache.getInstallDir(sha256);
+
+            // Hard links share the content with the cache, so the cached files may be broken as well
+            for (final InstallManifest.Entry entry : InstallManifest.verify(installDir, broken)) {
+                final Path cached = installDir.toPath().resolve(entry.getPath());
+                if (!Files.isRegularFile(cached) || Files.size(cached) != entry.getSize()
+                        || InstallManifest.crc(cached) != entry.getCrc()) {
+                    LOG.info("Cached file was changed - Removing installation from cache: " + cached);
+                    cache.invalidate(sha256);
+                    return false;
+                }
+                entry.restoreAttributes(cached);
+            }
+
+            InstallMode mode = installMode;
+            for (final InstallManifest.Entry entry : broken) {
+                final Path target = baseDir.toPath().resolve(entry.getPath());
+                Files.createDirectories(target.getParent());
+                mode = ArchiveCache.installFile(installDir.toPath().resolve(entry.getPath()), target, mode);
+            }
+            return true;
+        } finally {
+            lock.release();
         }
+
     }
 
     /**
      * Returns the file where the result of the download is located.
      * 
-     * @return File where loaded bytes are stored.
+     * @return File in the cache directory where loaded bytes are stored.
      * 
      * @throws MojoExecutionException
      *             Error initializing the variables necessary to construct the
      *             result.
      */
     public final File getDownloadFile() throws MojoExecutionException {
-        final String name = FilenameUtils.getName(getDownloadUrl());
-        return new File(getEventStoreDir().getParentFile(), name);
+        return new ArchiveCache(getCacheDir()).getArchive(getDownloadUrl());
     }
 
     private URL createDownloadURL() throws MojoExecutionException {
@@ -132,55 +268,203 @@ public final class EventStoreDownloadMojo extends AbstractEventStoreMojo {
         }
     }
 
-    private File downloadEventStoreArchive() throws MojoExecutionException {
+    private File downloadEventStoreArchive(final ArchiveCache cache) throws MojoExecutionException {
 
         final URL url = createDownloadURL();
         try {
-            final File file = getDownloadFile();
-            if (file.exists()) {
-                LOG.info("Archive already exists in target directory: " + file);
-            } else {
-                LOG.info("Dowloading archive: " + url);
-                // Cache the file locally in the temporary directory
-                final File tmpFile = new File(Utils4J.getTempDir(), file.getName());
-                if (!tmpFile.exists()) {
-                    download(url, tmpFile);
-                    LOG.info("Archive downloaded to: " + tmpFile);
+            final ArchiveCache.CacheLock lock = cache.lock(url.toString());
+            try {
+                final File file = cache.getArchive(url.toString());
+                if (file.exists()) {
+                    LOG.info("Archive already exists in cache: " + file);
+                } else {
+                    LOG.info("Dowloading archive: " + url);
+                    mkDirsIfNecessary(file.getParentFile());
+                    download(url, file);
+                    LOG.info("Archive downloaded to: " + file);
                 }
-                FileUtils.copyFile(tmpFile, file);
-                LOG.info("Archive copied from '" + tmpFile + "' to:" + file);
+                return file;
+            } finally {
+                lock.release();
             }
-            return file;
         } catch (final IOException ex) {
             throw new MojoExecutionException("Error downloading event store archive: " + url, ex);
         }
     }
 
-    private void download(final URL url, final File file) throws MojoExecutionException {
+    private void download(final URL url, final File file) throws IOException {
+        new HttpDownloader(downloadSegments, TIMEOUT_30_SECONDS, getHttpProxy()).download(url, file);
+    }
+
+    private String findInstalled(final ArchiveCache cache, final String url) throws MojoExecutionException {
+        try {
+            return cache.findInstalledSha256(url);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException("Error reading the archive cache: " + cache.getCacheDir(), ex);
+        }
+    }
+
+    private String unpackToCache(final ArchiveCache cache, final File archive) throws MojoExecutionException {
 
-        executeMojo(
-                plugin(groupId("com.googlecode.maven-download-plugin"), artifactId("download-maven-plugin"),
-                        version("1.3.0")),
-                goal("wget"),
-                configuration(element(name("url"), url.toString()),
-                        element(name("outputDirectory"), file.getParent()),
-                        element(name("outputFileName"), file.getName()), element(name("skipCache"), "true")),
-                executionEnvironment(mavenProject, mavenSession, pluginManager));
+        try {
+            final String sha256 = cache.getArchiveSha256(archive);
+            final ArchiveCache.CacheLock lock = cache.lock(sha256);
+            try {
+                if (cache.isInstalled(sha256)) {
+                    LOG.info("Using cached installation: " + cache.getInstallDir(sha256));
+                } else {
+                    final File stagingDir = cache.createStagingDir(sha256);
+                    LOG.info("Unpack event store to cache directory: " + stagingDir);
+                    try {
+                        unpack(archive, stagingDir);
+                        cache.commitInstall(stagingDir, sha256);
+                    } catch (final IOException | MojoExecutionException | RuntimeException ex) {
+                        deleteStagingDir(stagingDir, ex);
+                        throw ex;
+                    }
+                    deleteStagingDir(stagingDir, null);
+                }
+            } finally {
+                lock.release();
+            }
+            return sha256;
+        } catch (final IOException ex) {
+            throw new MojoExecutionException("Error unpacking event store archive: " + archive, ex);
+        }
 
     }
 
-    private void unpack(final File archive) throws MojoExecutionException {
+    private String downloadAndUnpack(final ArchiveCache cache) throws MojoExecutionException {
 
-        LOG.info("Unpack event store to target directory: " + getEventStoreDir());
+        final URL url = createDownloadURL();
+        try {
+            final ArchiveCache.CacheLock urlLock = cache.lock(url.toString());
+            try {
+                final String installed = cache.findInstalledSha256(url.toString());
+                if (installed != null) {
+                    // Another build was faster
+                    return installed;
+                }
+                final File archive = cache.getArchive(url.toString());
+                mkDirsIfNecessary(archive.getParentFile());
+                final File stagingDir = cache.createStagingDir(ArchiveCache.sha256(url.toString()));
+                final String sha256;
+                try {
+                    LOG.info("Dowloading and unpacking archive: " + url);
+                    LOG.info("Unpack event store to cache directory: " + stagingDir);
+                    final MessageDigest md = ArchiveCache.createSha256();
+                    final long size = downloadAndUnTarGz(url, cacheArchive ? archive : null, md, stagingDir);
+                    sha256 = ArchiveCache.toHex(md.digest());
+                    final ArchiveCache.CacheLock shaLock = cache.lock(sha256);
+                    try {
+                        if (!cache.isInstalled(sha256)) {
+                            cache.commitInstall(stagingDir, sha256);
+                        }
+                        cache.setArchiveSha256(url.toString(), sha256, size);
+                    } finally {
+                        shaLock.release();
+                    }
+                } catch (final IOException | MojoExecutionException | RuntimeException ex) {
+                    deleteStagingDir(stagingDir, ex);
+                    throw ex;
+                }
+                deleteStagingDir(stagingDir, null);
+                return sha256;
+            } finally {
+                urlLock.release();
+            }
+        } catch (final IOException ex) {
+            throw new MojoExecutionException("Error downloading and unpacking event store archive: " + url, ex);
+        }
+
+    }
+
+    /**
+     * Deletes the staging directory after the extraction finished. A
+     * failure is added to the error that aborted the extraction, so it
+     * doesn't hide the cause.
+     */
+    private static void deleteStagingDir(final File stagingDir,
+            final Exception error) throws IOException {
+        if (!stagingDir.exists()) {
+            return;
+        }
+        try {
+            FileUtils.deleteDirectory(stagingDir);
+        } catch (final IOException ex) {
+            if (error == null) {
+                throw ex;
+            }
+            error.addSuppressed(ex);
+        }
+    }
+
+    private long downloadAndUnTarGz(final URL url, final File archive, final MessageDigest md, final File destDir)
+            throws IOException, MojoExecutionException {
+
+        final File partFile = (archive == null) ? null : HttpDownloader.getPartFile(archive);
+        try {
+            final CountingInputStream counter = new CountingInputStream(
+                    new DigestInputStream(new HttpDownloader(1, TIMEOUT_30_SECONDS, getHttpProxy()).openStream(url), md));
+            final InputStream in;
+            if (partFile == null) {
+                in = counter;
+            } else {
+                in = new TeeInputStream(counter, new BufferedOutputStream(new FileOutputStream(partFile), MB), true);
+            }
+            final InputStream gzIn = ParallelGzip.open(new BufferedInputStream(in, MB), gzipThreads);
+            final TarArchiveInputStream tarIn = new TarArchiveInputStream(gzIn);
+            try {
+                unTar(tarIn, destDir, useChmod);
+                // The TAR end marker may be followed by padding and the GZIP trailer
+                IOUtils.skip(gzIn, Long.MAX_VALUE);
+            } finally {
+                tarIn.close();
+            }
+            if (partFile != null) {
+                try {
+                    Files.move(partFile.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (final AtomicMoveNotSupportedException ex) {
+                    Files.move(partFile.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                LOG.info("Archive downloaded to: " + archive);
+            }
+            return counter.getByteCount();
+        } finally {
+            if (partFile != null) {
+                Files.deleteIfExists(partFile.toPath());
+            }
+        }
+
+    }
+
+    private void install(final ArchiveCache cache, final String sha256) throws MojoExecutionException {
+
+        try {
+            LOG.info("Install event store to target directory: " + getEventStoreDir());
+            Files.deleteIfExists(getManifestFile().toPath());
+            final InstallManifest manifest;
+            final ArchiveCache.CacheLock lock = cache.lock(sha256);
+            try {
+                manifest = cache.getManifest(sha256);
+            } finally {
+                lock.release();
+            }
+            ArchiveCache.install(cache.getInstallDir(sha256), getInstallBaseDir(getDownloadUrl()), installMode);
+            manifest.save(getManifestFile());
+        } catch (final IOException ex) {
+            throw new MojoExecutionException("Error installing event store to: " + getEventStoreDir(), ex);
+        }
+
+    }
+
+    private void unpack(final File archive, final File destDir) throws MojoExecutionException {
 
         if (archive.getName().endsWith(".zip")) {
-            // All files are in the root of the ZIP file (not in a sub folder as
-            // with "tar.gz")
-            final File destDir = getEventStoreDir();
-            unzip(archive, destDir);
+            unzip(archive, destDir, unpackThreads, unpackEngine);
         } else if (archive.getName().endsWith(".tar.gz")) {
-            final File destDir = getEventStoreDir().getParentFile();
-            unTarGz(archive, destDir);
+            unTarGz(archive, destDir, useChmod, gzipThreads);
         } else {
             throw new MojoExecutionException("Cannot unpack file: " + archive.getName());
         }
@@ -199,46 +483,50 @@ public final class EventStoreDownloadMojo extends AbstractEventStoreMojo {
      *             Error unzipping the file.
      */
     public static void unzip(final File zipFile, final File destDir) throws MojoExecutionException {
+        unzip(zipFile, destDir, 1);
+    }
 
-        try {
-            final ZipFile zip = new ZipFile(zipFile);
-            try {
-                final Enumeration<? extends ZipEntry> enu = zip.entries();
-                while (enu.hasMoreElements()) {
-                    final ZipEntry entry = (ZipEntry) enu.nextElement();
-                    final File file = new File(entry.getName());
-                    if (file.isAbsolute()) {
-                        throw new IllegalArgumentException(
-                                "Only relative path entries are allowed! [" + entry.getName() + "]");
-                    }
-                    if (entry.isDirectory()) {
-                        final File dir = new File(destDir, entry.getName());
-                        mkDirsIfNecessary(dir);
-                    } else {
-                        LOG.info("Extracting: " + entry.getName());
-                        final File outFile = new File(destDir, entry.getName());
-                        mkDirsIfNecessary(outFile.getParentFile());
-                        final InputStream in = new BufferedInputStream(zip.getInputStream(entry));
-                        try {
-                            final OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile));
-                            try {
-                                final byte[] buf = new byte[4096];
-                                int len;
-                                while ((len = in.read(buf)) > 0) {
-                                    out.write(buf, 0, len);
-                                }
-                            } finally {
-                                out.close();
-                            }
-                        } finally {
-                            in.close();
-                        }
-                    }
-                }
-            } finally {
-                zip.close();
-            }
+    /**
+     * Unzips the given ZIP file into a target directory using multiple
+     * threads.
+     * 
+     * @param zipFile
+     *            ZIP file.
+     * @param destDir
+     *            Target directory.
+     * @param threads
+     *            Number of entries to extract in parallel. A value less than
+     *            one uses the number of available processors.
+     * 
+     * @throws MojoExecutionException
+     *             Error unzipping the file.
+     */
+    public static void unzip(final File zipFile, final File destDir, final int threads) throws MojoExecutionException {
+        unzip(zipFile, destDir, threads, UnpackEngine.ZIPFILE);
+    }
 
+    /**
+     * Unzips the given ZIP file into a target directory using multiple
+     * threads and a given implementation.
+     * 
+     * @param zipFile
+     *            ZIP file.
+     * @param destDir
+     *            Target directory.
+     * @param threads
+     *            Number of entries to extract in parallel. A value less than
+     *            one uses the number of available processors.
+     * @param engine
+     *            Implementation used to read the archive.
+     * 
+     * @throws MojoExecutionException
+     *             Error unzipping the file.
+     */
+    public static void unzip(final File zipFile, final File destDir, final int threads, final UnpackEngine engine)
+            throws MojoExecutionException {
+
+        try {
+            new ZipExtractor(threads, engine).extract(zipFile, destDir);
         } catch (final IOException ex) {
             throw new MojoExecutionException("Error unzipping event store archive: " + zipFile, ex);
         }
@@ -257,34 +545,58 @@ public final class EventStoreDownloadMojo extends AbstractEventStoreMojo {
      *             Error unpacking the file.
      */
     public static void unTarGz(final File archive, final File destDir) throws MojoExecutionException {
+        unTarGz(archive, destDir, false);
+    }
+
+    /**
+     * Unpacks the given TAR/GZ file into a target directory. It assumes that
+     * the content of the archive only contains relative paths.
+     * 
+     * @param archive
+     *            TAR/GZ archive file.
+     * @param destDir
+     *            Target directory.
+     * @param useChmod
+     *            {@code true} if the external "chmod" command should be used
+     *            to set the file mode or {@code false} to set the POSIX file
+     *            permissions in-process.
+     * 
+     * @throws MojoExecutionException
+     *             Error unpacking the file.
+     */
+    public static void unTarGz(final File archive, final File destDir, final boolean useChmod)
+            throws MojoExecutionException {
+        unTarGz(archive, destDir, useChmod, 1);
+    }
+
+    /**
+     * Unpacks the given TAR/GZ file into a target directory using multiple
+     * threads for decompression. It assumes that the content of the archive
+     * only contains relative paths.
+     * 
+     * @param archive
+     *            TAR/GZ archive file.
+     * @param destDir
+     *            Target directory.
+     * @param useChmod
+     *            {@code true} if the external "chmod" command should be used
+     *            to set the file mode or {@code false} to set the POSIX file
+     *            permissions in-process.
+     * @param gzipThreads
+     *            Number of threads used to decompress the archive. See
+     *            {@link ParallelGzip#open(InputStream, int)}.
+     * 
+     * @throws MojoExecutionException
+     *             Error unpacking the file.
+     */
+    public static void unTarGz(final File archive, final File destDir, final boolean useChmod, final int gzipThreads)
+            throws MojoExecutionException {
 
         try {
             final TarArchiveInputStream tarIn = new TarArchiveInputStream(
-                    new GzipCompressorInputStream(new BufferedInputStream(new FileInputStream(archive))));
+                    ParallelGzip.open(new BufferedInputStream(new FileInputStream(archive)), gzipThreads));
             try {
-                TarArchiveEntry entry;
-                while ((entry = (TarArchiveEntry) tarIn.getNextEntry()) != null) {
-                    LOG.info("Extracting: " + entry.getName());
-                    final File file = new File(destDir, entry.getName());
-                    if (entry.isDirectory()) {
-                        mkDirsIfNecessary(file);
-                    } else {
-                        mkDirsIfNecessary(file.getParentFile());
-                        int count;
-                        final byte[] data = new byte[MB];
-                        final FileOutputStream fos = new FileOutputStream(file);
-                        final BufferedOutputStream dest = new BufferedOutputStream(fos, MB);
-                        try {
-                            while ((count = tarIn.read(data, 0, MB)) != -1) {
-                                dest.write(data, 0, count);
-                            }
-                        } finally {
-                            dest.close();
-                        }
-                        entry.getMode();
-                    }
-                    applyFileMode(file, new FileMode(entry.getMode()));
-                }
+                unTar(tarIn, destDir, useChmod);
             } finally {
                 tarIn.close();
             }
@@ -293,6 +605,25 @@ public final class EventStoreDownloadMojo extends AbstractEventStoreMojo {
         }
     }
 
+    private static void unTar(final TarArchiveInputStream tarIn, final File destDir, final boolean useChmod)
+            throws IOException, MojoExecutionException {
+        int count = 0;
+        TarArchiveEntry entry;
+        while ((entry = (TarArchiveEntry) tarIn.getNextEntry()) != null) {
+            LOG.debug("Extracting: {}", entry.getName());
+            count++;
+            final File file = new File(destDir, entry.getName());
+            if (entry.isDirectory()) {
+                mkDirsIfNecessary(file);
+            } else {
+                mkDirsIfNecessary(file.getParentFile());
+                FileTransfer.write(tarIn, file);
+            }
+            applyFileMode(file, new FileMode(entry.getMode()), useChmod);
+        }
+        LOG.info("Extracted {} entries", count);
+    }
+
     private static void mkDirsIfNecessary(final File dir) throws IOException {
         if (dir.exists()) {
             return;
@@ -305,24 +636,16 @@ public final class EventStoreDownloadMojo extends AbstractEventStoreMojo {
     // CHECKSTYLE:OFF External code
     // Inspired by:
     // https://raw.githubusercontent.com/bluemel/RapidEnv/master/org.rapidbeans.rapidenv/src/org/rapidbeans/rapidenv/Unpacker.java
-    private static void applyFileMode(final File file, final FileMode fileMode)
+    private static void applyFileMode(final File file, final FileMode fileMode, final boolean useChmod)
             throws MojoExecutionException {
 
         if (OS.isFamilyUnix() || OS.isFamilyMac()) {
-            final String smode = fileMode.toChmodStringFull();
-            final CommandLine cmdLine = new CommandLine("chmod");
-            cmdLine.addArgument(smode);
-            cmdLine.addArgument(file.getAbsolutePath(), false);
-            final Executor executor = new DefaultExecutor();
-            try {
-                final int result = executor.execute(cmdLine);
-                if (result != 0) {
-                    throw new MojoExecutionException("Error # " + result + " while trying to set mode \""
-                            + smode + "\" for file: " + file.getAbsolutePath());
-                }
-            } catch (final IOException ex) {
-                throw new MojoExecutionException("Error while trying to set mode \"" + smode + "\" for file: "
-                        + file.getAbsolutePath(), ex);
+            // Special bits cannot be expressed as POSIX file permissions
+            if (useChmod || !POSIX_SUPPORTED || fileMode.isSetUid() || fileMode.isSetGid()
+                    || fileMode.isStickyBit()) {
+                chmod(file, fileMode);
+            } else {
+                setPosixFilePermissions(file, fileMode);
             }
         } else {
             file.setReadable(fileMode.isUr() || fileMode.isGr() || fileMode.isOr());
@@ -330,6 +653,35 @@ public final class EventStoreDownloadMojo extends AbstractEventStoreMojo {
             file.setExecutable(fileMode.isUx() || fileMode.isGx() || fileMode.isOx());
         }
     }
+
+    private static void setPosixFilePermissions(final File file, final FileMode fileMode)
+            throws MojoExecutionException {
+
+        try {
+            Files.setPosixFilePermissions(file.toPath(), fileMode.toPosixPermissions());
+        } catch (final IOException ex) {
+            throw new MojoExecutionException("Error while trying to set mode \"" + fileMode + "\" for file: "
+                    + file.getAbsolutePath(), ex);
+        }
+    }
+
+    private static void chmod(final File file, final FileMode fileMode) throws MojoExecutionException {
+        final String smode = fileMode.toChmodStringFull();
+        final CommandLine cmdLine = new CommandLine("chmod");
+        cmdLine.addArgument(smode);
+        cmdLine.addArgument(file.getAbsolutePath(), false);
+        final Executor executor = new DefaultExecutor();
+        try {
+            final int result = executor.execute(cmdLine);
+            if (result != 0) {
+                throw new MojoExecutionException("Error # " + result + " while trying to set mode \""
+                        + smode + "\" for file: " + file.getAbsolutePath());
+            }
+        } catch (final IOException ex) {
+            throw new MojoExecutionException("Error while trying to set mode \"" + smode + "\" for file: "
+                    + file.getAbsolutePath(), ex);
+        }
+    }
     // CHECKSTYLE:ON
 
 }
@@ -20,10 +20,12 @@ package org.fuin.esmp;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.exec.DefaultExecutor;
 import org.apache.commons.exec.PumpStreamHandler;
+import org.apache.commons.exec.environment.EnvironmentUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -32,7 +34,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Executes a script after starting the event store.
+ * Executes a script after starting the event store. If the instance was
+ * started by this plugin, the script gets its state in the environment
+ * variables <code>EVENTSTORE_PID</code>, <code>EVENTSTORE_HOST</code>,
+ * <code>EVENTSTORE_TCP_PORT</code> and <code>EVENTSTORE_HTTP_PORT</code>.
  *
  */
 @Mojo(name = "post-start", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST, requiresProject = false)
@@ -59,14 +64,31 @@ public final class EventStorePostStartMojo extends AbstractEventStoreMojo {
         }
         LOG.info("postStartCommand={}", postStartCommand);
 
+        final InstanceState state = readState();
+        if (state == null) {
+            LOG.info("No state of event store instance '{}' found"
+                    + " - Environment variables are not set",
+                    getInstanceName());
+        }
+
         final CommandLine cmdLine = new CommandLine(postStartCommand);
         final DefaultExecutor executor = new DefaultExecutor();
         try {
+            final Map<String, String> env = EnvironmentUtils
+                    .getProcEnvironment();
+            if (state != null) {
+                env.put("EVENTSTORE_PID", String.valueOf(state.getPid()));
+                env.put("EVENTSTORE_HOST", state.getHost());
+                env.put("EVENTSTORE_TCP_PORT",
+                        String.valueOf(state.getTcpPort()));
+                env.put("EVENTSTORE_HTTP_PORT",
+                        String.valueOf(state.getHttpPort()));
+            }
             final ByteArrayOutputStream bos = new ByteArrayOutputStream();
             final PumpStreamHandler psh = new PumpStreamHandler(bos);
             executor.setStreamHandler(psh);
             executor.setWorkingDirectory(getEventStoreDir());
-            final int exitCode = executor.execute(cmdLine);
+            final int exitCode = executor.execute(cmdLine, env);
             messages = asList(bos.toString());
             if (exitCode == 0) {
                 LOG.info("Post-start command executed successfully");
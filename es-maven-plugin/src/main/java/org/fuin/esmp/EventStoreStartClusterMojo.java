@@ -0,0 +1,445 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts an event store cluster. All nodes are launched in parallel from the
+ * same installation, each with its own ports, database and log directory. The
+ * goal returns when all nodes are ready and a leader is elected.
+ * 
+ */
+@Mojo(name = "start-cluster", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST, requiresProject = false)
+public final class EventStoreStartClusterMojo extends AbstractEventStoreStartMojo {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(EventStoreStartClusterMojo.class);
+
+    private static final String INT_IP = "--int-ip";
+
+    private static final String INT_TCP_PORT = "--int-tcp-port";
+
+    private static final String INT_HTTP_PORT = "--int-http-port";
+
+    private static final String CLUSTER_SIZE = "--cluster-size";
+
+    private static final String DISCOVER_VIA_DNS = "--discover-via-dns";
+
+    private static final String GOSSIP_SEED = "--gossip-seed";
+
+    private static final String LOG_DIR = "--log";
+
+    private static final List<String> NODE_ARGUMENTS = Arrays.asList(EXT_IP,
+            EXT_TCP_PORT, EXT_HTTP_PORT, INT_IP, INT_TCP_PORT, INT_HTTP_PORT,
+            CLUSTER_SIZE, DISCOVER_VIA_DNS, GOSSIP_SEED, DB, LOG_DIR);
+
+    private static final int INT_TCP = 1112;
+
+    private static final int EXT_TCP = 1113;
+
+    private static final int INT_HTTP = 2112;
+
+    private static final int EXT_HTTP = 2113;
+
+    /**
+     * Number of nodes. Defaults to 3.
+     * 
+     */
+    @Parameter(name = "cluster-size", defaultValue = "3")
+    private int clusterSize = 3;
+
+    /**
+     * Additional command line arguments passed to all nodes. IP addresses,
+     * ports, cluster size, gossip seeds, database and log directory are set
+     * by the goal.
+     * 
+     */
+    @Parameter(name = "arguments")
+    private String[] arguments;
+
+    /**
+     * IP address of all nodes. Defaults to <code>127.0.0.1</code>.
+     * 
+     */
+    @Parameter(name = "ext-ip", defaultValue = "127.0.0.1")
+    private String extIp = "127.0.0.1";
+
+    /**
+     * Node <code>n</code> (starting with 0) uses the default ports
+     * <code>1112</code>, <code>1113</code>, <code>2112</code> and
+     * <code>2113</code> plus <code>n * port-offset</code>. Defaults to 100.
+     * 
+     */
+    @Parameter(name = "port-offset", defaultValue = "100")
+    private int portOffset = 100;
+
+    /**
+     * Lets the operating system choose free ports for all nodes instead of
+     * deriving them with the <code>port-offset</code>. Defaults to
+     * <code>false</code>.
+     * 
+     */
+    @Parameter(name = "allocate-ports", defaultValue = "false")
+    private boolean allocatePorts = false;
+
+    /**
+     * Determines how to detect that a single node is ready. Only the leader
+     * logs the <code>up-message</code>, so <code>LOG</code> is not useful
+     * here. Defaults to <code>HTTP</code>.
+     * 
+     */
+    @Parameter(name = "node-readiness-mode", defaultValue = "HTTP")
+    private ReadinessMode nodeReadinessMode = ReadinessMode.HTTP;
+
+    /**
+     * Path of the gossip requested from the external HTTP ports to find out
+     * if a leader is elected. Defaults to <code>/gossip</code>.
+     * 
+     */
+    @Parameter(name = "gossip-path", defaultValue = "/gossip")
+    private String gossipPath = "/gossip";
+
+    @Override
+    protected final void executeGoal() throws MojoExecutionException {
+        initCommand();
+        if (clusterSize < 1) {
+            throw new MojoExecutionException(
+                    "The cluster-size must be at least 1: " + clusterSize);
+        }
+        LOG.info("command={}", getCommand());
+        LOG.info("cluster-size={}", clusterSize);
+        LOG.info("arguments={}", Arrays.toString(arguments));
+        LOG.info("node-readiness-mode={}", nodeReadinessMode);
+
+        final List<Node> nodes = createNodes();
+        final List<InstanceState> states;
+        boolean ready = false;
+        try {
+            for (final Node node : nodes) {
+                checkNotRunning(node.state.getName());
+            }
+            final long started = System.currentTimeMillis();
+            states = launchAll(nodes);
+            waitForLeader(nodes, states);
+            LOG.info("Cluster of {} nodes ready after {} ms", clusterSize,
+                    System.currentTimeMillis() - started);
+            ready = true;
+        } finally {
+            if (!ready && allocatePorts) {
+                // Released by the stop-cluster goal otherwise
+                for (final Node node : nodes) {
+                    PortAllocator.release(node.state.getPorts());
+                }
+            }
+        }
+
+        final StringBuilder seeds = new StringBuilder();
+        for (final InstanceState state : states) {
+            setProjectProperty("eventstore." + state.getName() + ".tcp.port",
+                    String.valueOf(state.getTcpPort()));
+            setProjectProperty("eventstore." + state.getName() + ".http.port",
+                    String.valueOf(state.getHttpPort()));
+            if (seeds.length() > 0) {
+                seeds.append(',');
+            }
+            seeds.append(state.getHost()).append(':')
+                    .append(state.getHttpPort());
+        }
+        setProjectProperty("eventstore." + getInstanceName()
+                + ".gossip.seeds", seeds.toString());
+    }
+
+    private List<Node> createNodes() throws MojoExecutionException {
+
+        final int[][] ports = new int[clusterSize][];
+        if (allocatePorts) {
+            try {
+                final int[] free = PortAllocator.allocate(4 * clusterSize);
+                for (int i = 0; i < clusterSize; i++) {
+                    ports[i] = Arrays.copyOfRange(free, 4 * i, 4 * i + 4);
+                }
+            } catch (final IOException ex) {
+                throw new MojoExecutionException(
+                        "Couldn't allocate free ports", ex);
+            }
+        } else {
+            for (int i = 0; i < clusterSize; i++) {
+                final int offset = i * portOffset;
+                ports[i] = new int[] { INT_TCP + offset, EXT_TCP + offset,
+                        INT_HTTP + offset, EXT_HTTP + offset };
+            }
+        }
+
+        final File baseDir = new File(getTargetDir(),
+                "event-store-" + getInstanceName());
+        final List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < clusterSize; i++) {
+            final String name = nodeName(getInstanceName(), i + 1);
+            final File nodeDir = new File(baseDir, "node" + (i + 1));
+            final File dbDir = new File(nodeDir, "db");
+            final List<String> args = new ArrayList<>();
+            if (arguments != null) {
+                for (final String argument : arguments) {
+                    if (!NODE_ARGUMENTS.contains(argument.split("=", 2)[0])) {
+                        args.add(argument);
+                    }
+                }
+            }
+            args.add(INT_IP + "=" + extIp);
+            args.add(EXT_IP + "=" + extIp);
+            args.add(INT_TCP_PORT + "=" + ports[i][0]);
+            args.add(EXT_TCP_PORT + "=" + ports[i][1]);
+            args.add(INT_HTTP_PORT + "=" + ports[i][2]);
+            args.add(EXT_HTTP_PORT + "=" + ports[i][3]);
+            args.add(CLUSTER_SIZE + "=" + clusterSize);
+            args.add(DISCOVER_VIA_DNS + "=false");
+            if (clusterSize > 1) {
+                final StringBuilder seeds = new StringBuilder();
+                for (int j = 0; j < clusterSize; j++) {
+                    if (j != i) {
+                        if (seeds.length() > 0) {
+                            seeds.append(',');
+                        }
+                        // Gossip uses the internal HTTP port
+                        seeds.append(extIp).append(':').append(ports[j][2]);
+                    }
+                }
+                args.add(GOSSIP_SEED + "=" + seeds);
+            }
+            args.add(DB + "=" + dbDir.getAbsolutePath());
+            args.add(LOG_DIR + "=" + new File(nodeDir, "logs").getAbsolutePath());
+            nodes.add(new Node(
+                    new InstanceState(name, null, extIp, ports[i][1],
+                            ports[i][3], 0, dbDir.getAbsolutePath(), 0, 0)
+                                    .withInternalPorts(ports[i][0], ports[i][2]),
+                    args.toArray(new String[args.size()]),
+                    new File(getTargetDir(), "event-store-" + name + ".log")));
+        }
+        return nodes;
+
+    }
+
+    private List<InstanceState> launchAll(final List<Node> nodes)
+            throws MojoExecutionException {
+
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                nodes.size(), r -> {
+                    final Thread thread = new Thread(r, "es-node");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            final List<Future<InstanceState>> futures = new ArrayList<>();
+            for (final Node node : nodes) {
+                futures.add(executor.submit(() -> launch(node.state,
+                        node.arguments, node.logFile, nodeReadinessMode)));
+            }
+            final List<InstanceState> states = new ArrayList<>();
+            MojoExecutionException failure = null;
+            for (final Future<InstanceState> future : futures) {
+                try {
+                    states.add(future.get());
+                } catch (final ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause() instanceof MojoExecutionException
+                                ? (MojoExecutionException) ex.getCause()
+                                : new MojoExecutionException(
+                                        "Error starting a node", ex.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                abort(nodes);
+                throw failure;
+            }
+            return states;
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            abort(nodes);
+            throw new MojoExecutionException(
+                    "Interrupted while starting the cluster", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+
+    }
+
+    private void waitForLeader(final List<Node> nodes,
+            final List<InstanceState> states) throws MojoExecutionException {
+
+        final CompletableFuture<String> elected = new CompletableFuture<>();
+        for (final InstanceState state : states) {
+            new LeaderReadinessProbe(createURL(state, gossipPath), clusterSize,
+                    getProbeTimeoutMs()).start(elected, getSleepMs());
+        }
+        try {
+            elected.get(getMaxWaitMs(), TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            abort(nodes);
+            throw new MojoExecutionException(
+                    "Interrupted while waiting for the leader election", ex);
+        } catch (final ExecutionException | TimeoutException ex) {
+            abort(nodes);
+            throw new MojoExecutionException(
+                    "Waited too long for the leader election!");
+        } finally {
+            // Stops all probes that are still running
+            elected.cancel(false);
+        }
+
+    }
+
+    /**
+     * Kills all nodes that were launched, so a failed start doesn't leave
+     * processes behind.
+     */
+    private void abort(final List<Node> nodes) {
+        final ProcessControl control = new ProcessControl(null);
+        for (final Node node : nodes) {
+            try {
+                final InstanceState state = readState(node.state.getName());
+                if (state != null) {
+                    final ProcessControl.Identity identity = (state.getPid() == null) ? ProcessControl.Identity.OTHER
+                            : control.identify(state.getPid(), state.getStartTime());
+                    if (identity == ProcessControl.Identity.UNKNOWN) {
+                        // Keep the state, so the stop goal can still request a shutdown
+                        LOG.warn("Not killing node '{}': Cannot verify that process {} is the event store",
+                                state.getName(), state.getPid());
+                    } else {
+                        if (identity == ProcessControl.Identity.SAME) {
+                            for (final Long child : control.descendants(state.getPid())) {
+                                control.terminate(child, true);
+                            }
+                            control.terminate(state.getPid(), true);
+                        }
+                        deleteState(state.getName());
+                    }
+                }
+            } catch (final IOException | MojoExecutionException ex) {
+                LOG.error("Couldn't kill node '{}'", node.state.getName(), ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the instance name of a cluster node.
+     * 
+     * @param instanceName
+     *            Name of the cluster.
+     * @param number
+     *            Number of the node starting with 1.
+     * 
+     * @return Name like "default-node1".
+     */
+    static String nodeName(final String instanceName, final int number) {
+        return instanceName + "-node" + number;
+    }
+
+    /**
+     * Returns a pattern that matches the instance names of all nodes of a
+     * cluster.
+     * 
+     * @param instanceName
+     *            Name of the cluster.
+     * 
+     * @return Pattern for {@link #nodeName(String, int)}.
+     */
+    static Pattern nodePattern(final String instanceName) {
+        return Pattern.compile(Pattern.quote(instanceName) + "-node[0-9]+");
+    }
+
+    /**
+     * Returns the number of nodes.
+     * 
+     * @return Cluster size.
+     */
+    public final int getClusterSize() {
+        return clusterSize;
+    }
+
+    /**
+     * Sets the number of nodes.
+     * 
+     * @param clusterSize
+     *            Cluster size to set.
+     */
+    public final void setClusterSize(final int clusterSize) {
+        this.clusterSize = clusterSize;
+    }
+
+    /**
+     * Returns the additional command line arguments passed to all nodes.
+     * 
+     * @return Command line arguments.
+     */
+    public final String[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Sets the additional command line arguments passed to all nodes.
+     * 
+     * @param arguments
+     *            Command line arguments to set.
+     */
+    public final void setArguments(final String[] arguments) {
+        this.arguments = arguments;
+    }
+
+    /**
+     * Node to launch.
+     */
+    private static final class Node {
+
+        private final InstanceState state;
+
+        private final String[] arguments;
+
+        private final File logFile;
+
+        Node(final InstanceState state, final String[] arguments,
+                final File logFile) {
+            this.state = state;
+            this.arguments = arguments;
+            this.logFile = logFile;
+        }
+
+    }
+
+}
@@ -17,21 +17,18 @@
  */
 package org.fuin.esmp;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 
-import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.DaemonExecutor;
-import org.apache.commons.exec.DefaultExecuteResultHandler;
-import org.apache.commons.exec.OS;
-import org.apache.commons.exec.PumpStreamHandler;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,19 +37,13 @@ import org.slf4j.LoggerFactory;
  * 
  */
 @Mojo(name = "start", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST, requiresProject = false)
-public final class EventStoreStartMojo extends AbstractEventStoreMojo {
+public final class EventStoreStartMojo extends AbstractEventStoreStartMojo {
 
     private static final Logger LOG = LoggerFactory
             .getLogger(EventStoreStartMojo.class);
 
-    /**
-     * Name of the executable or shell script to start the event store. Defaults
-     * to the OS specific name for Windows, Linux and Mac OS families. Other OS
-     * families will cause an error if this value is not set.
-     * 
-     */
-    @Parameter(name = "command")
-    private String command;
+    /** Project property with the stream name prefix of the module. */
+    public static final String STREAM_PREFIX_PROPERTY = "eventstore.stream.prefix";
 
     /**
      * Command line arguments to pass to the executable. If no arguments are set
@@ -63,143 +54,235 @@ public final class EventStoreStartMojo extends AbstractEventStoreMojo {
     private String[] arguments;
 
     /**
-     * Number of times to wait for the server until it's up and running. After
-     * this time passed, the build will fail. This means the mojo will wait
-     * <code>maxWaitCycles</code> * <code>sleepMs</code> milliseconds for the
-     * server to finish it's startup process. Defaults to 20 times.
+     * Determines how to detect that the event store is ready: <code>LOG</code>
+     * waits for the <code>up-message</code>, <code>TCP</code> connects to the
+     * external TCP port, <code>HTTP</code> requests the
+     * <code>readiness-http-path</code> from the external HTTP port and
+     * <code>ALL</code> does all of this in parallel and uses the first one
+     * that succeeds. Defaults to <code>LOG</code>.
+     * 
+     */
+    @Parameter(name = "readiness-mode", defaultValue = "LOG")
+    private ReadinessMode readinessMode = ReadinessMode.LOG;
+
+    /**
+     * File that receives the complete output of the event store. Defaults to
+     * <code>event-store.log</code> (or
+     * <code>event-store-&lt;instance-name&gt;.log</code> for other than the
+     * default instance) in the target directory.
+     * 
+     */
+    @Parameter(name = "log-file")
+    private File logFile;
+
+    /**
+     * Lets the operating system choose free ports for
+     * <code>--ext-tcp-port</code> and <code>--ext-http-port</code> (and
+     * <code>--ext-secure-tcp-port</code> if it is one of the
+     * <code>arguments</code>). Values set in the <code>arguments</code> are
+     * replaced. This allows running several event stores side by side, for
+     * example in a parallel build. Defaults to <code>false</code>.
      * 
      */
-    @Parameter(name = "max-wait-cycles", defaultValue = "20")
-    private int maxWaitCycles = 20;
+    @Parameter(name = "allocate-ports", defaultValue = "false")
+    private boolean allocatePorts = false;
 
     /**
-     * Number of milliseconds to sleep while waiting for the server. This means
-     * the mojo will wait <code>maxWaitCycles</code> * <code>sleepMs</code>
-     * milliseconds for the server to finish it's startup process. Defaults to
-     * 500 ms.
+     * Shares the event store with all modules of a reactor build. The first
+     * module launches it and the following modules with the same
+     * <code>instance-name</code> attach to it. The event store is stopped
+     * when the last module that declares the plugin is finished or at the
+     * latest when the build ends. Defaults to <code>false</code>.
      * 
      */
-    @Parameter(name = "sleep-ms", defaultValue = "500")
-    private int sleepMs = 500;
+    @Parameter(name = "shared", defaultValue = "false")
+    private boolean shared = false;
 
     /**
-     * Message from the event store log to wait for.
+     * Publishes a stream name prefix that is unique for the module as
+     * project property <code>eventstore.stream.prefix</code>. Tests that
+     * prepend it to their stream names don't see the streams of other
+     * modules using a <code>shared</code> event store. Defaults to
+     * <code>false</code>.
      * 
      */
-    @Parameter(name = "up-message", defaultValue = "'admin' user account has been created")
-    private String upMessage = "'admin' user account has been created";
+    @Parameter(name = "isolate-streams", defaultValue = "false")
+    private boolean isolateStreams = false;
 
     @Override
     protected final void executeGoal() throws MojoExecutionException {
         init();
 
-        LOG.info("command={}", command);
+        LOG.info("command={}", getCommand());
         LOG.info("arguments={}", Arrays.toString(arguments));
+        LOG.info("readiness-mode={}", readinessMode);
+        LOG.info("log-file={}", logFile);
+        LOG.info("shared={}", shared);
 
-        final CommandLine cmdLine = createCommandLine();
-        final DefaultExecuteResultHandler resultHandler = new DefaultExecuteResultHandler();
-        final DaemonExecutor executor = new DaemonExecutor();
-        try {
-            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            final PumpStreamHandler psh = new PumpStreamHandler(bos);
-            executor.setStreamHandler(psh);
-            executor.setWorkingDirectory(getEventStoreDir());
-            executor.execute(cmdLine, resultHandler);
-            final List<String> messages = waitForHttpServer(resultHandler, bos);
-            logDebug(messages);
-            final String pid = extractPid(messages);
-            LOG.info("Event store process ID: {}", pid);
-            writePid(pid);
-        } catch (final IOException ex) {
-            throw new MojoExecutionException(
-                    "Error executing the command line: " + cmdLine, ex);
+        final InstanceState state;
+        if (shared) {
+            state = startShared();
+        } else {
+            state = start();
+        }
+        publishPorts(state);
+        if (isolateStreams) {
+            setProjectProperty(STREAM_PREFIX_PROPERTY,
+                    streamPrefix(getProject()));
         }
     }
 
-    private List<String> waitForHttpServer(
-            final DefaultExecuteResultHandler resultHandler,
-            final ByteArrayOutputStream bos) throws MojoExecutionException {
-
-        // Wait for result
-        int wait = 0;
-        while ((wait++ < maxWaitCycles) && !resultHandler.hasResult()
-                && !bos.toString().contains(upMessage)) {
-            sleep(sleepMs);
+    private InstanceState start() throws MojoExecutionException {
+        checkNotRunning(getInstanceName());
+        final int[] ports = allocatePorts ? allocateFreePorts() : new int[0];
+        boolean ready = false;
+        try {
+            final InstanceState state = launch(createState(), arguments,
+                    logFile, readinessMode);
+            ready = true;
+            return state;
+        } finally {
+            if (!ready) {
+                // Released by the stop goal otherwise
+                PortAllocator.release(ports);
+            }
         }
+    }
 
-        if (bos.toString().contains(upMessage)) {
-            // Success
-            return asList(bos.toString());
+    private InstanceState startShared() throws MojoExecutionException {
+        final SharedInstanceRegistry registry = SharedInstanceRegistry
+                .get(getSession());
+        final String user = SharedInstanceRegistry.projectKey(getProject());
+        final String name = getInstanceName();
+        final InstanceState state;
+        synchronized (registry.lock(name)) {
+            final InstanceState attached = registry.attach(name, user,
+                    getStateFile());
+            if (attached != null && isAlive(attached)) {
+                LOG.info("Attached to shared event store: {}", attached);
+                writeState(attached);
+                state = attached;
+            } else {
+                if (attached != null) {
+                    LOG.warn("Shared event store died - Starting a new one: {}",
+                            attached);
+                    registry.unregister(name);
+                }
+                state = start();
+                registry.register(state, user, getStateFile(),
+                        SharedInstanceRegistry.pendingUsers(getSession()));
+            }
         }
+        registry.installListener(getSession());
+        return state;
+    }
 
-        // Failure
-        final List<String> messages = asList(bos.toString());
-        logError(messages);
-
-        // Exception
-        if (resultHandler.hasResult()) {
+    private static boolean isAlive(final InstanceState state)
+            throws MojoExecutionException {
+        try {
+            return new ProcessControl(null).isAlive(state.getPid());
+        } catch (final IOException ex) {
             throw new MojoExecutionException(
-                    "Error starting the server. Exit code="
-                            + resultHandler.getExitValue(),
-                    resultHandler.getException());
+                    "Couldn't check the process: " + state.getPid(), ex);
         }
-        // Timeout
-        throw new MojoExecutionException(
-                "Waited too long for the server to start!");
+    }
 
+    /**
+     * Creates a stream name prefix that is unique for a module.
+     * 
+     * @param project
+     *            Project or {@code null}.
+     * 
+     * @return Artifact ID and a random part like "my-module-3f2a9c1e-".
+     */
+    static String streamPrefix(final MavenProject project) {
+        final String artifactId;
+        if (project == null) {
+            artifactId = SharedInstanceRegistry.STANDALONE;
+        } else {
+            artifactId = project.getArtifactId();
+        }
+        return artifactId + "-"
+                + UUID.randomUUID().toString().substring(0, 8) + "-";
     }
 
-    private void sleep(final int ms) {
+    /**
+     * Replaces the value of a command line argument or adds the argument if
+     * it's not set.
+     * 
+     * @param name
+     *            Name of the argument including the dashes.
+     * @param value
+     *            Value to set.
+     */
+    private void setArgument(final String name, final String value) {
+        final String prefix = name + "=";
+        final List<String> list = new ArrayList<>(Arrays.asList(arguments));
+        list.removeIf(argument -> argument.startsWith(prefix));
+        list.add(prefix + value);
+        arguments = list.toArray(new String[list.size()]);
+    }
+
+    private String argumentValue(final String name, final String defaultValue) {
+        return argumentValue(arguments, name, defaultValue);
+    }
+
+    private int[] allocateFreePorts() throws MojoExecutionException {
+        final boolean secure = argumentValue(EXT_SECURE_TCP_PORT, null) != null;
         try {
-            Thread.sleep(ms);
-        } catch (final InterruptedException ex) {
-            LOG.info("Interrupted while sleeping", ex);
+            final int[] ports = PortAllocator.allocate(secure ? 3 : 2);
+            setArgument(EXT_TCP_PORT, String.valueOf(ports[0]));
+            setArgument(EXT_HTTP_PORT, String.valueOf(ports[1]));
+            if (secure) {
+                setArgument(EXT_SECURE_TCP_PORT, String.valueOf(ports[2]));
+            }
+            return ports;
+        } catch (final IOException ex) {
+            throw new MojoExecutionException("Couldn't allocate free ports", ex);
         }
     }
 
-    private String extractPid(final List<String> messages)
-            throws MojoExecutionException {
-        if (messages.size() == 0) {
-            throw new MojoExecutionException(
-                    "Starting the event store didn't return any messages");
+    private void publishPorts(final InstanceState state) {
+        publishPort(TCP_PORT_PROPERTY, String.valueOf(state.getTcpPort()));
+        publishPort(HTTP_PORT_PROPERTY, String.valueOf(state.getHttpPort()));
+        if (state.getSecureTcpPort() > 0) {
+            publishPort(SECURE_TCP_PORT_PROPERTY,
+                    String.valueOf(state.getSecureTcpPort()));
         }
-        final String first = messages.get(0);
-        // Prefix looks like this: [19648,10,12:47:52.297]
-        final int p0 = first.indexOf('[');
-        if (p0 == -1) {
-            throw new MojoExecutionException(
-                    "Couldn't locate the starting bracket '[': " + first);
+    }
+
+    private void publishPort(final String property, final String port) {
+        setProjectProperty(property, port);
+        if (!DEFAULT_INSTANCE.equals(getInstanceName())) {
+            // Like "eventstore.node1.tcp.port"
+            setProjectProperty(property.replace("eventstore.",
+                    "eventstore." + getInstanceName() + "."), port);
         }
-        final int p1 = first.indexOf(',', p0 + 1);
-        if (p1 == -1) {
-            throw new MojoExecutionException(
-                    "Couldn't locate the ending comma ',': " + first);
+    }
+
+    private InstanceState createState() throws MojoExecutionException {
+        String dataDir = argumentValue(DB, null);
+        if (dataDir != null && !new File(dataDir).isAbsolute()) {
+            dataDir = new File(getEventStoreDir(), dataDir).getPath();
         }
-        return first.substring(p0 + 1, p1);
+        final String securePort = argumentValue(EXT_SECURE_TCP_PORT, "0");
+        return new InstanceState(getInstanceName(), null,
+                argumentValue(EXT_IP, "127.0.0.1"),
+                Integer.parseInt(argumentValue(EXT_TCP_PORT, "1113")),
+                Integer.parseInt(argumentValue(EXT_HTTP_PORT, "2113")),
+                Integer.parseInt(securePort), dataDir, 0, 0);
     }
 
     private void init() throws MojoExecutionException {
 
-        // Supply variables that are OS dependent
-        if (OS.isFamilyWindows()) {
-            if (command == null) {
-                // For some strange reasons this does not work without the
-                // path...
-                command = getEventStoreDir() + File.separator
-                        + "EventStore.ClusterNode.exe";
-            }
-        } else if (OS.isFamilyUnix()) {
-            if (command == null) {
-                command = "./run-node.sh";
-            }
-        } else if (OS.isFamilyMac()) {
-            if (command == null) {
-                command = "./run-node.sh";
-            }
-        } else {
-            if (command == null) {
-                throw new MojoExecutionException(
-                        "Unknown OS - You must use the 'command' parameter");
+        initCommand();
+
+        if (logFile == null) {
+            if (DEFAULT_INSTANCE.equals(getInstanceName())) {
+                logFile = new File(getTargetDir(), "event-store.log");
+            } else {
+                logFile = new File(getTargetDir(),
+                        "event-store-" + getInstanceName() + ".log");
             }
         }
 
@@ -211,34 +294,82 @@ public final class EventStoreStartMojo extends AbstractEventStoreMojo {
 
     }
 
-    private CommandLine createCommandLine() throws MojoExecutionException {
-        final CommandLine cmdLine = new CommandLine(command);
-        if (arguments != null) {
-            for (final String argument : arguments) {
-                cmdLine.addArgument(argument);
-            }
-        }
-        return cmdLine;
+    /**
+     * Determines if the event store is shared with other modules.
+     * 
+     * @return {@code true} if the modules of a reactor build use the same
+     *         event store.
+     */
+    public final boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Sets if the event store is shared with other modules.
+     * 
+     * @param shared
+     *            {@code true} if the modules of a reactor build use the same
+     *            event store.
+     */
+    public final void setShared(final boolean shared) {
+        this.shared = shared;
+    }
+
+    /**
+     * Determines if a stream name prefix unique for the module is published.
+     * 
+     * @return {@code true} if the prefix is published.
+     */
+    public final boolean isIsolateStreams() {
+        return isolateStreams;
+    }
+
+    /**
+     * Sets if a stream name prefix unique for the module is published.
+     * 
+     * @param isolateStreams
+     *            {@code true} if the prefix is published.
+     */
+    public final void setIsolateStreams(final boolean isolateStreams) {
+        this.isolateStreams = isolateStreams;
+    }
+
+    /**
+     * Determines if free ports are allocated for the event store.
+     * 
+     * @return {@code true} if the ports are chosen by the operating system.
+     */
+    public final boolean isAllocatePorts() {
+        return allocatePorts;
+    }
+
+    /**
+     * Sets if free ports are allocated for the event store.
+     * 
+     * @param allocatePorts
+     *            {@code true} if the ports are chosen by the operating system.
+     */
+    public final void setAllocatePorts(final boolean allocatePorts) {
+        this.allocatePorts = allocatePorts;
     }
 
     /**
-     * Returns the name of the executable or shell script to start the event
-     * store.
+     * Returns how to detect that the event store is ready.
      * 
-     * @return Executable name.
+     * @return Readiness mode.
      */
-    public final String getCommand() {
-        return command;
+    public final ReadinessMode getReadinessMode() {
+        return readinessMode;
     }
 
     /**
-     * Sets the name of the executable or shell script to start the event store.
+     * Sets how to detect that the event store is ready.
      * 
-     * @param command
-     *            Executable name to set.
+     * @param readinessMode
+     *            Readiness mode to set.
      */
-    public final void setCommand(final String command) {
-        this.command = command;
+    public final void setReadinessMode(final ReadinessMode readinessMode) {
+        this.readinessMode = readinessMode;
     }
 
     /**
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops all nodes of an event store cluster started with
+ * <code>start-cluster</code> in parallel.
+ * 
+ */
+@Mojo(name = "stop-cluster", defaultPhase = LifecyclePhase.POST_INTEGRATION_TEST, requiresProject = false)
+public final class EventStoreStopClusterMojo extends AbstractEventStoreStopMojo {
+
+    private static final Logger LOG = LoggerFactory
+            .getLogger(EventStoreStopClusterMojo.class);
+
+    @Override
+    protected final void executeGoal() throws MojoExecutionException {
+        initCommand();
+        LOG.info("command={}", getCommand());
+        LOG.info("graceful={}", isGraceful());
+
+        final List<InstanceState> states = readStates(
+                EventStoreStartClusterMojo.nodePattern(getInstanceName()));
+        if (states.isEmpty()) {
+            throw new MojoExecutionException("Event store cluster '"
+                    + getInstanceName() + "' was not started");
+        }
+
+        final long start = System.currentTimeMillis();
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                states.size(), r -> {
+                    final Thread thread = new Thread(r, "es-node");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            final List<Future<String>> futures = new ArrayList<>();
+            for (final InstanceState state : states) {
+                futures.add(executor.submit(() -> {
+                    final String how = stopInstance(state);
+                    deleteState(state.getName());
+                    return how;
+                }));
+            }
+            MojoExecutionException failure = null;
+            for (int i = 0; i < states.size(); i++) {
+                try {
+                    LOG.info("Node '{}' stopped ({})", states.get(i).getName(),
+                            futures.get(i).get());
+                } catch (final ExecutionException ex) {
+                    LOG.error("Couldn't stop node '{}'",
+                            states.get(i).getName(), ex.getCause());
+                    if (failure == null) {
+                        failure = ex.getCause() instanceof MojoExecutionException
+                                ? (MojoExecutionException) ex.getCause()
+                                : new MojoExecutionException(
+                                        "Error stopping a node", ex.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException(
+                    "Interrupted while stopping the cluster", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+        LOG.info("Cluster of {} nodes successfully stopped in {} ms",
+                states.size(), System.currentTimeMillis() - start);
+
+    }
+
+}
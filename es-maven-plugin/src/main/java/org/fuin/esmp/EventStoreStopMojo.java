@@ -17,15 +17,8 @@
  */
 package org.fuin.esmp;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.List;
 
-import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.DefaultExecutor;
-import org.apache.commons.exec.Executor;
-import org.apache.commons.exec.OS;
-import org.apache.commons.exec.PumpStreamHandler;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -34,107 +27,91 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Stops the event store.
+ * Stops the event store. A graceful shutdown is requested via HTTP first. If
+ * the process doesn't exit in time, it is asked to terminate (SIGTERM) and
+ * finally killed (SIGKILL) together with all its descendants. The goal returns
+ * when the process is gone and the TCP and HTTP ports are free. A
+ * <code>shared</code> event store is only stopped if no other module uses it.
  * 
  */
 @Mojo(name = "stop", defaultPhase = LifecyclePhase.POST_INTEGRATION_TEST, requiresProject = false)
-public final class EventStoreStopMojo extends AbstractEventStoreMojo {
+public final class EventStoreStopMojo extends AbstractEventStoreStopMojo {
 
     private static final Logger LOG = LoggerFactory
             .getLogger(EventStoreStopMojo.class);
 
     /**
-     * Name of the executable or shell script to stops the event store. Defaults
-     * to the OS specific name for Windows, Linux and Mac OS families. Other OS
-     * families will cause an error if this value is not set.
+     * Releases an event store that was started with <code>shared</code>
+     * set. It is only stopped if no other module of the reactor build uses
+     * it anymore. Defaults to <code>false</code>.
      * 
      */
-    @Parameter(name = "command")
-    private String command;
+    @Parameter(name = "shared", defaultValue = "false")
+    private boolean shared = false;
 
     @Override
     protected final void executeGoal() throws MojoExecutionException {
-        init();
-        LOG.info("command={}", command);
-
-        final CommandLine cmdLine = createCommandLine();
-        final Executor executor = new DefaultExecutor();
-        try {
-            final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            final PumpStreamHandler psh = new PumpStreamHandler(bos);
-            executor.setStreamHandler(psh);
-            executor.setWorkingDirectory(getEventStoreDir());
-            final int result = executor.execute(cmdLine);
-            if (result != 0) {
-                throw new MojoExecutionException(
-                        "Error stopping the event store: " + result);
-            }
-            final List<String> messages = asList(bos.toString());
-            logDebug(messages);
-            deletePid();
-            LOG.info("Event store successfully stopped");
-
-        } catch (final IOException ex) {
-            throw new MojoExecutionException(
-                    "Error executing the command line: " + cmdLine, ex);
+        initCommand();
+        LOG.info("command={}", getCommand());
+        LOG.info("graceful={}", isGraceful());
+        LOG.info("shared={}", shared);
+
+        final SharedInstanceRegistry registry = SharedInstanceRegistry
+                .get(getSession());
+        if (shared && registry.isRegistered(getInstanceName())) {
+            release(registry);
+            return;
         }
 
-    }
-
-    private CommandLine createCommandLine() throws MojoExecutionException {
-        final CommandLine cmdLine = new CommandLine(command);
-        if (OS.isFamilyWindows()) {
-            cmdLine.addArgument("/PID");
-            cmdLine.addArgument(readPid());
-            cmdLine.addArgument("/F");
-        } else if (OS.isFamilyUnix() || OS.isFamilyMac()) {
-            cmdLine.addArgument("-SIGKILL");
-            cmdLine.addArgument(readPid());
-        } else {
-            throw new MojoExecutionException(
-                    "Unknown OS - Cannot kill the process");
+        final InstanceState state = readState();
+        if (state == null && shared) {
+            LOG.info("Shared event store '{}' was already stopped",
+                    getInstanceName());
+            return;
         }
-        return cmdLine;
-    }
+        if (state == null) {
+            throw new MojoExecutionException("Event store instance '"
+                    + getInstanceName() + "' was not started: "
+                    + getStateFile());
+        }
+        final long start = System.currentTimeMillis();
+        final String how = stopInstance(state);
+        deleteState();
+        LOG.info("Event store successfully stopped ({}) in {} ms", how,
+                System.currentTimeMillis() - start);
 
-    private void init() throws MojoExecutionException {
+    }
 
-        // Supply variables that are OS dependent
-        if (OS.isFamilyWindows()) {
-            if (command == null) {
-                command = "taskkill";
-            }
-        } else if (OS.isFamilyUnix() || OS.isFamilyMac()) {
-            if (command == null) {
-                command = "kill";
-            }
-        } else {
-            if (command == null) {
-                throw new MojoExecutionException(
-                        "Unknown OS - You must use the 'command' parameter");
-            }
+    private void release(final SharedInstanceRegistry registry) {
+        final String name = getInstanceName();
+        registry.setStopper(name, createStopper());
+        final List<String> stopped = registry
+                .release(SharedInstanceRegistry.projectKey(getProject()));
+        if (!stopped.contains(name)) {
+            LOG.info("Shared event store '{}' is still used by {} module(s)",
+                    name, registry.getUserCount(name));
         }
-
     }
 
     /**
-     * Returns the name of the executable or shell script to stop the event
-     * store.
+     * Determines if a shared event store is released.
      * 
-     * @return Executable name.
+     * @return {@code true} if the event store is only stopped if no other
+     *         module uses it.
      */
-    public final String getCommand() {
-        return command;
+    public final boolean isShared() {
+        return shared;
     }
 
     /**
-     * Sets the name of the executable or shell script to stop the event store.
+     * Sets if a shared event store is released.
      * 
-     * @param command
-     *            Executable name to set.
+     * @param shared
+     *            {@code true} if the event store is only stopped if no other
+     *            module uses it.
      */
-    public final void setCommand(final String command) {
-        this.command = command;
+    public final void setShared(final boolean shared) {
+        this.shared = shared;
     }
 
 }
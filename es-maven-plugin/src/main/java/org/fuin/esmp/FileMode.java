@@ -1,7 +1,10 @@
 // CHECKSTYLE:OFF Copied code
 package org.fuin.esmp;
 
-import org.codehaus.plexus.util.StringUtils;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Copyright (C) 2011 Martin Bluemel Original source can be found here:
@@ -11,61 +14,58 @@ import org.codehaus.plexus.util.StringUtils;
  */
 public class FileMode {
 
-    private boolean dircetory = false;
+    private static final int SET_UID = 04000;
 
-    private boolean setUid = false;
+    private static final int SET_GID = 02000;
 
-    private boolean setGid = false;
+    private static final int STICKY_BIT = 01000;
 
-    private boolean stickyBit = false;
+    private static final int USER_READ = 0400;
 
-    private boolean userRead = false;
+    private static final int USER_WRITE = 0200;
 
-    private boolean userWrite = false;
+    private static final int USER_EXECUTE = 0100;
 
-    private boolean userExecute = false;
+    private static final int GROUP_READ = 040;
 
-    private boolean groupRead = false;
+    private static final int GROUP_WRITE = 020;
 
-    private boolean groupWrite = false;
+    private static final int GROUP_EXECUTE = 010;
 
-    private boolean groupExecute = false;
+    private static final int OTHER_READ = 04;
 
-    private boolean otherRead = false;
+    private static final int OTHER_WRITE = 02;
 
-    private boolean otherWrite = false;
+    private static final int OTHER_EXECUTE = 01;
 
-    private boolean otherExecute = false;
+    private static final int PERMISSION_BITS = 0777;
 
-    public FileMode(int mode) {
+    private static final PosixFilePermission[] PERMISSION_VALUES = PosixFilePermission.values();
+
+    /** Permission sets for all 512 combinations of the permission bits, shared by all modes that only differ in the special bits. */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static final Set<PosixFilePermission>[] PERMISSIONS = new Set[PERMISSION_BITS + 1];
+
+    static {
+        for (int bits = 0; bits < PERMISSIONS.length; bits++) {
+            final Set<PosixFilePermission> perms = EnumSet.noneOf(PosixFilePermission.class);
+            for (final PosixFilePermission perm : PERMISSION_VALUES) {
+                if ((bits & bit(perm)) != 0) {
+                    perms.add(perm);
+                }
+            }
+            PERMISSIONS[bits] = Collections.unmodifiableSet(perms);
+        }
+    }
 
-        // ORIGINAL CODE - Removed dependency to "StringHelper" class
-        // final String smodeBin =
-        // StringHelper.fillUp(Integer.toBinaryString(mode), 16, '0',
-        // FillMode.left);
-        final String smodeBin = StringUtils.leftPad(
-                Integer.toBinaryString(mode), 16, "0");
-        // System.out.println("@@@ smodeBin = " + smodeBin);
+    private final int mode;
+
+    public FileMode(int mode) {
         if (mode >= 65536) {
             throw new AssertionError("Unexpected file mode: "
                     + Integer.toString(mode));
         }
-        final String modes = smodeBin.substring(4, 7);
-        this.setUid = isR(modes);
-        this.setGid = isW(modes);
-        this.stickyBit = isX(modes);
-        final String modeu = smodeBin.substring(7, 10);
-        this.userRead = isR(modeu);
-        this.userWrite = isW(modeu);
-        this.userExecute = isX(modeu);
-        final String modeg = smodeBin.substring(10, 13);
-        this.groupRead = isR(modeg);
-        this.groupWrite = isW(modeg);
-        this.groupExecute = isX(modeg);
-        final String modeo = smodeBin.substring(13, 16);
-        this.otherRead = isR(modeo);
-        this.otherWrite = isW(modeo);
-        this.otherExecute = isX(modeo);
+        this.mode = mode;
     }
 
     // --- = 0
@@ -78,137 +78,179 @@ public class FileMode {
     // rwx = 7
 
     public String toString() {
-        final StringBuilder sb = new StringBuilder(9);
-        sb.append(userRead ? 'r' : '-');
-        sb.append(userWrite ? 'w' : '-');
-        sb.append(userExecute ? 'x' : '-');
-        sb.append(groupRead ? 'r' : '-');
-        sb.append(groupWrite ? 'w' : '-');
-        sb.append(groupExecute ? 'x' : '-');
-        sb.append(otherRead ? 'r' : '-');
-        sb.append(otherWrite ? 'w' : '-');
-        sb.append(otherExecute ? 'x' : '-');
-        return sb.toString();
+        final char[] chars = new char[9];
+        chars[0] = is(USER_READ) ? 'r' : '-';
+        chars[1] = is(USER_WRITE) ? 'w' : '-';
+        chars[2] = is(USER_EXECUTE) ? 'x' : '-';
+        chars[3] = is(GROUP_READ) ? 'r' : '-';
+        chars[4] = is(GROUP_WRITE) ? 'w' : '-';
+        chars[5] = is(GROUP_EXECUTE) ? 'x' : '-';
+        chars[6] = is(OTHER_READ) ? 'r' : '-';
+        chars[7] = is(OTHER_WRITE) ? 'w' : '-';
+        chars[8] = is(OTHER_EXECUTE) ? 'x' : '-';
+        return new String(chars);
     }
 
     public String toChmodStringBasic() {
-        final StringBuilder sb = new StringBuilder(3);
-        sb.append(Integer.toString(toOctal(this.userRead, this.userWrite,
-                this.userExecute)));
-        sb.append(Integer.toString(toOctal(this.groupRead, this.groupWrite,
-                this.groupExecute)));
-        sb.append(Integer.toString(toOctal(this.otherRead, this.otherWrite,
-                this.otherExecute)));
-        return sb.toString();
+        return toOctal(mode & PERMISSION_BITS, 3);
     }
 
     public String toChmodStringFull() {
-        final StringBuilder sb = new StringBuilder(4);
-        sb.append(Integer.toString(toOctal(this.setUid, this.setGid,
-                this.stickyBit)));
-        sb.append(Integer.toString(toOctal(this.userRead, this.userWrite,
-                this.userExecute)));
-        sb.append(Integer.toString(toOctal(this.groupRead, this.groupWrite,
-                this.groupExecute)));
-        sb.append(Integer.toString(toOctal(this.otherRead, this.otherWrite,
-                this.otherExecute)));
-        return sb.toString();
-    }
-
-    private int toOctal(final boolean r, final boolean w, final boolean x) {
-        int octal = 0;
-        if (r) {
-            octal += 4;
-        }
-        if (w) {
-            octal += 2;
-        }
-        if (x) {
-            octal += 1;
+        return toOctal(mode & 07777, 4);
+    }
+
+    private static String toOctal(final int value, final int digits) {
+        final char[] chars = new char[digits];
+        for (int i = digits - 1; i >= 0; i--) {
+            chars[digits - 1 - i] = (char) ('0' + ((value >> (3 * i)) & 7));
         }
-        return octal;
+        return new String(chars);
+    }
+
+    private boolean is(final int bit) {
+        return (mode & bit) != 0;
+    }
+
+    private static int bit(final PosixFilePermission perm) {
+        // Enum order is OWNER_READ (0400) to OTHERS_EXECUTE (0001)
+        return 1 << (8 - perm.ordinal());
+    }
+
+    /**
+     * Returns the permissions as set. The set is shared and must not be
+     * modified.
+     *
+     * @return Unmodifiable set of the permission bits (without special bits).
+     */
+    public Set<PosixFilePermission> toPosixPermissions() {
+        return toPosixPermissions(mode);
     }
 
-    private boolean isR(final String modePart) {
-        return (modePart.substring(0, 1).equals("1"));
+    /**
+     * Returns the permissions of a mode as set. The set is shared and must not
+     * be modified.
+     *
+     * @param mode
+     *            Unix file mode.
+     *
+     * @return Unmodifiable set of the permission bits (without special bits).
+     */
+    public static Set<PosixFilePermission> toPosixPermissions(final int mode) {
+        return PERMISSIONS[mode & PERMISSION_BITS];
     }
 
-    private boolean isW(final String modePart) {
-        return (modePart.substring(1, 2).equals("1"));
+    /**
+     * Returns the permission bits of a set of permissions.
+     *
+     * @param perms
+     *            Permissions.
+     *
+     * @return Mode with the permission bits (like 0755).
+     */
+    public static int toMode(final Set<PosixFilePermission> perms) {
+        int bits = 0;
+        for (final PosixFilePermission perm : perms) {
+            bits = bits | bit(perm);
+        }
+        return bits;
     }
 
-    private boolean isX(final String modePart) {
-        return (modePart.substring(2, 3).equals("1"));
+    /**
+     * @return the mode
+     */
+    public int getMode() {
+        return mode;
     }
 
     /**
      * @return the dircetory
      */
     public boolean isDircetory() {
-        return dircetory;
+        return (mode & 0170000) == 0040000;
+    }
+
+    /**
+     * @return the set UID bit
+     */
+    public boolean isSetUid() {
+        return is(SET_UID);
+    }
+
+    /**
+     * @return the set GID bit
+     */
+    public boolean isSetGid() {
+        return is(SET_GID);
+    }
+
+    /**
+     * @return the sticky bit
+     */
+    public boolean isStickyBit() {
+        return is(STICKY_BIT);
     }
 
     /**
      * @return the ur
      */
     public boolean isUr() {
-        return userRead;
+        return is(USER_READ);
     }
 
     /**
      * @return the uw
      */
     public boolean isUw() {
-        return userWrite;
+        return is(USER_WRITE);
     }
 
     /**
      * @return the ux
      */
     public boolean isUx() {
-        return userExecute;
+        return is(USER_EXECUTE);
     }
 
     /**
      * @return the gr
      */
     public boolean isGr() {
-        return groupRead;
+        return is(GROUP_READ);
     }
 
     /**
      * @return the gw
      */
     public boolean isGw() {
-        return groupWrite;
+        return is(GROUP_WRITE);
     }
 
     /**
      * @return the gx
      */
     public boolean isGx() {
-        return groupExecute;
+        return is(GROUP_EXECUTE);
     }
 
     /**
      * @return the or
      */
     public boolean isOr() {
-        return otherRead;
+        return is(OTHER_READ);
     }
 
     /**
      * @return the ow
      */
     public boolean isOw() {
-        return otherWrite;
+        return is(OTHER_WRITE);
     }
 
     /**
      * @return the ox
      */
     public boolean isOx() {
-        return otherExecute;
+        return is(OTHER_EXECUTE);
     }
 
 }
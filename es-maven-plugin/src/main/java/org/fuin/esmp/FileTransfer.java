@@ -0,0 +1,110 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes unpacked content into files using {@link FileChannel}s. Streams are copied through one buffer per thread that is reused for
+ * all files, regions of other files are transferred without copying them through the Java heap.
+ */
+public final class FileTransfer {
+
+    private static final int BUF_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<byte[]> HEAP_BUFFER = ThreadLocal.withInitial(() -> new byte[BUF_SIZE]);
+
+    private FileTransfer() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Writes all remaining bytes of a stream into a file. An existing file is overwritten. The stream is not closed.
+     *
+     * @param in
+     *            Stream to read.
+     * @param file
+     *            File to write.
+     *
+     * @return Number of bytes written.
+     *
+     * @throws IOException
+     *             Error reading the stream or writing the file.
+     */
+    public static long write(final InputStream in, final File file) throws IOException {
+        final byte[] buf = HEAP_BUFFER.get();
+        final FileChannel out = open(file);
+        try {
+            long count = 0;
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                final ByteBuffer bb = ByteBuffer.wrap(buf, 0, len);
+                while (bb.hasRemaining()) {
+                    out.write(bb);
+                }
+                count += len;
+            }
+            return count;
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a region of a channel into a file. An existing file is overwritten. The position of the source channel is not changed,
+     * so the channel can be shared between threads.
+     *
+     * @param src
+     *            Channel to read.
+     * @param position
+     *            Position of the first byte in the channel.
+     * @param count
+     *            Number of bytes to write.
+     * @param file
+     *            File to write.
+     *
+     * @throws IOException
+     *             Error reading the channel or writing the file.
+     */
+    public static void write(final FileChannel src, final long position, final long count, final File file) throws IOException {
+        final FileChannel out = open(file);
+        try {
+            long done = 0;
+            while (done < count) {
+                final long len = src.transferTo(position + done, count - done, out);
+                if (len <= 0) {
+                    throw new IOException("Unexpected end of file at position " + (position + done) + ": " + file);
+                }
+                done += len;
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static FileChannel open(final File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+}
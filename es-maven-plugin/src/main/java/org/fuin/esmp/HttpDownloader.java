@@ -0,0 +1,450 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads a file via HTTP. If the server supports range requests, the file is split into segments that are loaded in parallel into
+ * a preallocated file. Otherwise the file is loaded using a single stream. Bytes are written to a ".part" file that is renamed once
+ * the download is complete. The progress of range downloads is recorded in a {@link DownloadJournal}, so an interrupted download
+ * resumes where it stopped.
+ */
+public final class HttpDownloader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpDownloader.class);
+
+    private static final int BUF_SIZE = 64 * 1024;
+
+    /** Files smaller than two times this size are always loaded using a single segment. */
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    /** Number of bytes after which a segment saves the journal. */
+    private static final long SAVE_INTERVAL = 1024 * 1024;
+
+    private final int segments;
+
+    private final int timeoutMs;
+
+    private final HttpProxy proxy;
+
+    /**
+     * Constructor without proxy.
+     *
+     * @param segments
+     *            Maximum number of segments to load in parallel.
+     * @param timeoutMs
+     *            Connect and read timeout in milliseconds.
+     */
+    public HttpDownloader(final int segments, final int timeoutMs) {
+        this(segments, timeoutMs, HttpProxy.NONE);
+    }
+
+    /**
+     * Constructor with all data.
+     *
+     * @param segments
+     *            Maximum number of segments to load in parallel.
+     * @param timeoutMs
+     *            Connect and read timeout in milliseconds.
+     * @param proxy
+     *            Proxy to use.
+     */
+    public HttpDownloader(final int segments, final int timeoutMs, final HttpProxy proxy) {
+        super();
+        if (proxy == null) {
+            throw new IllegalArgumentException("proxy == null");
+        }
+        if (segments < 1) {
+            throw new IllegalArgumentException("segments < 1: " + segments);
+        }
+        this.segments = segments;
+        this.timeoutMs = timeoutMs;
+        this.proxy = proxy;
+    }
+
+    /**
+     * Downloads the content of an URL into a file. An existing file will be overwritten. The file only appears once it is complete.
+     *
+     * @param url
+     *            URL to load.
+     * @param file
+     *            File to write.
+     *
+     * @throws IOException
+     *             Error loading the URL or writing the file.
+     */
+    public final void download(final URL url, final File file) throws IOException {
+        final File partFile = getPartFile(file);
+        final File journalFile = getJournalFile(file);
+
+        final Head head = head(url);
+        final long length = head.length;
+
+        if (length < 0) {
+            // No range support - Nothing to resume
+            Files.deleteIfExists(journalFile.toPath());
+            try {
+                downloadStream(url, partFile);
+            } catch (final IOException | RuntimeException ex) {
+                Files.deleteIfExists(partFile.toPath());
+                throw ex;
+            }
+        } else {
+            DownloadJournal journal = DownloadJournal.load(journalFile);
+            if (journal != null && partFile.exists() && partFile.length() == length
+                    && journal.matches(url.toString(), length, head.etag, head.lastModified)) {
+                LOG.info("Resuming download at {} of {} bytes", journal.getLoaded(), length);
+            } else {
+                journal = createJournal(journalFile, partFile, url, head);
+            }
+            try {
+                downloadSegments(url, partFile, journal);
+            } catch (final RestartException ex) {
+                LOG.info("Content changed on server - Restarting download: {}", url);
+                final Head newHead = head(url);
+                if (newHead.length < 0) {
+                    throw new IOException("Content changed on server and range requests are no longer supported: " + url, ex);
+                }
+                // A second change during the restart is not retried
+                journal = createJournal(journalFile, partFile, url, newHead);
+                downloadSegments(url, partFile, journal);
+            } finally {
+                journal.save();
+            }
+            journal.delete();
+        }
+
+        try {
+            Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Opens a stream on the content of an URL. The bytes are not stored, so the caller can process them while they arrive. Closing
+     * the stream also closes the connection.
+     *
+     * @param url
+     *            URL to load.
+     *
+     * @return Stream with the content.
+     *
+     * @throws IOException
+     *             Error connecting or unexpected HTTP status.
+     */
+    public final InputStream openStream(final URL url) throws IOException {
+        final HttpURLConnection con = open(url);
+        try {
+            final int status = con.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected HTTP status " + status + " for: " + url);
+            }
+            return new FilterInputStream(con.getInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        con.disconnect();
+                    }
+                }
+            };
+        } catch (final IOException | RuntimeException ex) {
+            con.disconnect();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the file that receives the bytes until the download is complete.
+     *
+     * @param file
+     *            Target file.
+     *
+     * @return Partial file.
+     */
+    public static File getPartFile(final File file) {
+        return new File(file.getParentFile(), file.getName() + ".part");
+    }
+
+    /**
+     * Returns the journal file used to resume an interrupted download.
+     *
+     * @param file
+     *            Target file.
+     *
+     * @return Journal file.
+     */
+    public static File getJournalFile(final File file) {
+        return new File(file.getParentFile(), file.getName() + ".part.journal");
+    }
+
+    private List<DownloadJournal.Segment> split(final long length) {
+        final int count = (int) Math.max(1, Math.min(segments, length / MIN_SEGMENT_SIZE));
+        final long size = length / count;
+        final List<DownloadJournal.Segment> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final long first = i * size;
+            final long last = (i == count - 1) ? length - 1 : first + size - 1;
+            list.add(new DownloadJournal.Segment(first, first, last));
+        }
+        return list;
+    }
+
+    private Head head(final URL url) throws IOException {
+        final HttpURLConnection con = open(url);
+        try {
+            con.setRequestMethod("HEAD");
+            final long length;
+            if (con.getResponseCode() == HttpURLConnection.HTTP_OK
+                    && "bytes".equalsIgnoreCase(con.getHeaderField("Accept-Ranges"))) {
+                length = con.getContentLengthLong();
+            } else {
+                length = -1;
+            }
+            return new Head(length, con.getHeaderField("ETag"), con.getHeaderField("Last-Modified"));
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    private DownloadJournal createJournal(final File journalFile, final File partFile, final URL url, final Head head)
+            throws IOException {
+        final DownloadJournal journal = new DownloadJournal(journalFile, url.toString(), head.length, head.etag, head.lastModified,
+                split(head.length));
+        createPartFile(partFile, head.length);
+        journal.save();
+        return journal;
+    }
+
+    private void createPartFile(final File partFile, final long length) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(partFile, "rw");
+        try {
+            raf.setLength(0);
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void downloadStream(final URL url, final File file) throws IOException {
+        final HttpURLConnection con = open(url);
+        try {
+            final int status = con.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected HTTP status " + status + " for: " + url);
+            }
+            final InputStream in = con.getInputStream();
+            try {
+                Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                in.close();
+            }
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    private void downloadSegments(final URL url, final File partFile, final DownloadJournal journal) throws IOException {
+        final List<DownloadJournal.Segment> open = new ArrayList<>();
+        for (final DownloadJournal.Segment segment : journal.getSegments()) {
+            if (!segment.isComplete()) {
+                open.add(segment);
+            }
+        }
+        if (open.isEmpty()) {
+            return;
+        }
+        if (open.size() > 1) {
+            LOG.info("Downloading {} bytes in {} segments", journal.getLength() - journal.getLoaded(), open.size());
+        }
+        final RandomAccessFile raf = new RandomAccessFile(partFile, "rw");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final ExecutorService executor = Executors.newFixedThreadPool(open.size());
+            try {
+                final List<Future<Void>> futures = new ArrayList<>();
+                for (final DownloadJournal.Segment segment : open) {
+                    futures.add(executor.submit(() -> {
+                        downloadRange(url, channel, journal, segment);
+                        return null;
+                    }));
+                }
+                for (final Future<Void> future : futures) {
+                    waitFor(future);
+                }
+            } catch (final IOException | RuntimeException ex) {
+                stop(executor, ex);
+                throw ex;
+            }
+            stop(executor, null);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void downloadRange(final URL url, final FileChannel channel, final DownloadJournal journal,
+            final DownloadJournal.Segment segment) throws IOException {
+        final long first = segment.getNext();
+        final long last = segment.getLast();
+        final HttpURLConnection con = open(url);
+        try {
+            con.setRequestProperty("Range", "bytes=" + first + "-" + last);
+            if (journal.getIfRange() != null) {
+                con.setRequestProperty("If-Range", journal.getIfRange());
+            }
+            final int status = con.getResponseCode();
+            if (status == HttpURLConnection.HTTP_OK && journal.getIfRange() != null) {
+                // Validator didn't match - The server sends the full (new) content
+                throw new RestartException();
+            }
+            if (status != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Expected HTTP status 206 for range " + first + "-" + last + ", but was " + status + ": " + url);
+            }
+            final InputStream in = con.getInputStream();
+            try {
+                final byte[] buf = new byte[BUF_SIZE];
+                long unsaved = 0;
+                int len;
+                while ((len = in.read(buf)) != -1) {
+                    if (segment.getNext() + len > last + 1) {
+                        throw new IOException("Server returned more bytes than requested for range " + first + "-" + last);
+                    }
+                    final ByteBuffer bb = ByteBuffer.wrap(buf, 0, len);
+                    while (bb.hasRemaining()) {
+                        channel.write(bb, segment.getNext() + bb.position());
+                    }
+                    segment.advance(len);
+                    unsaved += len;
+                    if (unsaved >= SAVE_INTERVAL) {
+                        journal.save();
+                        unsaved = 0;
+                    }
+                }
+                if (!segment.isComplete()) {
+                    throw new IOException("Incomplete range " + first + "-" + last + ": Received only "
+                            + (segment.getNext() - first) + " bytes");
+                }
+            } finally {
+                in.close();
+            }
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    private void waitFor(final Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading", ex);
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Error downloading segment", ex.getCause());
+        }
+    }
+
+    /**
+     * Interrupts the segment downloads and waits until they are finished. Otherwise they might still write to the file or journal when
+     * the caller closes the file or restarts the download.
+     */
+    private void stop(final ExecutorService executor, final Exception error) throws IOException {
+        executor.shutdownNow();
+        // A blocked read ends at the latest after the read timeout
+        final long waitMs = (timeoutMs > 0) ? 2L * timeoutMs : Long.MAX_VALUE;
+        boolean terminated;
+        try {
+            terminated = executor.awaitTermination(waitMs, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            terminated = false;
+        }
+        if (!terminated) {
+            final IOException ex = new IOException("Segment downloads did not stop");
+            if (error != null) {
+                ex.addSuppressed(error);
+            }
+            throw ex;
+        }
+    }
+
+    private HttpURLConnection open(final URL url) throws IOException {
+        final HttpURLConnection con = (HttpURLConnection) proxy.openConnection(url);
+        con.setConnectTimeout(timeoutMs);
+        con.setReadTimeout(timeoutMs);
+        con.setUseCaches(false);
+        return con;
+    }
+
+    /**
+     * Result of a HEAD request.
+     */
+    private static final class Head {
+
+        /** Length of the content or -1 if range requests are not supported. */
+        private final long length;
+
+        private final String etag;
+
+        private final String lastModified;
+
+        Head(final long length, final String etag, final String lastModified) {
+            super();
+            this.length = length;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+    }
+
+    /**
+     * Signals that the content on the server changed and the download has to start over.
+     */
+    private static final class RestartException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+    }
+
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.InetSocketAddress;
+import java.net.PasswordAuthentication;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.regex.Pattern;
+
+/**
+ * Proxy for HTTP connections built from the active proxy of the Maven settings. Hosts listed in the non proxy hosts (separated by
+ * '|' or ',' with '*' as wildcard) are connected directly, as are URLs with other protocols than "http" and "https". If the proxy
+ * requires a login, a default {@link Authenticator} is installed that only answers requests of this proxy.
+ */
+public final class HttpProxy {
+
+    /** Connects directly. */
+    public static final HttpProxy NONE = new HttpProxy(null, 0, null, null, null);
+
+    private final String host;
+
+    private final int port;
+
+    private final String nonProxyHosts;
+
+    /**
+     * Constructor with all data.
+     *
+     * @param host
+     *            Host of the proxy or {@code null} to connect directly.
+     * @param port
+     *            Port of the proxy.
+     * @param username
+     *            User for the proxy or {@code null} if no login is required.
+     * @param password
+     *            Password for the proxy.
+     * @param nonProxyHosts
+     *            Hosts to connect directly like "localhost|*.example.com" or {@code null}.
+     */
+    public HttpProxy(final String host, final int port, final String username, final String password, final String nonProxyHosts) {
+        super();
+        this.host = host;
+        this.port = port;
+        this.nonProxyHosts = nonProxyHosts;
+        if (host != null && username != null) {
+            Authenticator.setDefault(new ProxyAuthenticator(host, port, username, password));
+        }
+    }
+
+    /**
+     * Creates the proxy from the active proxy of the settings.
+     *
+     * @param proxy
+     *            Active proxy with a decrypted password or {@code null}.
+     *
+     * @return Proxy or {@link #NONE} if no proxy is active.
+     */
+    public static HttpProxy of(final org.apache.maven.settings.Proxy proxy) {
+        if (proxy == null || !proxy.isActive() || proxy.getHost() == null) {
+            return NONE;
+        }
+        return new HttpProxy(proxy.getHost(), proxy.getPort(), proxy.getUsername(), proxy.getPassword(), proxy.getNonProxyHosts());
+    }
+
+    /**
+     * Returns the proxy to use for an URL.
+     *
+     * @param url
+     *            URL to connect to.
+     *
+     * @return Proxy or {@link Proxy#NO_PROXY} to connect directly.
+     */
+    public final Proxy select(final URL url) {
+        final String protocol = url.getProtocol();
+        if (host == null || !("http".equals(protocol) || "https".equals(protocol)) || isNonProxyHost(url.getHost(), nonProxyHosts)) {
+            return Proxy.NO_PROXY;
+        }
+        return new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved(host, port));
+    }
+
+    /**
+     * Opens a connection to an URL using the proxy if necessary.
+     *
+     * @param url
+     *            URL to connect to.
+     *
+     * @return Connection that is not connected yet.
+     *
+     * @throws IOException
+     *             Error opening the connection.
+     */
+    public final URLConnection openConnection(final URL url) throws IOException {
+        final Proxy proxy = select(url);
+        if (proxy == Proxy.NO_PROXY) {
+            return url.openConnection();
+        }
+        return url.openConnection(proxy);
+    }
+
+    /**
+     * Determines if a host is connected directly.
+     *
+     * @param host
+     *            Host to check.
+     * @param nonProxyHosts
+     *            Hosts separated by '|' or ',' with '*' as wildcard or {@code null}.
+     *
+     * @return {@code true} if the host matches one of the non proxy hosts.
+     */
+    static boolean isNonProxyHost(final String host, final String nonProxyHosts) {
+        if (host == null || nonProxyHosts == null) {
+            return false;
+        }
+        for (final String pattern : nonProxyHosts.split("[|,]")) {
+            final String trimmed = pattern.trim();
+            if (!trimmed.isEmpty() && Pattern.compile(Pattern.quote(trimmed).replace("*", "\\E.*\\Q"), Pattern.CASE_INSENSITIVE)
+                    .matcher(host).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public final String toString() {
+        if (host == null) {
+            return "none";
+        }
+        return host + ":" + port;
+    }
+
+    /**
+     * Provides the login only for the proxy.
+     */
+    private static final class ProxyAuthenticator extends Authenticator {
+
+        private final String host;
+
+        private final int port;
+
+        private final String username;
+
+        private final String password;
+
+        public ProxyAuthenticator(final String host, final int port, final String username, final String password) {
+            super();
+            this.host = host;
+            this.port = port;
+            this.username = username;
+            this.password = password;
+        }
+
+        @Override
+        protected PasswordAuthentication getPasswordAuthentication() {
+            if (getRequestorType() == RequestorType.PROXY && host.equalsIgnoreCase(getRequestingHost())
+                    && port == getRequestingPort()) {
+                return new PasswordAuthentication(username, password == null ? new char[0] : password.toCharArray());
+            }
+            return null;
+        }
+
+    }
+
+}
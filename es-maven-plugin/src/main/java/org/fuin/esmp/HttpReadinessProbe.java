@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Considers the server ready as soon as a HTTP GET request to an URL returns a success status code.
+ */
+public final class HttpReadinessProbe extends ReadinessProbe {
+
+    private final URL url;
+
+    private final int timeoutMs;
+
+    /**
+     * Constructor with all data.
+     *
+     * @param url
+     *            URL to request like "http://127.0.0.1:2113/ping".
+     * @param timeoutMs
+     *            Connect and read timeout in milliseconds.
+     */
+    public HttpReadinessProbe(final URL url, final int timeoutMs) {
+        super("http");
+        if (url == null) {
+            throw new IllegalArgumentException("url == null");
+        }
+        this.url = url;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public final boolean probe() {
+        try {
+            final HttpURLConnection con = (HttpURLConnection) url.openConnection();
+            try {
+                con.setConnectTimeout(timeoutMs);
+                con.setReadTimeout(timeoutMs);
+                con.setUseCaches(false);
+                final int status = con.getResponseCode();
+                if (status >= 200 && status < 300) {
+                    final InputStream in = con.getInputStream();
+                    in.close();
+                    return true;
+                }
+                return false;
+            } finally {
+                con.disconnect();
+            }
+        } catch (final IOException ex) {
+            return false;
+        }
+    }
+
+}
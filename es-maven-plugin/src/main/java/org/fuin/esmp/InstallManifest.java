@@ -0,0 +1,413 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * List of all files of an installation with their size, mode, modification time and CRC-32. It allows finding missing or changed
+ * files using only file attributes, without reading the content. The manifest is a text file with one line per file:
+ *
+ * <pre>
+ * # es-maven-plugin install manifest
+ * archive=&lt;sha256&gt;
+ * &lt;size&gt; &lt;mode (octal)&gt; &lt;mtime (ms)&gt; &lt;crc (hex)&gt; &lt;relative path&gt;
+ * </pre>
+ */
+public final class InstallManifest {
+
+    private static final String HEADER = "# es-maven-plugin install manifest";
+
+    private static final String ARCHIVE = "archive=";
+
+    private static final int NO_MODE = -1;
+
+    private static final int BUF_SIZE = 64 * 1024;
+
+    private final String archiveSha256;
+
+    private final List<Entry> entries;
+
+    /**
+     * Constructor with all data.
+     *
+     * @param archiveSha256
+     *            SHA-256 of the archive the files were extracted from.
+     * @param entries
+     *            Files of the installation.
+     */
+    public InstallManifest(final String archiveSha256, final List<Entry> entries) {
+        super();
+        if (archiveSha256 == null) {
+            throw new IllegalArgumentException("archiveSha256 == null");
+        }
+        if (entries == null) {
+            throw new IllegalArgumentException("entries == null");
+        }
+        this.archiveSha256 = archiveSha256;
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    /**
+     * Returns the SHA-256 of the archive the files were extracted from.
+     *
+     * @return Hex encoded hash.
+     */
+    public final String getArchiveSha256() {
+        return archiveSha256;
+    }
+
+    /**
+     * Returns the files of the installation.
+     *
+     * @return Unmodifiable list of entries.
+     */
+    public final List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns all entries whose file is missing or has other attributes than recorded in the manifest.
+     *
+     * @param dir
+     *            Base directory of the installation.
+     *
+     * @return Entries that need to be repaired.
+     */
+    public final List<Entry> verify(final File dir) {
+        return verify(dir, entries);
+    }
+
+    /**
+     * Returns all of the given entries whose file is missing or has other attributes than recorded in the manifest.
+     *
+     * @param dir
+     *            Base directory of the installation.
+     * @param toVerify
+     *            Entries to check.
+     *
+     * @return Entries that need to be repaired.
+     */
+    public static List<Entry> verify(final File dir, final List<Entry> toVerify) {
+        final List<Entry> broken = new ArrayList<>();
+        for (final Entry entry : toVerify) {
+            if (!entry.matches(dir.toPath().resolve(entry.getPath()))) {
+                broken.add(entry);
+            }
+        }
+        return broken;
+    }
+
+    /**
+     * Writes the manifest to a file. The file is replaced atomically if the file system supports it.
+     *
+     * @param file
+     *            File to write.
+     *
+     * @throws IOException
+     *             Error writing the file.
+     */
+    public final void save(final File file) throws IOException {
+        final File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        final BufferedWriter writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8);
+        try {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.write(ARCHIVE + archiveSha256);
+            writer.newLine();
+            for (final Entry entry : entries) {
+                writer.write(entry.getSize() + " " + Integer.toOctalString(entry.getMode()) + " " + entry.getMtime() + " "
+                        + Long.toHexString(entry.getCrc()) + " " + entry.getPath());
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+        try {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Loads a manifest from a file.
+     *
+     * @param file
+     *            File to read.
+     *
+     * @return Manifest or {@code null} if the file does not exist or cannot be read.
+     */
+    public static InstallManifest load(final File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+            try {
+                if (!HEADER.equals(reader.readLine())) {
+                    return null;
+                }
+                final String archive = reader.readLine();
+                if (archive == null || !archive.startsWith(ARCHIVE)) {
+                    return null;
+                }
+                final List<Entry> entries = new ArrayList<>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String[] parts = line.split(" ", 5);
+                    entries.add(new Entry(parts[4], Long.parseLong(parts[0]), (int) Long.parseLong(parts[1], 8),
+                            Long.parseLong(parts[2]), Long.parseLong(parts[3], 16)));
+                }
+                return new InstallManifest(archive.substring(ARCHIVE.length()), entries);
+            } finally {
+                reader.close();
+            }
+        } catch (final IOException | RuntimeException ex) {
+            // Broken manifest - Treat as missing
+            return null;
+        }
+    }
+
+    /**
+     * Creates a manifest for all regular files in a directory. The content of every file is read to calculate the CRC-32.
+     *
+     * @param archiveSha256
+     *            SHA-256 of the archive the files were extracted from.
+     * @param dir
+     *            Base directory of the installation.
+     *
+     * @return New manifest.
+     *
+     * @throws IOException
+     *             Error reading the files.
+     */
+    public static InstallManifest create(final String archiveSha256, final File dir) throws IOException {
+        final Path base = dir.toPath();
+        final List<Entry> entries = new ArrayList<>();
+        final byte[] buf = new byte[BUF_SIZE];
+        Files.walkFileTree(base, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile()) {
+                    final String path = base.relativize(file).toString().replace(File.separatorChar, '/');
+                    entries.add(new Entry(path, attrs.size(), readMode(file), attrs.lastModifiedTime().toMillis(),
+                            crc(file, buf)));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(entries, (a, b) -> a.getPath().compareTo(b.getPath()));
+        return new InstallManifest(archiveSha256, entries);
+    }
+
+    /**
+     * Calculates the CRC-32 of a file.
+     *
+     * @param file
+     *            File to read.
+     *
+     * @return Checksum.
+     *
+     * @throws IOException
+     *             Error reading the file.
+     */
+    public static long crc(final Path file) throws IOException {
+        return crc(file, new byte[BUF_SIZE]);
+    }
+
+    private static long crc(final Path file, final byte[] buf) throws IOException {
+        final CRC32 crc = new CRC32();
+        final InputStream in = Files.newInputStream(file);
+        try {
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                crc.update(buf, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    private static int readMode(final Path file) throws IOException {
+        final PosixFileAttributeView view = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        if (view == null) {
+            return NO_MODE;
+        }
+        return FileMode.toMode(view.readAttributes().permissions());
+    }
+
+    /**
+     * File of the installation.
+     */
+    public static final class Entry {
+
+        private final String path;
+
+        private final long size;
+
+        private final int mode;
+
+        private final long mtime;
+
+        private final long crc;
+
+        /**
+         * Constructor with all data.
+         *
+         * @param path
+         *            Path relative to the base directory using '/' as separator.
+         * @param size
+         *            Size in bytes.
+         * @param mode
+         *            POSIX permission bits or -1 if the file system doesn't support them.
+         * @param mtime
+         *            Last modification time in milliseconds.
+         * @param crc
+         *            CRC-32 of the content.
+         */
+        public Entry(final String path, final long size, final int mode, final long mtime, final long crc) {
+            super();
+            if (path == null) {
+                throw new IllegalArgumentException("path == null");
+            }
+            this.path = path;
+            this.size = size;
+            this.mode = mode;
+            this.mtime = mtime;
+            this.crc = crc;
+        }
+
+        /**
+         * Returns the path relative to the base directory.
+         *
+         * @return Path using '/' as separator.
+         */
+        public final String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the size of the file.
+         *
+         * @return Number of bytes.
+         */
+        public final long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the POSIX permissions.
+         *
+         * @return Permission bits or -1 if unknown.
+         */
+        public final int getMode() {
+            return mode;
+        }
+
+        /**
+         * Returns the last modification time.
+         *
+         * @return Milliseconds since the epoch.
+         */
+        public final long getMtime() {
+            return mtime;
+        }
+
+        /**
+         * Returns the CRC-32 of the content.
+         *
+         * @return Checksum.
+         */
+        public final long getCrc() {
+            return crc;
+        }
+
+        /**
+         * Determines if a file has the recorded size, mode and modification time. Only the file attributes are read. Links are
+         * followed.
+         *
+         * @param file
+         *            File to check.
+         *
+         * @return {@code true} if the file exists and all attributes match.
+         */
+        public final boolean matches(final Path file) {
+            try {
+                final BasicFileAttributes attrs;
+                if (mode == NO_MODE) {
+                    attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                } else {
+                    final PosixFileAttributes posix = Files.readAttributes(file, PosixFileAttributes.class);
+                    if (FileMode.toMode(posix.permissions()) != mode) {
+                        return false;
+                    }
+                    attrs = posix;
+                }
+                return attrs.isRegularFile() && attrs.size() == size && attrs.lastModifiedTime().toMillis() == mtime;
+            } catch (final IOException | UnsupportedOperationException ex) {
+                // Missing or not accessible
+                return false;
+            }
+        }
+
+        /**
+         * Sets the recorded mode and modification time on a file.
+         *
+         * @param file
+         *            File to change.
+         *
+         * @throws IOException
+         *             Error changing the attributes.
+         */
+        public final void restoreAttributes(final Path file) throws IOException {
+            if (mode != NO_MODE && Files.getFileAttributeView(file, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS) != null) {
+                Files.setPosixFilePermissions(file, FileMode.toPosixPermissions(mode));
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(mtime));
+        }
+
+        @Override
+        public final String toString() {
+            return path;
+        }
+
+    }
+
+}
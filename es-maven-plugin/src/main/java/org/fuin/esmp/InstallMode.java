@@ -0,0 +1,34 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+/**
+ * Determines how the files of a cached installation are placed into the event store directory.
+ */
+public enum InstallMode {
+
+    /** Create a hard link for each file. Falls back to {@link #COPY} if the file system does not support it. */
+    HARDLINK,
+
+    /** Create a symbolic link for each file. Falls back to {@link #COPY} if the file system does not support it. */
+    SYMLINK,
+
+    /** Copy each file. */
+    COPY;
+
+}
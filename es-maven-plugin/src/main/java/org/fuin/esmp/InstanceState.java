@@ -0,0 +1,360 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.IntStream;
+
+import javax.json.Json;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonWriter;
+
+/**
+ * State of a started event store instance. The state is stored as a small JSON file, so all goals of a build can find the instance
+ * by its name:
+ *
+ * <pre>
+ * {"name":"default","pid":4711,"host":"127.0.0.1","tcpPort":1113,"httpPort":2113,"secureTcpPort":0,
+ *  "dataDir":"/tmp/es","startTime":1571234567890,"readyTime":1571234569123}
+ * </pre>
+ *
+ * Cluster nodes additionally record their internal ports as "intTcpPort" and "intHttpPort".
+ */
+public final class InstanceState {
+
+    private final String name;
+
+    private final Long pid;
+
+    private final String host;
+
+    private final int tcpPort;
+
+    private final int httpPort;
+
+    private final int secureTcpPort;
+
+    private final int intTcpPort;
+
+    private final int intHttpPort;
+
+    private final String dataDir;
+
+    private final long startTime;
+
+    private final long readyTime;
+
+    /**
+     * Constructor with all data.
+     *
+     * @param name
+     *            Name of the instance.
+     * @param pid
+     *            Process ID or {@code null} if it is not known (yet).
+     * @param host
+     *            External IP address.
+     * @param tcpPort
+     *            External TCP port.
+     * @param httpPort
+     *            External HTTP port.
+     * @param secureTcpPort
+     *            External secure TCP port or 0 if it is disabled.
+     * @param dataDir
+     *            Database directory or {@code null} for an in-memory database.
+     * @param startTime
+     *            Time the process was launched in milliseconds since the epoch.
+     * @param readyTime
+     *            Time the instance was detected ready in milliseconds since the epoch or 0 if it is not ready (yet).
+     */
+    public InstanceState(final String name, final Long pid, final String host, final int tcpPort, final int httpPort,
+            final int secureTcpPort, final String dataDir, final long startTime, final long readyTime) {
+        this(name, pid, host, tcpPort, httpPort, secureTcpPort, 0, 0, dataDir, startTime, readyTime);
+    }
+
+    private InstanceState(final String name, final Long pid, final String host, final int tcpPort, final int httpPort,
+            final int secureTcpPort, final int intTcpPort, final int intHttpPort, final String dataDir, final long startTime,
+            final long readyTime) {
+        super();
+        if (name == null) {
+            throw new IllegalArgumentException("name == null");
+        }
+        if (host == null) {
+            throw new IllegalArgumentException("host == null");
+        }
+        this.name = name;
+        this.pid = pid;
+        this.host = host;
+        this.tcpPort = tcpPort;
+        this.httpPort = httpPort;
+        this.secureTcpPort = secureTcpPort;
+        this.intTcpPort = intTcpPort;
+        this.intHttpPort = intHttpPort;
+        this.dataDir = dataDir;
+        this.startTime = startTime;
+        this.readyTime = readyTime;
+    }
+
+    /**
+     * Returns the name of the instance.
+     *
+     * @return Name.
+     */
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the process ID.
+     *
+     * @return PID or {@code null} if it is not known.
+     */
+    public final Long getPid() {
+        return pid;
+    }
+
+    /**
+     * Returns the external IP address.
+     *
+     * @return Host.
+     */
+    public final String getHost() {
+        return host;
+    }
+
+    /**
+     * Returns the external TCP port.
+     *
+     * @return Port.
+     */
+    public final int getTcpPort() {
+        return tcpPort;
+    }
+
+    /**
+     * Returns the external HTTP port.
+     *
+     * @return Port.
+     */
+    public final int getHttpPort() {
+        return httpPort;
+    }
+
+    /**
+     * Returns the external secure TCP port.
+     *
+     * @return Port or 0 if it is disabled.
+     */
+    public final int getSecureTcpPort() {
+        return secureTcpPort;
+    }
+
+    /**
+     * Returns the internal TCP port of a cluster node.
+     *
+     * @return Port or 0 if the instance is not a cluster node.
+     */
+    public final int getIntTcpPort() {
+        return intTcpPort;
+    }
+
+    /**
+     * Returns the internal HTTP port of a cluster node.
+     *
+     * @return Port or 0 if the instance is not a cluster node.
+     */
+    public final int getIntHttpPort() {
+        return intHttpPort;
+    }
+
+    /**
+     * Returns all ports used by the instance.
+     *
+     * @return External and internal ports that are set.
+     */
+    public final int[] getPorts() {
+        return IntStream.of(tcpPort, httpPort, secureTcpPort, intTcpPort, intHttpPort).filter(port -> port > 0).toArray();
+    }
+
+    /**
+     * Returns the database directory.
+     *
+     * @return Directory or {@code null} for an in-memory database.
+     */
+    public final String getDataDir() {
+        return dataDir;
+    }
+
+    /**
+     * Returns the time the process was launched.
+     *
+     * @return Milliseconds since the epoch.
+     */
+    public final long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the time the instance was detected ready.
+     *
+     * @return Milliseconds since the epoch or 0 if it is not ready.
+     */
+    public final long getReadyTime() {
+        return readyTime;
+    }
+
+    /**
+     * Returns a copy of this state for a launched process.
+     *
+     * @param launchedPid
+     *            Process ID or {@code null} if it is not known (yet).
+     * @param time
+     *            Time the process was launched in milliseconds since the epoch.
+     *
+     * @return New state.
+     */
+    public final InstanceState launched(final Long launchedPid, final long time) {
+        return new InstanceState(name, launchedPid, host, tcpPort, httpPort, secureTcpPort, intTcpPort, intHttpPort, dataDir, time,
+                0);
+    }
+
+    /**
+     * Returns a copy of this state for a ready instance.
+     *
+     * @param readyPid
+     *            Process ID.
+     * @param time
+     *            Time the instance was detected ready in milliseconds since the epoch.
+     *
+     * @return New state.
+     */
+    public final InstanceState ready(final Long readyPid, final long time) {
+        return new InstanceState(name, readyPid, host, tcpPort, httpPort, secureTcpPort, intTcpPort, intHttpPort, dataDir,
+                startTime, time);
+    }
+
+    /**
+     * Returns a copy of this state for a cluster node.
+     *
+     * @param nodeIntTcpPort
+     *            Internal TCP port.
+     * @param nodeIntHttpPort
+     *            Internal HTTP port.
+     *
+     * @return New state.
+     */
+    public final InstanceState withInternalPorts(final int nodeIntTcpPort, final int nodeIntHttpPort) {
+        return new InstanceState(name, pid, host, tcpPort, httpPort, secureTcpPort, nodeIntTcpPort, nodeIntHttpPort, dataDir,
+                startTime, readyTime);
+    }
+
+    /**
+     * Writes the state to a file. The file is replaced atomically if the file system supports it.
+     *
+     * @param file
+     *            File to write.
+     *
+     * @throws IOException
+     *             Error writing the file.
+     */
+    public final void save(final File file) throws IOException {
+        final JsonObjectBuilder builder = Json.createObjectBuilder();
+        builder.add("name", name);
+        if (pid != null) {
+            builder.add("pid", pid.longValue());
+        }
+        builder.add("host", host);
+        builder.add("tcpPort", tcpPort);
+        builder.add("httpPort", httpPort);
+        builder.add("secureTcpPort", secureTcpPort);
+        if (intTcpPort > 0) {
+            builder.add("intTcpPort", intTcpPort);
+        }
+        if (intHttpPort > 0) {
+            builder.add("intHttpPort", intHttpPort);
+        }
+        if (dataDir != null) {
+            builder.add("dataDir", dataDir);
+        }
+        builder.add("startTime", startTime);
+        builder.add("readyTime", readyTime);
+
+        file.getParentFile().mkdirs();
+        final File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        final Writer writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8);
+        try {
+            final JsonWriter jsonWriter = Json.createWriter(writer);
+            jsonWriter.writeObject(builder.build());
+            jsonWriter.close();
+        } finally {
+            writer.close();
+        }
+        try {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Loads the state from a file.
+     *
+     * @param file
+     *            File to read.
+     *
+     * @return State or {@code null} if the file does not exist.
+     *
+     * @throws IOException
+     *             Error reading the file or the file is not a valid state.
+     */
+    public static InstanceState load(final File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        final Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+        try {
+            final JsonReader jsonReader = Json.createReader(reader);
+            final JsonObject obj = jsonReader.readObject();
+            final JsonNumber pid = obj.getJsonNumber("pid");
+            return new InstanceState(obj.getString("name"), pid == null ? null : pid.longValue(), obj.getString("host"),
+                    obj.getInt("tcpPort"), obj.getInt("httpPort"), obj.getInt("secureTcpPort", 0), obj.getInt("intTcpPort", 0),
+                    obj.getInt("intHttpPort", 0), obj.getString("dataDir", null), obj.getJsonNumber("startTime").longValue(),
+                    obj.getJsonNumber("readyTime").longValue());
+        } catch (final RuntimeException ex) {
+            // JSON-P reports syntax errors and missing values as unchecked exceptions
+            throw new IOException("Invalid instance state file: " + file, ex);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Override
+    public final String toString() {
+        return name + "[pid=" + pid + ", host=" + host + ", tcpPort=" + tcpPort + ", httpPort=" + httpPort + "]";
+    }
+
+}
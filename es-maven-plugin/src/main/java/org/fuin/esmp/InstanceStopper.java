@@ -0,0 +1,273 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops event store processes. A graceful shutdown is requested via HTTP first. If the process doesn't exit in time, it is asked to
+ * terminate (SIGTERM) and finally killed (SIGKILL) together with all its descendants. Signals are only sent if the start time of the
+ * process matches the recorded launch time, so a reused process ID never hits an unrelated process. Instances are thread safe.
+ */
+public final class InstanceStopper {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InstanceStopper.class);
+
+    private static final int CONNECT_TIMEOUT_MS = 250;
+
+    private static final long POLL_MS = 100;
+
+    private final String command;
+
+    private final boolean graceful;
+
+    private final String adminUser;
+
+    private final String adminPassword;
+
+    private final int shutdownTimeoutMs;
+
+    private final int terminateTimeoutMs;
+
+    private final int portTimeoutMs;
+
+    /**
+     * Constructor with all data.
+     *
+     * @param command
+     *            Command used to terminate processes if the Java runtime has no {@code ProcessHandle} or {@code null} for the OS
+     *            default.
+     * @param graceful
+     *            {@code true} to request a graceful shutdown via HTTP first.
+     * @param adminUser
+     *            User for the shutdown request.
+     * @param adminPassword
+     *            Password for the shutdown request.
+     * @param shutdownTimeoutMs
+     *            Milliseconds to wait for the process to exit after the shutdown request.
+     * @param terminateTimeoutMs
+     *            Milliseconds to wait for the process to exit after SIGTERM and again after SIGKILL.
+     * @param portTimeoutMs
+     *            Milliseconds to wait for the TCP and HTTP ports to become free.
+     */
+    public InstanceStopper(final String command, final boolean graceful, final String adminUser, final String adminPassword,
+            final int shutdownTimeoutMs, final int terminateTimeoutMs, final int portTimeoutMs) {
+        super();
+        this.command = command;
+        this.graceful = graceful;
+        this.adminUser = adminUser;
+        this.adminPassword = adminPassword;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.terminateTimeoutMs = terminateTimeoutMs;
+        this.portTimeoutMs = portTimeoutMs;
+    }
+
+    /**
+     * Creates a stopper with the default settings of the stop goal.
+     *
+     * @return Stopper that tries a graceful shutdown with "admin/changeit" first.
+     */
+    public static InstanceStopper createDefault() {
+        return new InstanceStopper(null, true, "admin", "changeit", 10000, 5000, 10000);
+    }
+
+    /**
+     * Stops an event store instance and waits until its TCP and HTTP ports are free. The state file is not deleted.
+     *
+     * @param state
+     *            Instance to stop.
+     *
+     * @return How the instance was stopped like "graceful" or "SIGKILL".
+     *
+     * @throws IOException
+     *             Error stopping the process, the process is still running or the ports are still in use.
+     * @throws InterruptedException
+     *             Interrupted while waiting.
+     */
+    public final String stop(final InstanceState state) throws IOException, InterruptedException {
+
+        if (state.getPid() == null) {
+            throw new IOException("Process ID of the event store instance is unknown: " + state);
+        }
+        LOG.info("Stopping {}", state);
+        final long pid = state.getPid();
+        final ProcessControl control = new ProcessControl(command);
+        final ProcessControl.Identity identity = control.identify(pid, state.getStartTime());
+        final String how;
+        if (identity == ProcessControl.Identity.SAME) {
+            how = stop(control, state);
+        } else if (identity == ProcessControl.Identity.UNKNOWN) {
+            how = stopUnverified(control, state);
+        } else {
+            LOG.info("Event store process {} is not running", pid);
+            how = "not running";
+        }
+        waitForPortsFree(state);
+        PortAllocator.release(state.getPorts());
+        return how;
+
+    }
+
+    private String stop(final ProcessControl control,
+            final InstanceState state) throws IOException,
+            InterruptedException {
+
+        final long pid = state.getPid();
+        // Children don't belong to the process any more after it exited
+        final Set<Long> pids = new LinkedHashSet<>();
+        pids.add(pid);
+        pids.addAll(control.descendants(pid));
+
+        if (graceful && requestShutdown(state)
+                && control.waitFor(pid, shutdownTimeoutMs)) {
+            for (final Long child : pids) {
+                control.terminate(child, true);
+            }
+            return "graceful";
+        }
+
+        pids.addAll(control.descendants(pid));
+        for (final Long p : pids) {
+            control.terminate(p, false);
+        }
+        if (waitForAll(control, pids)) {
+            return "SIGTERM";
+        }
+
+        pids.addAll(control.descendants(pid));
+        for (final Long p : pids) {
+            control.terminate(p, true);
+        }
+        if (waitForAll(control, pids)) {
+            return "SIGKILL";
+        }
+        throw new IOException("Event store process " + pid
+                + " is still running after SIGKILL");
+
+    }
+
+    /**
+     * Stops a process that cannot be verified to be the event store. The ID might belong to an unrelated process, so only the
+     * shutdown request is sent and no signal.
+     */
+    private String stopUnverified(final ProcessControl control,
+            final InstanceState state) throws IOException,
+            InterruptedException {
+
+        final long pid = state.getPid();
+        if (graceful && requestShutdown(state)
+                && control.waitFor(pid, shutdownTimeoutMs)) {
+            return "graceful";
+        }
+        throw new IOException("Cannot verify that process " + pid
+                + " is the event store (start time unknown)"
+                + " - Not terminating it: " + state);
+
+    }
+
+    private boolean waitForAll(final ProcessControl control,
+            final Set<Long> pids) throws IOException, InterruptedException {
+        final long end = System.currentTimeMillis() + terminateTimeoutMs;
+        for (final Long p : pids) {
+            if (!control.waitFor(p,
+                    Math.max(0, end - System.currentTimeMillis()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean requestShutdown(final InstanceState state) {
+        final String url = "http://" + state.getHost() + ":"
+                + state.getHttpPort()
+                + "/admin/shutdown";
+        try {
+            final HttpURLConnection con = (HttpURLConnection) new URL(url)
+                    .openConnection();
+            try {
+                con.setConnectTimeout(shutdownTimeoutMs);
+                con.setReadTimeout(shutdownTimeoutMs);
+                con.setRequestMethod("POST");
+                con.setRequestProperty("Authorization", "Basic "
+                        + Base64.getEncoder().encodeToString(
+                                (adminUser + ":" + adminPassword)
+                                        .getBytes(StandardCharsets.UTF_8)));
+                con.setDoOutput(true);
+                con.getOutputStream().close();
+                final int code = con.getResponseCode();
+                if (code / 100 == 2) {
+                    LOG.debug("Graceful shutdown requested: {}", url);
+                    return true;
+                }
+                LOG.warn("Graceful shutdown request failed with HTTP {}: {}",
+                        code, url);
+            } finally {
+                con.disconnect();
+            }
+        } catch (final IOException ex) {
+            LOG.warn("Graceful shutdown request failed: {} ({})", url,
+                    ex.toString());
+        }
+        return false;
+    }
+
+    private void waitForPortsFree(final InstanceState state)
+            throws IOException, InterruptedException {
+        final long end = System.currentTimeMillis() + portTimeoutMs;
+        for (final int port : new int[] { state.getTcpPort(),
+                state.getHttpPort() }) {
+            while (isInUse(state.getHost(), port)) {
+                if (System.currentTimeMillis() >= end) {
+                    throw new IOException("Port " + port
+                            + " is still in use after " + portTimeoutMs
+                            + " ms");
+                }
+                Thread.sleep(POLL_MS);
+            }
+        }
+    }
+
+    private boolean isInUse(final String host, final int port) {
+        final Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port),
+                    CONNECT_TIMEOUT_MS);
+            return true;
+        } catch (final IOException ex) {
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (final IOException ex) {
+                // Ignore
+            }
+        }
+    }
+
+}
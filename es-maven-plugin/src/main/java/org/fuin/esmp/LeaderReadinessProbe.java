@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+/**
+ * Considers a cluster ready as soon as the gossip of a node reports the expected number of alive members and one of them is the
+ * leader ("Master" in older event store versions).
+ */
+public final class LeaderReadinessProbe extends ReadinessProbe {
+
+    private final URL url;
+
+    private final int clusterSize;
+
+    private final int timeoutMs;
+
+    /**
+     * Constructor with all data.
+     *
+     * @param url
+     *            Gossip URL of a node like "http://127.0.0.1:2113/gossip".
+     * @param clusterSize
+     *            Number of nodes that must be alive.
+     * @param timeoutMs
+     *            Connect and read timeout in milliseconds.
+     */
+    public LeaderReadinessProbe(final URL url, final int clusterSize, final int timeoutMs) {
+        super("leader");
+        if (url == null) {
+            throw new IllegalArgumentException("url == null");
+        }
+        this.url = url;
+        this.clusterSize = clusterSize;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public final boolean probe() {
+        try {
+            final HttpURLConnection con = (HttpURLConnection) url.openConnection();
+            try {
+                con.setConnectTimeout(timeoutMs);
+                con.setReadTimeout(timeoutMs);
+                con.setUseCaches(false);
+                con.setRequestProperty("Accept", "application/json");
+                if (con.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                    return false;
+                }
+                final Reader reader = new InputStreamReader(con.getInputStream(), StandardCharsets.UTF_8);
+                try {
+                    return isElected(reader, clusterSize);
+                } finally {
+                    reader.close();
+                }
+            } finally {
+                con.disconnect();
+            }
+        } catch (final IOException | RuntimeException ex) {
+            // Not reachable or gossip not (yet) valid
+            return false;
+        }
+    }
+
+    /**
+     * Determines if a gossip message reports an elected leader.
+     *
+     * @param reader
+     *            Gossip JSON like <code>{"members":[{"state":"Leader","isAlive":true}, ...]}</code>.
+     * @param clusterSize
+     *            Number of members that must be alive.
+     *
+     * @return {@code true} if enough members are alive and one of them is the leader.
+     */
+    static boolean isElected(final Reader reader, final int clusterSize) {
+        final JsonReader jsonReader = Json.createReader(reader);
+        final JsonObject gossip = jsonReader.readObject();
+        final JsonArray members = gossip.getJsonArray("members");
+        if (members == null) {
+            return false;
+        }
+        int alive = 0;
+        boolean leader = false;
+        for (int i = 0; i < members.size(); i++) {
+            final JsonObject member = members.getJsonObject(i);
+            if (member.getBoolean("isAlive", false)) {
+                alive++;
+                final String state = member.getString("state", "");
+                if ("Leader".equals(state) || "Master".equals(state)) {
+                    leader = true;
+                }
+            }
+        }
+        return leader && alive >= clusterSize;
+    }
+
+}
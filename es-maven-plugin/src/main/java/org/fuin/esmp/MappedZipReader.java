@@ -0,0 +1,469 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a ZIP file by memory mapping it. The central directory is parsed directly from the mapped region and entries are inflated
+ * from it using one reused {@link Inflater} per thread. Stored entries are written to the target file straight from the mapped
+ * region. The reader is thread safe, different entries can be extracted at the same time.<br>
+ * <br>
+ * Only plain ZIP files are supported. A {@link ZipException} is thrown for archives larger than 2 GB, ZIP64 archives, encrypted
+ * entries and compression methods other than "stored" and "deflated". The mapping is released when the reader is closed, so the
+ * file isn't locked (Windows) until the next garbage collection. The reader must not be closed while entries are extracted.
+ */
+public final class MappedZipReader implements Closeable {
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+
+    private static final int END_SIG = 0x06054b50;
+
+    private static final int END_SIZE = 22;
+
+    private static final int MAX_COMMENT = 0xFFFF;
+
+    private static final int STORED = 0;
+
+    private static final int DEFLATED = 8;
+
+    private static final int BUF_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private static final ThreadLocal<byte[]> IN_BUFFER = ThreadLocal.withInitial(() -> new byte[BUF_SIZE]);
+
+    private static final ThreadLocal<byte[]> OUT_BUFFER = ThreadLocal.withInitial(() -> new byte[BUF_SIZE]);
+
+    private static final Unmapper UNMAPPER = findUnmapper();
+
+    private final File file;
+
+    private final MappedByteBuffer buffer;
+
+    private final List<Entry> entries;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructor with file. Maps the file and reads the central directory.
+     *
+     * @param file
+     *            ZIP file to read.
+     *
+     * @throws ZipException
+     *             The file is not a ZIP file or uses an unsupported feature.
+     * @throws IOException
+     *             Error reading the file.
+     */
+    public MappedZipReader(final File file) throws IOException {
+        super();
+        this.file = file;
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ZipException("Archive too large to be mapped: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            // The mapping stays valid after closing the channel
+            channel.close();
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            entries = Collections.unmodifiableList(readCentralDirectory());
+        } catch (final IOException | RuntimeException ex) {
+            // Don't keep the file locked (Windows) when the caller falls back to another reader
+            if (UNMAPPER != null) {
+                try {
+                    UNMAPPER.unmap(buffer);
+                } catch (final IOException ex2) {
+                    ex.addSuppressed(ex2);
+                }
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the entries in the order of the central directory.
+     *
+     * @return Unmodifiable list of entries.
+     */
+    public final List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Writes the content of an entry into a file. An existing file is overwritten.
+     *
+     * @param entry
+     *            Entry of this archive.
+     * @param target
+     *            File to write.
+     *
+     * @throws ZipException
+     *             The entry data is corrupt.
+     * @throws IOException
+     *             Error writing the file.
+     */
+    public final void extract(final Entry entry, final File target) throws IOException {
+
+        if (closed) {
+            throw new IOException("Reader is closed: " + file);
+        }
+        final ByteBuffer data = data(entry);
+        final CRC32 crc = new CRC32();
+        final FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            final long written;
+            if (entry.getMethod() == STORED) {
+                crc.update(data.duplicate());
+                while (data.hasRemaining()) {
+                    out.write(data);
+                }
+                written = entry.getSize();
+            } else {
+                written = inflate(entry, data, out, crc);
+            }
+            if (written != entry.getSize()) {
+                throw new ZipException("Expected " + entry.getSize() + " bytes, but was " + written + ": " + entry.getName());
+            }
+            if (crc.getValue() != entry.getCrc()) {
+                throw new ZipException("CRC mismatch: " + entry.getName());
+            }
+        } finally {
+            out.close();
+        }
+
+    }
+
+    private long inflate(final Entry entry, final ByteBuffer data, final FileChannel out, final CRC32 crc) throws IOException {
+        final Inflater inflater = INFLATER.get();
+        final byte[] in = IN_BUFFER.get();
+        final byte[] buf = OUT_BUFFER.get();
+        inflater.reset();
+        long written = 0;
+        boolean dummy = false;
+        try {
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (data.hasRemaining()) {
+                        final int len = Math.min(in.length, data.remaining());
+                        data.get(in, 0, len);
+                        inflater.setInput(in, 0, len);
+                    } else if (!dummy) {
+                        // The inflater may need one extra byte if the "nowrap" option is used
+                        dummy = true;
+                        in[0] = 0;
+                        inflater.setInput(in, 0, 1);
+                    } else {
+                        throw new ZipException("Unexpected end of data: " + entry.getName());
+                    }
+                }
+                final int len = inflater.inflate(buf);
+                if (len == 0 && inflater.needsDictionary()) {
+                    throw new ZipException("Entry requires a preset dictionary: " + entry.getName());
+                }
+                if (len > 0) {
+                    crc.update(buf, 0, len);
+                    final ByteBuffer bb = ByteBuffer.wrap(buf, 0, len);
+                    while (bb.hasRemaining()) {
+                        out.write(bb);
+                    }
+                    written += len;
+                }
+            }
+        } catch (final DataFormatException ex) {
+            final ZipException zex = new ZipException("Invalid deflated data: " + entry.getName());
+            zex.initCause(ex);
+            throw zex;
+        }
+        return written;
+    }
+
+    /**
+     * Releases the mapping of the file. Accessing the mapped region afterwards would crash the JVM, so all extractions must be
+     * finished before. Calling this method more than once has no effect.
+     *
+     * @throws IOException
+     *             Error releasing the mapping.
+     */
+    @Override
+    public final synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (UNMAPPER != null) {
+            UNMAPPER.unmap(buffer);
+        }
+    }
+
+    /**
+     * Determines if mappings can be released explicitly. If not, they are released by the garbage collector.
+     *
+     * @return {@code true} if {@link #close()} releases the mapping.
+     */
+    public static boolean isUnmapSupported() {
+        return UNMAPPER != null;
+    }
+
+    private static Unmapper findUnmapper() {
+        try {
+            // Java 9 and later
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            final Object unsafe = theUnsafe.get(null);
+            return buffer -> invoke(invokeCleaner, unsafe, buffer);
+        } catch (final ReflectiveOperationException | RuntimeException ex) {
+            // Try Java 8
+        }
+        try {
+            final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> invoke(clean, invoke(cleaner, buffer));
+        } catch (final ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static Object invoke(final Method method, final Object obj, final Object... args) throws IOException {
+        try {
+            return method.invoke(obj, args);
+        } catch (final ReflectiveOperationException | RuntimeException ex) {
+            throw new IOException("Couldn't release the mapping", ex);
+        }
+    }
+
+    private ByteBuffer data(final Entry entry) throws ZipException {
+        final int pos = (int) entry.getLocalHeaderOffset();
+        if (pos + 30 > buffer.capacity() || buffer.getInt(pos) != LOCAL_HEADER_SIG) {
+            throw new ZipException("Invalid local file header: " + entry.getName());
+        }
+        final long start = pos + 30L + u16(pos + 26) + u16(pos + 28);
+        if (start + entry.getCompressedSize() > buffer.capacity()) {
+            throw new ZipException("Entry data exceeds the archive: " + entry.getName());
+        }
+        final ByteBuffer data = buffer.duplicate();
+        data.position((int) start);
+        data.limit((int) (start + entry.getCompressedSize()));
+        return data;
+    }
+
+    private List<Entry> readCentralDirectory() throws ZipException {
+
+        final int end = findEnd();
+        final int count = u16(end + 10);
+        final long size = u32(end + 12);
+        final long offset = u32(end + 16);
+        if (count == 0xFFFF || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives are not supported: " + file);
+        }
+        if (offset + size > end) {
+            throw new ZipException("Invalid central directory: " + file);
+        }
+
+        final List<Entry> list = new ArrayList<>(count);
+        int pos = (int) offset;
+        for (int i = 0; i < count; i++) {
+            if (pos + 46 > end || buffer.getInt(pos) != CENTRAL_HEADER_SIG) {
+                throw new ZipException("Invalid central directory header #" + i + ": " + file);
+            }
+            final int flags = u16(pos + 8);
+            final int method = u16(pos + 10);
+            final long crc = u32(pos + 16);
+            final long compressedSize = u32(pos + 20);
+            final long uncompressedSize = u32(pos + 24);
+            final int nameLen = u16(pos + 28);
+            final int extraLen = u16(pos + 30);
+            final int commentLen = u16(pos + 32);
+            final long localHeaderOffset = u32(pos + 42);
+            final byte[] name = new byte[nameLen];
+            final ByteBuffer nameBuf = buffer.duplicate();
+            nameBuf.position(pos + 46);
+            nameBuf.get(name);
+            final Entry entry = new Entry(new String(name, StandardCharsets.UTF_8), method, crc, compressedSize,
+                    uncompressedSize, localHeaderOffset);
+            if (compressedSize == 0xFFFFFFFFL || uncompressedSize == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+                throw new ZipException("ZIP64 entries are not supported: " + entry.getName());
+            }
+            if ((flags & 1) != 0) {
+                throw new ZipException("Encrypted entries are not supported: " + entry.getName());
+            }
+            if (method != STORED && method != DEFLATED) {
+                throw new ZipException("Compression method " + method + " is not supported: " + entry.getName());
+            }
+            list.add(entry);
+            pos = pos + 46 + nameLen + extraLen + commentLen;
+        }
+        return list;
+
+    }
+
+    private int findEnd() throws ZipException {
+        if (buffer.capacity() < END_SIZE) {
+            throw new ZipException("Archive too short: " + file);
+        }
+        final int min = Math.max(0, buffer.capacity() - END_SIZE - MAX_COMMENT);
+        for (int pos = buffer.capacity() - END_SIZE; pos >= min; pos--) {
+            if (buffer.getInt(pos) == END_SIG) {
+                return pos;
+            }
+        }
+        throw new ZipException("End of central directory not found: " + file);
+    }
+
+    private int u16(final int pos) {
+        return buffer.getShort(pos) & 0xFFFF;
+    }
+
+    private long u32(final int pos) {
+        return buffer.getInt(pos) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Entry of the central directory.
+     */
+    public static final class Entry {
+
+        private final String name;
+
+        private final int method;
+
+        private final long crc;
+
+        private final long compressedSize;
+
+        private final long size;
+
+        private final long localHeaderOffset;
+
+        private Entry(final String name, final int method, final long crc, final long compressedSize, final long size,
+                final long localHeaderOffset) {
+            super();
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        /**
+         * Returns the name of the entry.
+         *
+         * @return Relative path.
+         */
+        public final String getName() {
+            return name;
+        }
+
+        /**
+         * Determines if the entry is a directory.
+         *
+         * @return {@code true} if the name ends with a slash.
+         */
+        public final boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        /**
+         * Returns the compression method.
+         *
+         * @return 0 for "stored" or 8 for "deflated".
+         */
+        public final int getMethod() {
+            return method;
+        }
+
+        /**
+         * Returns the CRC-32 of the uncompressed content.
+         *
+         * @return Checksum.
+         */
+        public final long getCrc() {
+            return crc;
+        }
+
+        /**
+         * Returns the size of the compressed content.
+         *
+         * @return Number of bytes in the archive.
+         */
+        public final long getCompressedSize() {
+            return compressedSize;
+        }
+
+        /**
+         * Returns the size of the uncompressed content.
+         *
+         * @return Number of bytes.
+         */
+        public final long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the position of the local file header.
+         *
+         * @return Offset in the archive.
+         */
+        public final long getLocalHeaderOffset() {
+            return localHeaderOffset;
+        }
+
+        @Override
+        public final String toString() {
+            return name;
+        }
+
+    }
+
+    /**
+     * Releases the mapping of a buffer.
+     */
+    private interface Unmapper {
+
+        void unmap(ByteBuffer buffer) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+/**
+ * Opens GZIP streams that are decompressed using more than one thread. BGZF streams are inflated member by member in parallel by a
+ * {@link BgzfInputStream}. All other streams are decompressed in a pipeline: one thread reads the compressed bytes, a second one
+ * inflates them and the caller consumes the result.
+ */
+public final class ParallelGzip {
+
+    private static final int HEADER_SIZE = 18;
+
+    private static final int COMPRESSED_CHUNK = 256 * 1024;
+
+    private static final int UNCOMPRESSED_CHUNK = 1024 * 1024;
+
+    private static final int CHUNKS = 4;
+
+    private ParallelGzip() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Opens a GZIP stream.
+     *
+     * @param in
+     *            Compressed stream.
+     * @param threads
+     *            Number of threads: {@code 1} decompresses in the calling thread like a {@link GzipCompressorInputStream}, a value less
+     *            than {@code 1} uses the number of available processors.
+     *
+     * @return Decompressed stream. Closing it closes the compressed stream.
+     *
+     * @throws IOException
+     *             Error reading the GZIP header.
+     */
+    public static InputStream open(final InputStream in, final int threads) throws IOException {
+        final int count = (threads < 1) ? Runtime.getRuntime().availableProcessors() : threads;
+        if (count == 1) {
+            return new GzipCompressorInputStream(in, true);
+        }
+        final BufferedInputStream bin = new BufferedInputStream(in, COMPRESSED_CHUNK);
+        final byte[] header = new byte[HEADER_SIZE];
+        bin.mark(HEADER_SIZE);
+        int len = 0;
+        int n;
+        while (len < HEADER_SIZE && (n = bin.read(header, len, HEADER_SIZE - len)) != -1) {
+            len += n;
+        }
+        bin.reset();
+        if (BgzfInputStream.isBgzf(header, len)) {
+            return new BgzfInputStream(bin, count);
+        }
+        final InputStream compressed = new ReadAheadInputStream(bin, COMPRESSED_CHUNK, CHUNKS, "es-gzip-read");
+        return new ReadAheadInputStream(new GzipCompressorInputStream(compressed, true), UNCOMPRESSED_CHUNK, CHUNKS,
+                "es-gzip-inflate");
+    }
+
+}
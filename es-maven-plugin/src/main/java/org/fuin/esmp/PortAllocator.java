@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds free TCP ports by letting the operating system choose them. Ports handed out are remembered until they are released, so
+ * modules of a parallel build running in the same JVM never get the same port.
+ */
+public final class PortAllocator {
+
+    private static final int MAX_TRIES = 100;
+
+    private static final Set<Integer> ALLOCATED = ConcurrentHashMap.newKeySet();
+
+    private PortAllocator() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Returns a number of different free ports. All sockets are kept open until every port is found, so the operating system cannot
+     * return the same port twice. If not all ports are found, the ones found so far are released again.
+     *
+     * @param count
+     *            Number of ports.
+     *
+     * @return Port numbers.
+     *
+     * @throws IOException
+     *             Error opening a socket or no free port found.
+     */
+    public static int[] allocate(final int count) throws IOException {
+        final int[] ports = new int[count];
+        final List<ServerSocket> sockets = new ArrayList<>();
+        int found = 0;
+        try {
+            while (found < count) {
+                if (sockets.size() >= MAX_TRIES) {
+                    throw new IOException("Couldn't find " + count + " free ports after " + MAX_TRIES + " tries");
+                }
+                final ServerSocket socket = new ServerSocket(0);
+                sockets.add(socket);
+                final int port = socket.getLocalPort();
+                if (ALLOCATED.add(port)) {
+                    ports[found++] = port;
+                }
+            }
+        } catch (final IOException | RuntimeException ex) {
+            release(Arrays.copyOf(ports, found));
+            throw ex;
+        } finally {
+            for (final ServerSocket socket : sockets) {
+                socket.close();
+            }
+        }
+        return ports;
+    }
+
+    /**
+     * Allows handing out ports again.
+     *
+     * @param ports
+     *            Ports returned by {@link #allocate(int)}. Other ports are ignored.
+     */
+    public static void release(final int... ports) {
+        for (final int port : ports) {
+            ALLOCATED.remove(port);
+        }
+    }
+
+}
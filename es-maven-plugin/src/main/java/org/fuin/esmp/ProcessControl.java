@@ -0,0 +1,329 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.OS;
+import org.apache.commons.exec.PumpStreamHandler;
+
+/**
+ * Inspects and terminates processes by their operating system ID. Uses {@code java.lang.ProcessHandle} if the Java runtime provides
+ * it. Otherwise (Java 8) the OS commands "kill"/"pgrep" or "tasklist"/"taskkill" are executed.
+ */
+public final class ProcessControl {
+
+    private static final long POLL_MS = 50;
+
+    /** Maximum difference between the recorded launch time and the start time reported by the OS. */
+    private static final long START_TOLERANCE_MS = 30000;
+
+    private static final Class<?> HANDLE_CLASS = findHandleClass();
+
+    private final String killCommand;
+
+    /**
+     * Constructor with the command used if {@code ProcessHandle} is not available.
+     *
+     * @param killCommand
+     *            Command like "kill" or "taskkill" or {@code null} for the OS default.
+     */
+    public ProcessControl(final String killCommand) {
+        super();
+        if (killCommand == null) {
+            this.killCommand = OS.isFamilyWindows() ? "taskkill" : "kill";
+        } else {
+            this.killCommand = killCommand;
+        }
+    }
+
+    private static Class<?> findHandleClass() {
+        try {
+            return Class.forName("java.lang.ProcessHandle");
+        } catch (final ClassNotFoundException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Determines if a process is running.
+     *
+     * @param pid
+     *            Process ID.
+     *
+     * @return {@code true} if the process exists and did not terminate.
+     *
+     * @throws IOException
+     *             Error executing an OS command.
+     */
+    public final boolean isAlive(final long pid) throws IOException {
+        final Object handle = handle(pid);
+        if (HANDLE_CLASS != null) {
+            return handle != null && (Boolean) invoke(handle, "isAlive");
+        }
+        if (OS.isFamilyWindows()) {
+            return execute("tasklist", "/FI", "PID eq " + pid, "/NH").contains(" " + pid + " ");
+        }
+        return exitValue(killCommand, "-0", String.valueOf(pid)) == 0;
+    }
+
+    /**
+     * Determines if a process ID still belongs to the process launched at a given time. Operating systems reuse the IDs of terminated
+     * processes, so a recorded ID might point to an unrelated process.
+     *
+     * @param pid
+     *            Process ID.
+     * @param launchTime
+     *            Time the process was launched in milliseconds since the epoch or 0 if it is not known.
+     *
+     * @return Result of the comparison.
+     *
+     * @throws IOException
+     *             Error executing an OS command.
+     */
+    public final Identity identify(final long pid, final long launchTime) throws IOException {
+        if (!isAlive(pid)) {
+            return Identity.OTHER;
+        }
+        final Long started = startTime(pid);
+        if (started == null || launchTime <= 0) {
+            return Identity.UNKNOWN;
+        }
+        if (Math.abs(started - launchTime) <= START_TOLERANCE_MS) {
+            return Identity.SAME;
+        }
+        return Identity.OTHER;
+    }
+
+    /**
+     * Returns the time a process was started.
+     *
+     * @param pid
+     *            Process ID.
+     *
+     * @return Milliseconds since the epoch or {@code null} if the process is not running or the OS doesn't provide the time (Windows
+     *         with Java 8).
+     *
+     * @throws IOException
+     *             Error executing an OS command.
+     */
+    public final Long startTime(final long pid) throws IOException {
+        if (HANDLE_CLASS != null) {
+            final Object handle = handle(pid);
+            if (handle == null) {
+                return null;
+            }
+            final Object info = invoke(handle, "info");
+            try {
+                final Method startInstant = Class.forName("java.lang.ProcessHandle$Info").getMethod("startInstant");
+                final Optional<?> instant = (Optional<?>) startInstant.invoke(info);
+                return instant.isPresent() ? ((Instant) instant.get()).toEpochMilli() : null;
+            } catch (final ReflectiveOperationException ex) {
+                throw new IOException("Error calling ProcessHandle.Info.startInstant()", ex);
+            }
+        }
+        if (OS.isFamilyWindows()) {
+            return null;
+        }
+        // Elapsed time is "[[dd-]hh:]mm:ss" and available on all POSIX systems
+        final String elapsed = execute("ps", "-o", "etime=", "-p", String.valueOf(pid)).trim();
+        if (elapsed.isEmpty()) {
+            return null;
+        }
+        return System.currentTimeMillis() - parseElapsed(elapsed) * 1000;
+    }
+
+    /**
+     * Parses the elapsed time of the "ps" command.
+     *
+     * @param elapsed
+     *            Time like "05:02", "03:04:05" or "2-03:04:05".
+     *
+     * @return Seconds.
+     */
+    static long parseElapsed(final String elapsed) {
+        final int dash = elapsed.indexOf('-');
+        final long days = (dash == -1) ? 0 : Long.parseLong(elapsed.substring(0, dash));
+        long seconds = 0;
+        for (final String part : elapsed.substring(dash + 1).split(":")) {
+            seconds = seconds * 60 + Long.parseLong(part);
+        }
+        return days * 24 * 60 * 60 + seconds;
+    }
+
+    /**
+     * Returns all descendants of a process. Must be called before the process is terminated, as orphaned children don't belong to
+     * their parent any more.
+     *
+     * @param pid
+     *            Process ID.
+     *
+     * @return IDs of children, grand children and so on. Always empty on Windows with Java 8 ({@link #terminate(long, boolean)}
+     *         includes the process tree there).
+     *
+     * @throws IOException
+     *             Error executing an OS command.
+     */
+    public final List<Long> descendants(final long pid) throws IOException {
+        final List<Long> result = new ArrayList<>();
+        final Object handle = handle(pid);
+        if (HANDLE_CLASS != null) {
+            if (handle != null) {
+                final Iterator<?> it = ((Stream<?>) invoke(handle, "descendants")).iterator();
+                while (it.hasNext()) {
+                    result.add((Long) invoke(it.next(), "pid"));
+                }
+            }
+            return result;
+        }
+        if (OS.isFamilyWindows()) {
+            return result;
+        }
+        for (final String line : execute("pgrep", "-P", String.valueOf(pid)).split("\\s+")) {
+            if (!line.isEmpty()) {
+                final long child = Long.parseLong(line);
+                result.add(child);
+                result.addAll(descendants(child));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Asks a process to terminate (SIGTERM) or kills it (SIGKILL). Nothing happens if the process is not running.
+     *
+     * @param pid
+     *            Process ID.
+     * @param force
+     *            {@code true} to kill the process.
+     *
+     * @throws IOException
+     *             Error executing an OS command.
+     */
+    public final void terminate(final long pid, final boolean force) throws IOException {
+        if (HANDLE_CLASS != null) {
+            final Object handle = handle(pid);
+            if (handle != null) {
+                invoke(handle, force ? "destroyForcibly" : "destroy");
+            }
+        } else if (OS.isFamilyWindows()) {
+            if (force) {
+                execute(killCommand, "/PID", String.valueOf(pid), "/T", "/F");
+            } else {
+                execute(killCommand, "/PID", String.valueOf(pid), "/T");
+            }
+        } else {
+            execute(killCommand, force ? "-KILL" : "-TERM", String.valueOf(pid));
+        }
+    }
+
+    /**
+     * Waits until a process terminated.
+     *
+     * @param pid
+     *            Process ID.
+     * @param timeoutMs
+     *            Maximum time to wait in milliseconds.
+     *
+     * @return {@code true} if the process is not running any more.
+     *
+     * @throws IOException
+     *             Error executing an OS command.
+     * @throws InterruptedException
+     *             Interrupted while waiting.
+     */
+    public final boolean waitFor(final long pid, final long timeoutMs) throws IOException, InterruptedException {
+        final long end = System.currentTimeMillis() + timeoutMs;
+        while (isAlive(pid)) {
+            if (System.currentTimeMillis() >= end) {
+                return false;
+            }
+            Thread.sleep(POLL_MS);
+        }
+        return true;
+    }
+
+    private static Object handle(final long pid) throws IOException {
+        if (HANDLE_CLASS == null) {
+            return null;
+        }
+        try {
+            final Method of = HANDLE_CLASS.getMethod("of", long.class);
+            return ((Optional<?>) of.invoke(null, pid)).orElse(null);
+        } catch (final ReflectiveOperationException ex) {
+            throw new IOException("Error calling ProcessHandle.of(" + pid + ")", ex);
+        }
+    }
+
+    private static Object invoke(final Object handle, final String name) throws IOException {
+        try {
+            return HANDLE_CLASS.getMethod(name).invoke(handle);
+        } catch (final ReflectiveOperationException ex) {
+            throw new IOException("Error calling ProcessHandle." + name + "()", ex);
+        }
+    }
+
+    private static String execute(final String command, final String... args) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        run(out, command, args);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static int exitValue(final String command, final String... args) throws IOException {
+        return run(new ByteArrayOutputStream(), command, args);
+    }
+
+    private static int run(final ByteArrayOutputStream out, final String command, final String... args) throws IOException {
+        final CommandLine cmdLine = new CommandLine(command);
+        for (final String arg : args) {
+            cmdLine.addArgument(arg, false);
+        }
+        final DefaultExecutor executor = new DefaultExecutor();
+        executor.setStreamHandler(new PumpStreamHandler(out));
+        executor.setExitValues(null);
+        return executor.execute(cmdLine);
+    }
+
+    /**
+     * Result of comparing a process with the one that was launched.
+     */
+    public enum Identity {
+
+        /** The process was started at the recorded time. */
+        SAME,
+
+        /** No process exists or it was started at another time, so the ID was reused. */
+        OTHER,
+
+        /** A process exists, but its start time is not available. */
+        UNKNOWN;
+
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DaemonExecutor;
+
+/**
+ * Daemon executor that exposes the launched {@link Process}. The process is launched by a background thread when executing
+ * asynchronously, so it is provided as a future that completes as soon as the process exists.
+ */
+public final class ProcessExecutor extends DaemonExecutor {
+
+    private final CompletableFuture<Process> process = new CompletableFuture<>();
+
+    @Override
+    protected final Process launch(final CommandLine command, final Map<String, String> env, final File dir) throws IOException {
+        try {
+            final Process launched = super.launch(command, env, dir);
+            process.complete(launched);
+            return launched;
+        } catch (final IOException | RuntimeException ex) {
+            process.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the launched process.
+     *
+     * @return Future that completes with the process or exceptionally if launching failed.
+     */
+    public final CompletableFuture<Process> getProcess() {
+        return process;
+    }
+
+    /**
+     * Returns the operating system ID of a process. Uses {@code Process.pid()} if the Java version provides it and the internal
+     * "pid" field of the process implementation otherwise. The latter is not available on Windows with Java 8.
+     *
+     * @param process
+     *            Process to inspect.
+     *
+     * @return Process ID or {@code null} if it cannot be determined.
+     */
+    public static Long pid(final Process process) {
+        try {
+            final Method method = Process.class.getMethod("pid");
+            return (Long) method.invoke(process);
+        } catch (final ReflectiveOperationException | RuntimeException ex) {
+            // Java 8 - Try the implementation
+        }
+        try {
+            final Field field = process.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            return Long.valueOf(field.getInt(process));
+        } catch (final ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads another stream in a background thread into a bounded queue of chunks. The thread reading this stream and the thread reading
+ * the underlying stream work at the same time, so stacking two instances with a decompressor in between results in a pipeline with
+ * three stages. Chunk buffers are recycled.
+ */
+public final class ReadAheadInputStream extends InputStream {
+
+    private final InputStream in;
+
+    private final BlockingQueue<Chunk> filled;
+
+    private final BlockingQueue<Chunk> free;
+
+    private final Thread thread;
+
+    private volatile boolean closed;
+
+    private volatile IOException error;
+
+    private Chunk current;
+
+    private boolean eof;
+
+    /**
+     * Constructor with all data. Starts the background thread.
+     *
+     * @param in
+     *            Stream to read.
+     * @param chunkSize
+     *            Size of a chunk in bytes.
+     * @param chunks
+     *            Maximum number of chunks read ahead.
+     * @param name
+     *            Name of the background thread.
+     */
+    public ReadAheadInputStream(final InputStream in, final int chunkSize, final int chunks, final String name) {
+        super();
+        if (in == null) {
+            throw new IllegalArgumentException("in == null");
+        }
+        if (chunkSize < 1 || chunks < 1) {
+            throw new IllegalArgumentException("chunkSize and chunks must be positive: " + chunkSize + ", " + chunks);
+        }
+        this.in = in;
+        this.filled = new ArrayBlockingQueue<>(chunks + 1);
+        this.free = new ArrayBlockingQueue<>(chunks + 2);
+        this.thread = new Thread(() -> produce(chunkSize), name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void produce(final int chunkSize) {
+        try {
+            while (!closed) {
+                Chunk chunk = free.poll();
+                if (chunk == null) {
+                    chunk = new Chunk(chunkSize);
+                }
+                chunk.pos = 0;
+                chunk.len = 0;
+                while (chunk.len < chunk.data.length) {
+                    final int len = in.read(chunk.data, chunk.len, chunk.data.length - chunk.len);
+                    if (len == -1) {
+                        break;
+                    }
+                    chunk.len += len;
+                }
+                if (chunk.len == 0) {
+                    filled.put(Chunk.EOF);
+                    return;
+                }
+                filled.put(chunk);
+            }
+        } catch (final InterruptedException ex) {
+            // Closed
+        } catch (final IOException ex) {
+            fail(ex);
+        } catch (final RuntimeException ex) {
+            fail(new IOException("Error reading ahead", ex));
+        }
+    }
+
+    private void fail(final IOException ex) {
+        if (closed) {
+            return;
+        }
+        error = ex;
+        try {
+            filled.put(Chunk.EOF);
+        } catch (final InterruptedException ignore) {
+            // Closed
+        }
+    }
+
+    private boolean next() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (current != null && current.pos < current.len) {
+            return true;
+        }
+        if (current != null) {
+            free.offer(current);
+            current = null;
+        }
+        try {
+            final Chunk chunk = filled.take();
+            if (chunk == Chunk.EOF) {
+                eof = true;
+                if (error != null) {
+                    throw error;
+                }
+                return false;
+            }
+            current = chunk;
+            return true;
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for data");
+        }
+    }
+
+    @Override
+    public final int read() throws IOException {
+        if (!next()) {
+            return -1;
+        }
+        return current.data[current.pos++] & 0xFF;
+    }
+
+    @Override
+    public final int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!next()) {
+            return -1;
+        }
+        final int count = Math.min(len, current.len - current.pos);
+        System.arraycopy(current.data, current.pos, b, off, count);
+        current.pos += count;
+        return count;
+    }
+
+    @Override
+    public final int available() throws IOException {
+        if (current == null || eof) {
+            return 0;
+        }
+        return current.len - current.pos;
+    }
+
+    @Override
+    public final void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        thread.interrupt();
+        in.close();
+    }
+
+    /**
+     * Buffer passed between the threads.
+     */
+    private static final class Chunk {
+
+        private static final Chunk EOF = new Chunk(0);
+
+        private final byte[] data;
+
+        private int pos;
+
+        private int len;
+
+        Chunk(final int size) {
+            this.data = new byte[size];
+        }
+
+    }
+
+}
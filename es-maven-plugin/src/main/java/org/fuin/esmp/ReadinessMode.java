@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+/**
+ * Determines how the start goal detects that the event store is ready.
+ */
+public enum ReadinessMode {
+
+    /** Wait for the "up" message in the event store log. */
+    LOG,
+
+    /** Wait until a TCP connection to the external TCP port can be established. */
+    TCP,
+
+    /** Wait until a HTTP GET request to the external HTTP port succeeds. */
+    HTTP,
+
+    /** Run all of the above in parallel. The first one that succeeds marks the server as ready. */
+    ALL;
+
+    /**
+     * Determines if the log should be watched for the "up" message.
+     *
+     * @return {@code true} for {@link #LOG} and {@link #ALL}.
+     */
+    public final boolean isLog() {
+        return this == LOG || this == ALL;
+    }
+
+    /**
+     * Determines if the TCP port should be probed.
+     *
+     * @return {@code true} for {@link #TCP} and {@link #ALL}.
+     */
+    public final boolean isTcp() {
+        return this == TCP || this == ALL;
+    }
+
+    /**
+     * Determines if the HTTP port should be probed.
+     *
+     * @return {@code true} for {@link #HTTP} and {@link #ALL}.
+     */
+    public final boolean isHttp() {
+        return this == HTTP || this == ALL;
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Actively checks if the event store is ready. The probe is repeated with an increasing pause between the attempts until it succeeds
+ * or someone else completes the result.
+ */
+public abstract class ReadinessProbe {
+
+    private static final long MIN_PAUSE_MS = 25;
+
+    private final String name;
+
+    /**
+     * Constructor with name.
+     *
+     * @param name
+     *            Name of the probe used for reporting.
+     */
+    protected ReadinessProbe(final String name) {
+        super();
+        if (name == null) {
+            throw new IllegalArgumentException("name == null");
+        }
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the probe.
+     *
+     * @return Name used for reporting.
+     */
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * Executes a single probe. Implementations must not block longer than their (short) timeout.
+     *
+     * @return {@code true} if the server is ready.
+     */
+    public abstract boolean probe();
+
+    /**
+     * Starts probing in a daemon thread. The pause between two attempts starts very short and is doubled after each failed attempt
+     * until it reaches the given maximum. Probing stops as soon as the result is done.
+     *
+     * @param ready
+     *            Result that will be completed with the name of this probe in case it succeeds.
+     * @param maxPauseMs
+     *            Maximum number of milliseconds to wait between two attempts.
+     */
+    public final void start(final CompletableFuture<String> ready, final long maxPauseMs) {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long pause = Math.min(MIN_PAUSE_MS, maxPauseMs);
+                while (!ready.isDone()) {
+                    if (probe()) {
+                        ready.complete(name);
+                        return;
+                    }
+                    try {
+                        Thread.sleep(pause);
+                    } catch (final InterruptedException ex) {
+                        return;
+                    }
+                    pause = Math.min(pause * 2, maxPauseMs);
+                }
+            }
+        }, "es-readiness-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public final String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+
+/**
+ * Results of resolving the event store download that are shared by all goals of a Maven session. The latest version is cached per
+ * version URL and download filter, the resolved download URL and installation directory per mojo configuration. The instance is
+ * stored in the session data of the repository system session, so every module of a reactor build uses the same one.
+ */
+public final class ResolutionCache {
+
+    /** Key in the session data - The class is specific to the plugin realm, so different plugin versions don't share an instance. */
+    private static final Object KEY = ResolutionCache.class;
+
+    private final Map<String, DownloadVersion> catalogs;
+
+    private final Map<String, Resolution> resolutions;
+
+    /**
+     * Default constructor.
+     */
+    public ResolutionCache() {
+        super();
+        this.catalogs = new HashMap<>();
+        this.resolutions = new HashMap<>();
+    }
+
+    /**
+     * Returns the cache of a session. The cache is created on first access.
+     *
+     * @param session
+     *            Current session or {@code null} if the mojo doesn't run inside Maven.
+     *
+     * @return Cache of the session or a new instance if no session is available.
+     */
+    public static ResolutionCache get(final MavenSession session) {
+        if (session == null || session.getRepositorySession() == null) {
+            return new ResolutionCache();
+        }
+        final SessionData data = session.getRepositorySession().getData();
+        final Object cache = data.get(KEY);
+        if (cache instanceof ResolutionCache) {
+            return (ResolutionCache) cache;
+        }
+        data.set(KEY, null, new ResolutionCache());
+        return (ResolutionCache) data.get(KEY);
+    }
+
+    /**
+     * Returns the latest version with a download accepted by a filter. The version file is only parsed by the first caller with the
+     * same URL and filter, the other ones wait for the result.
+     *
+     * @param versionUrl
+     *            URL of the version JSON file.
+     * @param jsonDownloadsFile
+     *            Local copy of the version file.
+     * @param filter
+     *            Selects the downloads of interest.
+     *
+     * @return Latest version that contains only the accepted family and downloads or {@code null} if no version matches.
+     *
+     * @throws IOException
+     *             Error loading or parsing the version file.
+     */
+    public final synchronized DownloadVersion findLatest(final URL versionUrl, final File jsonDownloadsFile,
+            final DownloadFilter filter) throws IOException {
+        final String key = versionUrl.toExternalForm() + "|" + filter;
+        if (catalogs.containsKey(key)) {
+            return catalogs.get(key);
+        }
+        final DownloadVersion version = new Downloads(versionUrl, jsonDownloadsFile).resolveLatest(filter);
+        catalogs.put(key, version);
+        return version;
+    }
+
+    /**
+     * Returns a resolution.
+     *
+     * @param key
+     *            Key built from the configuration of the mojo.
+     *
+     * @return Resolution or {@code null} if the key is unknown.
+     */
+    public final synchronized Resolution getResolution(final String key) {
+        return resolutions.get(key);
+    }
+
+    /**
+     * Stores a resolution.
+     *
+     * @param key
+     *            Key built from the configuration of the mojo.
+     * @param resolution
+     *            Resolution to store.
+     */
+    public final synchronized void putResolution(final String key, final Resolution resolution) {
+        resolutions.put(key, resolution);
+    }
+
+    /**
+     * Download and installation directory resolved for a configuration.
+     */
+    public static final class Resolution {
+
+        private final String downloadUrl;
+
+        private final String downloadOsQualifier;
+
+        private final File eventStoreDir;
+
+        /**
+         * Constructor with all data.
+         *
+         * @param downloadUrl
+         *            Full URL of the archive.
+         * @param downloadOsQualifier
+         *            Qualifier used for selecting the download.
+         * @param eventStoreDir
+         *            Installation directory.
+         */
+        public Resolution(final String downloadUrl, final String downloadOsQualifier, final File eventStoreDir) {
+            super();
+            this.downloadUrl = downloadUrl;
+            this.downloadOsQualifier = downloadOsQualifier;
+            this.eventStoreDir = eventStoreDir;
+        }
+
+        /**
+         * Returns the full URL of the archive.
+         *
+         * @return Download URL.
+         */
+        public final String getDownloadUrl() {
+            return downloadUrl;
+        }
+
+        /**
+         * Returns the qualifier used for selecting the download.
+         *
+         * @return Qualifier.
+         */
+        public final String getDownloadOsQualifier() {
+            return downloadOsQualifier;
+        }
+
+        /**
+         * Returns the installation directory.
+         *
+         * @return Event store directory.
+         */
+        public final File getEventStoreDir() {
+            return eventStoreDir;
+        }
+
+    }
+
+}
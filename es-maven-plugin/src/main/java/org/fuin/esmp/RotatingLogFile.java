@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Log file that is rotated once it reaches a maximum size. The current file keeps its name, older content is moved to
+ * "&lt;name&gt;.1" (newest) up to "&lt;name&gt;.&lt;backups&gt;" (oldest). So the disk space used is bounded as well. The file is
+ * truncated when it is opened the first time. Lines are written unbuffered, so the content survives a crash of the JVM.
+ */
+public final class RotatingLogFile implements Closeable {
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final File file;
+
+    private final long maxBytes;
+
+    private final int backups;
+
+    private OutputStream out;
+
+    private long size;
+
+    private boolean closed;
+
+    /**
+     * Constructor with all data.
+     *
+     * @param file
+     *            File to write.
+     * @param maxBytes
+     *            Size at which the file is rotated.
+     * @param backups
+     *            Number of rotated files to keep.
+     */
+    public RotatingLogFile(final File file, final long maxBytes, final int backups) {
+        super();
+        if (file == null) {
+            throw new IllegalArgumentException("file == null");
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes < 1: " + maxBytes);
+        }
+        if (backups < 0) {
+            throw new IllegalArgumentException("backups < 0: " + backups);
+        }
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.backups = backups;
+    }
+
+    /**
+     * Returns the current log file.
+     *
+     * @return File that receives new lines.
+     */
+    public final File getFile() {
+        return file;
+    }
+
+    /**
+     * Appends a line. Lines written after closing the file are ignored.
+     *
+     * @param line
+     *            Line without line separator.
+     *
+     * @throws IOException
+     *             Error writing or rotating the file.
+     */
+    public final synchronized void writeLine(final String line) throws IOException {
+        if (closed) {
+            return;
+        }
+        final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        final long len = bytes.length + LINE_SEPARATOR.length;
+        if (out == null) {
+            Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+            out = new FileOutputStream(file);
+            size = 0;
+        } else if (size > 0 && size + len > maxBytes) {
+            rotate();
+        }
+        final byte[] buf = new byte[(int) len];
+        System.arraycopy(bytes, 0, buf, 0, bytes.length);
+        System.arraycopy(LINE_SEPARATOR, 0, buf, bytes.length, LINE_SEPARATOR.length);
+        out.write(buf);
+        size += len;
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        out = null;
+        if (backups == 0) {
+            Files.deleteIfExists(file.toPath());
+        } else {
+            Files.deleteIfExists(backup(backups).toPath());
+            for (int i = backups - 1; i >= 1; i--) {
+                final File backup = backup(i);
+                if (backup.exists()) {
+                    Files.move(backup.toPath(), backup(i + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file.toPath(), backup(1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        out = new FileOutputStream(file);
+        size = 0;
+    }
+
+    private File backup(final int idx) {
+        return new File(file.getParentFile(), file.getName() + "." + idx);
+    }
+
+    @Override
+    public final synchronized void close() throws IOException {
+        closed = true;
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+}
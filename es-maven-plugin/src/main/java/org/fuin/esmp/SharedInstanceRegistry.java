@@ -0,0 +1,485 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.execution.AbstractExecutionListener;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.SessionData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Event store instances that are shared by all modules of a reactor build. The first module launches an instance and registers it,
+ * following modules attach to it. An instance is stopped when no module uses it anymore and no other module of the build that
+ * declares the plugin is still waiting to be built - or at the latest when the session ends. The registry is stored in the session
+ * data of the repository system session and learns about finished modules by wrapping the execution listener of the session.
+ */
+public final class SharedInstanceRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedInstanceRegistry.class);
+
+    /** Key in the session data - The class is specific to the plugin realm, so different plugin versions don't share an instance. */
+    private static final Object KEY = SharedInstanceRegistry.class;
+
+    /** Key of this plugin in the build plugins of a project. */
+    public static final String PLUGIN_KEY = "org.fuin.esmp:es-maven-plugin";
+
+    /** User for goals that don't run inside a project. */
+    public static final String STANDALONE = "standalone";
+
+    private final Map<String, Entry> entries;
+
+    private final Map<String, Object> locks;
+
+    private boolean listenerInstalled;
+
+    /**
+     * Default constructor.
+     */
+    public SharedInstanceRegistry() {
+        super();
+        this.entries = new HashMap<>();
+        this.locks = new HashMap<>();
+    }
+
+    /**
+     * Returns the registry of a session. The registry is created on first access.
+     *
+     * @param session
+     *            Current session or {@code null} if the mojo doesn't run inside Maven.
+     *
+     * @return Registry of the session or a new instance if no session is available.
+     */
+    public static SharedInstanceRegistry get(final MavenSession session) {
+        if (session == null || session.getRepositorySession() == null) {
+            return new SharedInstanceRegistry();
+        }
+        final SessionData data = session.getRepositorySession().getData();
+        final Object registry = data.get(KEY);
+        if (registry instanceof SharedInstanceRegistry) {
+            return (SharedInstanceRegistry) registry;
+        }
+        data.set(KEY, null, new SharedInstanceRegistry());
+        return (SharedInstanceRegistry) data.get(KEY);
+    }
+
+    /**
+     * Returns the key of a project that is used to count the users of an instance.
+     *
+     * @param project
+     *            Project or {@code null}.
+     *
+     * @return Group and artifact ID like "org.fuin.esmp:es-maven-plugin" or {@link #STANDALONE} if there is no project.
+     */
+    public static String projectKey(final MavenProject project) {
+        if (project == null) {
+            return STANDALONE;
+        }
+        return project.getGroupId() + ":" + project.getArtifactId();
+    }
+
+    /**
+     * Returns the projects of a session that declare this plugin and are not yet built.
+     *
+     * @param session
+     *            Current session or {@code null}.
+     *
+     * @return Keys of the projects that may still use a shared instance.
+     */
+    public static Set<String> pendingUsers(final MavenSession session) {
+        final Set<String> pending = new LinkedHashSet<>();
+        if (session == null || session.getProjects() == null) {
+            return pending;
+        }
+        for (final MavenProject project : session.getProjects()) {
+            final boolean built = session.getResult() != null && session.getResult().getBuildSummary(project) != null;
+            if (!built && usesPlugin(project)) {
+                pending.add(projectKey(project));
+            }
+        }
+        return pending;
+    }
+
+    private static boolean usesPlugin(final MavenProject project) {
+        for (final Plugin plugin : project.getBuildPlugins()) {
+            if (PLUGIN_KEY.equals(plugin.getKey())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the lock for an instance. Launching, attaching and stopping an instance is only done while holding this lock.
+     *
+     * @param name
+     *            Name of the instance.
+     *
+     * @return Lock object that is always the same for the name.
+     */
+    public final synchronized Object lock(final String name) {
+        return locks.computeIfAbsent(name, key -> new Object());
+    }
+
+    /**
+     * Attaches a user to a running instance.
+     *
+     * @param name
+     *            Name of the instance.
+     * @param user
+     *            Key of the project that uses the instance.
+     * @param stateFile
+     *            State file of the user that is deleted when the instance is stopped.
+     *
+     * @return State of the instance or {@code null} if no instance with the name is registered.
+     */
+    public final synchronized InstanceState attach(final String name, final String user, final File stateFile) {
+        final Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        entry.users.add(user);
+        entry.stateFiles.add(stateFile);
+        return entry.state;
+    }
+
+    /**
+     * Registers a newly launched instance.
+     *
+     * @param state
+     *            State of the ready instance.
+     * @param user
+     *            Key of the project that launched the instance.
+     * @param stateFile
+     *            State file of the user that is deleted when the instance is stopped.
+     * @param pending
+     *            Keys of the projects that may still attach to the instance.
+     */
+    public final synchronized void register(final InstanceState state, final String user, final File stateFile,
+            final Set<String> pending) {
+        final Entry entry = new Entry(state);
+        entry.users.add(user);
+        entry.stateFiles.add(stateFile);
+        entry.pending.addAll(pending);
+        entry.pending.remove(user);
+        entries.put(state.getName(), entry);
+    }
+
+    /**
+     * Removes an instance without stopping it. Used if the process of a registered instance has died.
+     *
+     * @param name
+     *            Name of the instance.
+     */
+    public final synchronized void unregister(final String name) {
+        entries.remove(name);
+    }
+
+    /**
+     * Determines if an instance is registered.
+     *
+     * @param name
+     *            Name of the instance.
+     *
+     * @return {@code true} if the instance is registered.
+     */
+    public final synchronized boolean isRegistered(final String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Returns the number of projects that use an instance or may still attach to it.
+     *
+     * @param name
+     *            Name of the instance.
+     *
+     * @return Number of users and pending projects or {@code 0} if the instance is not registered.
+     */
+    public final synchronized int getUserCount(final String name) {
+        final Entry entry = entries.get(name);
+        if (entry == null) {
+            return 0;
+        }
+        final Set<String> all = new LinkedHashSet<>(entry.users);
+        all.addAll(entry.pending);
+        return all.size();
+    }
+
+    /**
+     * Sets how an instance is stopped. Defaults to {@link InstanceStopper#createDefault()}.
+     *
+     * @param name
+     *            Name of the instance.
+     * @param stopper
+     *            Stopper to use.
+     */
+    public final synchronized void setStopper(final String name, final InstanceStopper stopper) {
+        final Entry entry = entries.get(name);
+        if (entry != null) {
+            entry.stopper = stopper;
+        }
+    }
+
+    /**
+     * Releases all instances used by a project. Instances without users are stopped.
+     *
+     * @param user
+     *            Key of the project that is done with the instances.
+     *
+     * @return Names of the stopped instances.
+     */
+    public final List<String> release(final String user) {
+        final List<String> names = new ArrayList<>();
+        synchronized (this) {
+            for (final Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                final Entry entry = mapEntry.getValue();
+                entry.users.remove(user);
+                entry.pending.remove(user);
+                if (entry.isUnused()) {
+                    names.add(mapEntry.getKey());
+                }
+            }
+        }
+        return stop(names, false);
+    }
+
+    /**
+     * Stops all registered instances regardless of their users.
+     *
+     * @return Names of the stopped instances.
+     */
+    public final List<String> stopAll() {
+        final List<String> names;
+        synchronized (this) {
+            names = new ArrayList<>(entries.keySet());
+        }
+        return stop(names, true);
+    }
+
+    private List<String> stop(final List<String> names, final boolean force) {
+        final List<String> stopped = new ArrayList<>();
+        for (final String name : names) {
+            // Holding the lock, so nobody launches the same instance while the old one is still stopping
+            synchronized (lock(name)) {
+                final Entry entry;
+                synchronized (this) {
+                    entry = entries.get(name);
+                    if (entry == null || !(force || entry.isUnused())) {
+                        // Already stopped or someone attached in the meantime
+                        continue;
+                    }
+                    entries.remove(name);
+                }
+                if (stop(entry)) {
+                    stopped.add(name);
+                }
+            }
+        }
+        return stopped;
+    }
+
+    private static boolean stop(final Entry entry) {
+        try {
+            final long start = System.currentTimeMillis();
+            final String how = entry.stopper.stop(entry.state);
+            LOG.info("Shared event store '" + entry.state.getName() + "' successfully stopped ({}) in {} ms", how,
+                    System.currentTimeMillis() - start);
+            return true;
+        } catch (final IOException ex) {
+            LOG.error("Couldn't stop the shared event store: " + entry.state, ex);
+            return false;
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted while stopping the shared event store: " + entry.state, ex);
+            return false;
+        } finally {
+            for (final File file : entry.stateFiles) {
+                if (file.exists() && !file.delete()) {
+                    LOG.warn("Couldn't delete the state file: {}", file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the registry release the instances of finished projects and stop all instances when the session ends. The execution
+     * listener of the session is wrapped only once.
+     *
+     * @param session
+     *            Current session or {@code null} if the mojo doesn't run inside Maven.
+     */
+    public final synchronized void installListener(final MavenSession session) {
+        if (listenerInstalled || session == null || session.getRequest() == null) {
+            return;
+        }
+        session.getRequest().setExecutionListener(new ReleasingListener(this, session.getRequest().getExecutionListener()));
+        listenerInstalled = true;
+    }
+
+    /**
+     * Registered instance.
+     */
+    private static final class Entry {
+
+        private final InstanceState state;
+
+        private final Set<String> users;
+
+        private final Set<String> pending;
+
+        private final Set<File> stateFiles;
+
+        private InstanceStopper stopper;
+
+        public Entry(final InstanceState state) {
+            super();
+            this.state = state;
+            this.users = new LinkedHashSet<>();
+            this.pending = new LinkedHashSet<>();
+            this.stateFiles = new LinkedHashSet<>();
+            this.stopper = InstanceStopper.createDefault();
+        }
+
+        public boolean isUnused() {
+            return users.isEmpty() && pending.isEmpty();
+        }
+
+    }
+
+    /**
+     * Releases the instances of a project when it's finished and stops all instances when the session ends. All events are passed on
+     * to the original listener.
+     */
+    private static final class ReleasingListener extends AbstractExecutionListener {
+
+        private final SharedInstanceRegistry registry;
+
+        private final ExecutionListener delegate;
+
+        public ReleasingListener(final SharedInstanceRegistry registry, final ExecutionListener delegate) {
+            super();
+            this.registry = registry;
+            this.delegate = delegate == null ? new AbstractExecutionListener() {
+            } : delegate;
+        }
+
+        @Override
+        public void projectDiscoveryStarted(final ExecutionEvent event) {
+            delegate.projectDiscoveryStarted(event);
+        }
+
+        @Override
+        public void sessionStarted(final ExecutionEvent event) {
+            delegate.sessionStarted(event);
+        }
+
+        @Override
+        public void sessionEnded(final ExecutionEvent event) {
+            registry.stopAll();
+            delegate.sessionEnded(event);
+        }
+
+        @Override
+        public void projectSkipped(final ExecutionEvent event) {
+            delegate.projectSkipped(event);
+            registry.release(projectKey(event.getProject()));
+        }
+
+        @Override
+        public void projectStarted(final ExecutionEvent event) {
+            delegate.projectStarted(event);
+        }
+
+        @Override
+        public void projectSucceeded(final ExecutionEvent event) {
+            delegate.projectSucceeded(event);
+            registry.release(projectKey(event.getProject()));
+        }
+
+        @Override
+        public void projectFailed(final ExecutionEvent event) {
+            delegate.projectFailed(event);
+            registry.release(projectKey(event.getProject()));
+        }
+
+        @Override
+        public void mojoSkipped(final ExecutionEvent event) {
+            delegate.mojoSkipped(event);
+        }
+
+        @Override
+        public void mojoStarted(final ExecutionEvent event) {
+            delegate.mojoStarted(event);
+        }
+
+        @Override
+        public void mojoSucceeded(final ExecutionEvent event) {
+            delegate.mojoSucceeded(event);
+        }
+
+        @Override
+        public void mojoFailed(final ExecutionEvent event) {
+            delegate.mojoFailed(event);
+        }
+
+        @Override
+        public void forkStarted(final ExecutionEvent event) {
+            delegate.forkStarted(event);
+        }
+
+        @Override
+        public void forkSucceeded(final ExecutionEvent event) {
+            delegate.forkSucceeded(event);
+        }
+
+        @Override
+        public void forkFailed(final ExecutionEvent event) {
+            delegate.forkFailed(event);
+        }
+
+        @Override
+        public void forkedProjectStarted(final ExecutionEvent event) {
+            delegate.forkedProjectStarted(event);
+        }
+
+        @Override
+        public void forkedProjectSucceeded(final ExecutionEvent event) {
+            delegate.forkedProjectSucceeded(event);
+        }
+
+        @Override
+        public void forkedProjectFailed(final ExecutionEvent event) {
+            delegate.forkedProjectFailed(event);
+        }
+
+    }
+
+}
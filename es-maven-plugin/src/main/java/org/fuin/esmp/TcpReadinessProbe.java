@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Considers the server ready as soon as a TCP connection to a port can be established.
+ */
+public final class TcpReadinessProbe extends ReadinessProbe {
+
+    private final String host;
+
+    private final int port;
+
+    private final int timeoutMs;
+
+    /**
+     * Constructor with all data.
+     *
+     * @param host
+     *            Host to connect to.
+     * @param port
+     *            Port to connect to.
+     * @param timeoutMs
+     *            Connect timeout in milliseconds.
+     */
+    public TcpReadinessProbe(final String host, final int port, final int timeoutMs) {
+        super("tcp");
+        if (host == null) {
+            throw new IllegalArgumentException("host == null");
+        }
+        this.host = host;
+        this.port = port;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public final boolean probe() {
+        final Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMs);
+            return true;
+        } catch (final IOException ex) {
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (final IOException ex) {
+                // Ignore
+            }
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+/**
+ * Implementation used to extract ZIP archives.
+ */
+public enum UnpackEngine {
+
+    /** Use {@link org.apache.commons.compress.archivers.zip.ZipFile} to read the entries. */
+    ZIPFILE,
+
+    /** Memory map the archive and use the {@link MappedZipReader}. Falls back to {@link #ZIPFILE} for unsupported archives. */
+    MMAP;
+
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.exec.LogOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives the output of the event store line by line and completes a future as soon as the "up" message appears. Each line is only
+ * inspected once when it arrives. Only the last lines are kept in memory for diagnostics, the memory used stays the same no matter
+ * how long the event store runs. Optionally all lines are written to a {@link RotatingLogFile}.<br>
+ * <br>
+ * Standard output and error must be passed through separate streams created with {@link #createLineStream()}, so a chunk of one
+ * stream cannot end up in the middle of a line of the other one.
+ */
+public final class UpMessageDetector extends LogOutputStream {
+
+    /** Default maximum number of lines kept in memory. */
+    public static final int DEFAULT_MAX_LINES = 1000;
+
+    /** Default maximum number of characters kept in memory. */
+    public static final int DEFAULT_MAX_CHARS = 256 * 1024;
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpMessageDetector.class);
+
+    private final String upMessage;
+
+    private final CompletableFuture<String> up;
+
+    private final int maxLines;
+
+    private final int maxChars;
+
+    private final RotatingLogFile logFile;
+
+    private final Deque<String> lines;
+
+    private int chars;
+
+    private long dropped;
+
+    private String firstLine;
+
+    /**
+     * Constructor with message to wait for. Keeps the default number of lines and writes no log file.
+     *
+     * @param upMessage
+     *            Message from the event store log that signals the server is up.
+     */
+    public UpMessageDetector(final String upMessage) {
+        this(upMessage, DEFAULT_MAX_LINES, DEFAULT_MAX_CHARS, null);
+    }
+
+    /**
+     * Constructor with all data.
+     *
+     * @param upMessage
+     *            Message from the event store log that signals the server is up.
+     * @param maxLines
+     *            Maximum number of lines kept in memory.
+     * @param maxChars
+     *            Maximum number of characters kept in memory. The last line is always kept.
+     * @param logFile
+     *            File that receives all lines or {@code null}.
+     */
+    public UpMessageDetector(final String upMessage, final int maxLines, final int maxChars, final RotatingLogFile logFile) {
+        super();
+        if (upMessage == null) {
+            throw new IllegalArgumentException("upMessage == null");
+        }
+        if (maxLines < 1) {
+            throw new IllegalArgumentException("maxLines < 1: " + maxLines);
+        }
+        this.upMessage = upMessage;
+        this.up = new CompletableFuture<>();
+        this.maxLines = maxLines;
+        this.maxChars = maxChars;
+        this.logFile = logFile;
+        this.lines = new ArrayDeque<>();
+    }
+
+    /**
+     * Creates a stream with its own line buffer that passes complete lines to this detector. Several streams can be written by
+     * different threads at the same time.
+     *
+     * @return New stream.
+     */
+    public final LogOutputStream createLineStream() {
+        return new LogOutputStream() {
+            @Override
+            protected void processLine(final String line, final int logLevel) {
+                addLine(line);
+            }
+        };
+    }
+
+    // Lines of other streams are added by different threads
+
+    @Override
+    public final synchronized void write(final int cc) throws IOException {
+        super.write(cc);
+    }
+
+    @Override
+    public final synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+        super.write(b, off, len);
+    }
+
+    @Override
+    public final synchronized void flush() {
+        super.flush();
+    }
+
+    @Override
+    protected final void processLine(final String line, final int logLevel) {
+        addLine(line);
+    }
+
+    private synchronized void addLine(final String line) {
+        if (firstLine == null) {
+            firstLine = line;
+        }
+        lines.addLast(line);
+        chars += line.length();
+        while (lines.size() > maxLines || (chars > maxChars && lines.size() > 1)) {
+            chars -= lines.removeFirst().length();
+            dropped++;
+        }
+        if (!up.isDone() && line.contains(upMessage)) {
+            up.complete(line);
+        }
+        writeToLogFile(line);
+    }
+
+    private void writeToLogFile(final String line) {
+        if (logFile == null) {
+            return;
+        }
+        try {
+            logFile.writeLine(line);
+        } catch (final IOException ex) {
+            LOG.warn("Couldn't write event store output to: " + logFile.getFile(), ex);
+            closeLogFile();
+        }
+    }
+
+    private void closeLogFile() {
+        if (logFile == null) {
+            return;
+        }
+        try {
+            logFile.close();
+        } catch (final IOException ex) {
+            LOG.warn("Couldn't close: " + logFile.getFile(), ex);
+        }
+    }
+
+    /**
+     * Signals that the process ended. If the "up" message was not received until now, the future completes exceptionally. The log
+     * file is closed.
+     */
+    public final void processEnded() {
+        up.completeExceptionally(new IllegalStateException("Process ended before the message appeared: '" + upMessage + "'"));
+        closeLogFile();
+    }
+
+    /**
+     * Returns the future that completes with the line containing the "up" message.
+     *
+     * @return Future that is done when the server is up or the process ended.
+     */
+    public final CompletableFuture<String> getUp() {
+        return up;
+    }
+
+    /**
+     * Returns a copy of the last lines received until now.
+     *
+     * @return Lines from the event store output.
+     */
+    public final synchronized List<String> getLines() {
+        return Collections.unmodifiableList(new ArrayList<>(lines));
+    }
+
+    /**
+     * Returns the first line received. It is kept even if it was already removed from the last lines.
+     *
+     * @return First line or {@code null} if nothing was received yet.
+     */
+    public final synchronized String getFirstLine() {
+        return firstLine;
+    }
+
+    /**
+     * Returns the number of lines that were removed from memory because the limit was reached.
+     *
+     * @return Number of lines not returned by {@link #getLines()} any more.
+     */
+    public final synchronized long getDropped() {
+        return dropped;
+    }
+
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Parsed form of a version name that orders versions semantically. The numeric part is compared number by number ("5.0.10" is
+ * newer than "5.0.9", "20.6" newer than "5.0"), missing numbers count as zero. A version with a pre-release qualifier ("-rc1",
+ * "-preview2") is older than the release, a version with another qualifier ("-hotfix1") is newer. Qualifiers of the same kind are
+ * compared in natural order, so "rc10" is newer than "rc9".
+ */
+public final class VersionKey implements Comparable<VersionKey> {
+
+    private static final int[] NO_NUMBERS = new int[0];
+
+    private static final int PRE_RELEASE = -1;
+
+    private static final int RELEASE = 0;
+
+    private static final int POST_RELEASE = 1;
+
+    private final String name;
+
+    private final int[] numbers;
+
+    private final int rank;
+
+    private final String qualifier;
+
+    /**
+     * Constructor with version name.
+     * 
+     * @param name
+     *            Version (like "3.1.0", "4.1.1-hotfix1", "5.0.0-rc1").
+     */
+    public VersionKey(final String name) {
+        super();
+        if (name == null) {
+            throw new IllegalArgumentException("name == null");
+        }
+        this.name = name;
+        final int idx = name.indexOf('-');
+        final int[] parsed = parseNumbers(idx < 0 ? name : name.substring(0, idx));
+        if (parsed == null) {
+            // No numeric version at all - Compare the whole name as qualifier
+            this.numbers = NO_NUMBERS;
+            this.qualifier = name.toLowerCase(Locale.ROOT);
+        } else {
+            this.numbers = parsed;
+            this.qualifier = idx < 0 ? "" : name.substring(idx + 1).toLowerCase(Locale.ROOT);
+        }
+        if (!DownloadVersion.isRelease(name)) {
+            this.rank = PRE_RELEASE;
+        } else if (qualifier.isEmpty()) {
+            this.rank = RELEASE;
+        } else {
+            this.rank = POST_RELEASE;
+        }
+    }
+
+    private static int[] parseNumbers(final String str) {
+        final String[] parts = str.split("\\.");
+        final int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].isEmpty() || parts[i].length() > 9) {
+                return null;
+            }
+            for (int j = 0; j < parts[i].length(); j++) {
+                if (!Character.isDigit(parts[i].charAt(j))) {
+                    return null;
+                }
+            }
+            result[i] = Integer.parseInt(parts[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the major version.
+     * 
+     * @return First number or zero.
+     */
+    public final int getMajor() {
+        return number(0);
+    }
+
+    /**
+     * Returns the minor version.
+     * 
+     * @return Second number or zero.
+     */
+    public final int getMinor() {
+        return number(1);
+    }
+
+    /**
+     * Returns the patch version.
+     * 
+     * @return Third number or zero.
+     */
+    public final int getPatch() {
+        return number(2);
+    }
+
+    /**
+     * Returns the qualifier.
+     * 
+     * @return Lower case text after the first dash (like "rc1", "hotfix1") or an empty string.
+     */
+    public final String getQualifier() {
+        return qualifier;
+    }
+
+    /**
+     * Determines if this is a pre-release.
+     * 
+     * @return {@code true} for release candidates and previews.
+     */
+    public final boolean isPreRelease() {
+        return rank == PRE_RELEASE;
+    }
+
+    private int number(final int idx) {
+        if (idx < numbers.length) {
+            return numbers[idx];
+        }
+        return 0;
+    }
+
+    @Override
+    public final int compareTo(final VersionKey other) {
+        final int count = Math.max(numbers.length, other.numbers.length);
+        for (int i = 0; i < count; i++) {
+            final int result = Integer.compare(number(i), other.number(i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        final int result = Integer.compare(rank, other.rank);
+        if (result != 0) {
+            return result;
+        }
+        final int qualifierResult = compareNatural(qualifier, other.qualifier);
+        if (qualifierResult != 0) {
+            return qualifierResult;
+        }
+        // Only differ in notation like "5.0" and "5.0.0" - Keep consistent with equals
+        return name.compareTo(other.name);
+    }
+
+    /**
+     * Compares two strings treating runs of digits as numbers. So "Ubuntu 9.10" is before "Ubuntu 18.04".
+     * 
+     * @param a
+     *            First string.
+     * @param b
+     *            Second string.
+     * 
+     * @return Negative, zero or positive like {@link Comparable#compareTo(Object)}.
+     */
+    public static int compareNatural(final String a, final String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            final char ca = a.charAt(i);
+            final char cb = b.charAt(j);
+            if (Character.isDigit(ca) && Character.isDigit(cb)) {
+                final int endA = digitsEnd(a, i);
+                final int endB = digitsEnd(b, j);
+                final int result = compareDigits(a.substring(i, endA), b.substring(j, endB));
+                if (result != 0) {
+                    return result;
+                }
+                i = endA;
+                j = endB;
+            } else {
+                if (ca != cb) {
+                    return Character.compare(ca, cb);
+                }
+                i++;
+                j++;
+            }
+        }
+        final int result = Integer.compare(a.length() - i, b.length() - j);
+        if (result != 0) {
+            return result;
+        }
+        return a.compareTo(b);
+    }
+
+    private static int digitsEnd(final String str, final int start) {
+        int end = start;
+        while (end < str.length() && Character.isDigit(str.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private static int compareDigits(final String a, final String b) {
+        final String x = stripZeros(a);
+        final String y = stripZeros(b);
+        if (x.length() != y.length()) {
+            return Integer.compare(x.length(), y.length());
+        }
+        return x.compareTo(y);
+    }
+
+    private static String stripZeros(final String digits) {
+        int i = 0;
+        while (i < digits.length() - 1 && digits.charAt(i) == '0') {
+            i++;
+        }
+        return digits.substring(i);
+    }
+
+    @Override
+    public final int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public final boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final VersionKey other = (VersionKey) obj;
+        return name.equals(other.name);
+    }
+
+    @Override
+    public final String toString() {
+        return name + " " + Arrays.toString(numbers) + " " + qualifier;
+    }
+
+}
@@ -0,0 +1,351 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.exec.OS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extracts a ZIP file using a pool of worker threads. All directories are created first, then the file entries are distributed across
+ * the workers, largest first. Both engines allow reading different entries at the same time, so inflating and writing the files runs
+ * in parallel. With {@link UnpackEngine#ZIPFILE}, stored (uncompressed) entries are transferred directly from the archive's channel
+ * and all others are written using {@link FileTransfer}. With {@link UnpackEngine#MMAP} the {@link MappedZipReader} is used.
+ */
+public final class ZipExtractor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ZipExtractor.class);
+
+    /** Maximum time to wait for the workers to stop after an entry failed. */
+    private static final long STOP_TIMEOUT_MS = 30000;
+
+    private final int parallelism;
+
+    private final UnpackEngine engine;
+
+    /**
+     * Constructor with number of threads. Uses the {@link UnpackEngine#ZIPFILE} engine.
+     *
+     * @param parallelism
+     *            Number of entries to extract in parallel. A value of {@code 1} extracts all entries in the calling thread, a value less
+     *            than {@code 1} uses the number of available processors.
+     */
+    public ZipExtractor(final int parallelism) {
+        this(parallelism, UnpackEngine.ZIPFILE);
+    }
+
+    /**
+     * Constructor with all data.
+     *
+     * @param parallelism
+     *            Number of entries to extract in parallel. A value of {@code 1} extracts all entries in the calling thread, a value less
+     *            than {@code 1} uses the number of available processors.
+     * @param engine
+     *            Implementation used to read the archive.
+     */
+    public ZipExtractor(final int parallelism, final UnpackEngine engine) {
+        super();
+        if (engine == null) {
+            throw new IllegalArgumentException("engine == null");
+        }
+        if (parallelism < 1) {
+            this.parallelism = Runtime.getRuntime().availableProcessors();
+        } else {
+            this.parallelism = parallelism;
+        }
+        this.engine = engine;
+    }
+
+    /**
+     * Returns the number of entries extracted in parallel.
+     *
+     * @return Number of threads.
+     */
+    public final int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the implementation used to read the archive.
+     *
+     * @return Engine.
+     */
+    public final UnpackEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Extracts all entries of a ZIP file into a target directory. It assumes that the archive only contains relative paths.
+     *
+     * @param zipFile
+     *            ZIP file to extract.
+     * @param destDir
+     *            Target directory.
+     *
+     * @throws IOException
+     *             Error reading the archive or writing a file.
+     */
+    public final void extract(final File zipFile, final File destDir) throws IOException {
+
+        if (engine == UnpackEngine.MMAP && OS.isFamilyWindows() && !MappedZipReader.isUnmapSupported()) {
+            // The archive would stay locked until the mapping is garbage collected
+            LOG.info("Cannot release mappings - Falling back to {}", UnpackEngine.ZIPFILE);
+            extractZipFile(zipFile, destDir);
+        } else if (engine == UnpackEngine.MMAP) {
+            final MappedZipReader reader;
+            try {
+                reader = new MappedZipReader(zipFile);
+            } catch (final ZipException ex) {
+                LOG.info("Cannot map archive ({}) - Falling back to {}", ex.getMessage(), UnpackEngine.ZIPFILE);
+                extractZipFile(zipFile, destDir);
+                return;
+            }
+            boolean release = true;
+            try {
+                final List<Entry> entries = new ArrayList<>();
+                for (final MappedZipReader.Entry entry : reader.getEntries()) {
+                    entries.add(new Entry(entry.getName(), entry.isDirectory(), entry.getSize()) {
+                        @Override
+                        void writeTo(final File file) throws IOException {
+                            reader.extract(entry, file);
+                        }
+                    });
+                }
+                extract(entries, destDir);
+            } catch (final WorkersRunningException ex) {
+                // Releasing the mapping while a worker still reads it would crash the JVM - Leave it to the garbage collector
+                release = false;
+                throw ex;
+            } finally {
+                if (release) {
+                    reader.close();
+                }
+            }
+        } else {
+            extractZipFile(zipFile, destDir);
+        }
+
+    }
+
+    private void extractZipFile(final File zipFile, final File destDir) throws IOException {
+
+        final ZipFile zip = new ZipFile(zipFile);
+        try {
+            final FileChannel channel = FileChannel.open(zipFile.toPath(), StandardOpenOption.READ);
+            try {
+                final List<Entry> entries = new ArrayList<>();
+                final Enumeration<ZipArchiveEntry> enu = zip.getEntries();
+                while (enu.hasMoreElements()) {
+                    final ZipArchiveEntry entry = enu.nextElement();
+                    entries.add(new Entry(entry.getName(), entry.isDirectory(), entry.getSize()) {
+                        @Override
+                        void writeTo(final File file) throws IOException {
+                            extract(zip, channel, entry, file);
+                        }
+                    });
+                }
+                extract(entries, destDir);
+            } finally {
+                channel.close();
+            }
+        } finally {
+            zip.close();
+        }
+
+    }
+
+    private void extract(final List<Entry> entries, final File destDir) throws IOException {
+
+        final Set<File> dirs = new LinkedHashSet<>();
+        final List<Entry> files = new ArrayList<>();
+        for (final Entry entry : entries) {
+            if (new File(entry.name).isAbsolute()) {
+                throw new IllegalArgumentException("Only relative path entries are allowed! [" + entry.name + "]");
+            }
+            final File file = new File(destDir, entry.name);
+            if (entry.directory) {
+                dirs.add(file);
+            } else {
+                dirs.add(file.getParentFile());
+                files.add(entry);
+            }
+        }
+        for (final File dir : dirs) {
+            mkDirsIfNecessary(dir);
+        }
+
+        // Start with the largest files to keep all workers busy until the end
+        Collections.sort(files, (a, b) -> Long.compare(b.size, a.size));
+
+        LOG.info("Extracting {} files using {} thread(s)", files.size(), Math.min(parallelism, Math.max(1, files.size())));
+        if (parallelism == 1 || files.size() < 2) {
+            for (final Entry entry : files) {
+                extract(entry, destDir);
+            }
+        } else {
+            extractParallel(files, destDir);
+        }
+
+    }
+
+    private void extractParallel(final List<Entry> files, final File destDir) throws IOException {
+        final ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, files.size()));
+        final List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (final Entry entry : files) {
+                futures.add(pool.submit(() -> {
+                    extract(entry, destDir);
+                    return null;
+                }));
+            }
+            for (final Future<Void> future : futures) {
+                waitFor(future);
+            }
+        } catch (final IOException | RuntimeException ex) {
+            stop(pool, futures, ex);
+            throw ex;
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Cancels the remaining entries and waits until all workers are finished. Otherwise they might still read the archive when the
+     * caller closes it.
+     */
+    private static void stop(final ExecutorService pool, final List<Future<Void>> futures, final Exception error)
+            throws WorkersRunningException {
+        for (final Future<Void> future : futures) {
+            future.cancel(true);
+        }
+        pool.shutdownNow();
+        boolean terminated;
+        try {
+            terminated = pool.awaitTermination(STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            terminated = false;
+        }
+        if (!terminated) {
+            final WorkersRunningException ex = new WorkersRunningException();
+            ex.addSuppressed(error);
+            throw ex;
+        }
+    }
+
+    private static void extract(final Entry entry, final File destDir) throws IOException {
+        LOG.debug("Extracting: {}", entry.name);
+        entry.writeTo(new File(destDir, entry.name));
+    }
+
+    private static void extract(final ZipFile zip, final FileChannel channel, final ZipArchiveEntry entry, final File file)
+            throws IOException {
+        if (entry.getMethod() == ZipEntry.STORED && entry.getDataOffset() >= 0 && entry.getSize() >= 0
+                && !entry.getGeneralPurposeBit().usesEncryption()) {
+            FileTransfer.write(channel, entry.getDataOffset(), entry.getSize(), file);
+        } else {
+            final InputStream in = zip.getInputStream(entry);
+            try {
+                FileTransfer.write(in, file);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    private static void waitFor(final Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting", ex);
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IOException("Error extracting entry", ex.getCause());
+        }
+    }
+
+    private static void mkDirsIfNecessary(final File dir) throws IOException {
+        if (dir.exists()) {
+            return;
+        }
+        if (!dir.mkdirs()) {
+            throw new IOException("Error creating directory '" + dir + "'!");
+        }
+    }
+
+    /**
+     * Signals that extraction threads are still running after an error.
+     */
+    private static final class WorkersRunningException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        WorkersRunningException() {
+            super("Extraction threads did not stop within " + STOP_TIMEOUT_MS + " ms");
+        }
+
+    }
+
+    /**
+     * Archive entry independent of the engine.
+     */
+    private abstract static class Entry {
+
+        private final String name;
+
+        private final boolean directory;
+
+        private final long size;
+
+        Entry(final String name, final boolean directory, final long size) {
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+        }
+
+        abstract void writeTo(File file) throws IOException;
+
+    }
+
+}
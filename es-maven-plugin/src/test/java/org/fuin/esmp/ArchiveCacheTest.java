@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.FileUtils;
+import org.fuin.utils4j.Utils4J;
+import org.junit.Test;
+
+/**
+ * Test for {@link ArchiveCache}.
+ */
+// CHECKSTYLE:OFF Test
+public class ArchiveCacheTest {
+
+    @Test
+    public void testSha256() {
+        assertThat(ArchiveCache.sha256("abc")).isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
+    @Test
+    public void testArchive() throws IOException {
+
+        // PREPARE
+        final ArchiveCache testee = new ArchiveCache(newCacheDir());
+        final String url = "https://eventstore.org/downloads/EventStore-OSS-Ubuntu-14.04-v4.1.1.tar.gz";
+
+        // TEST
+        final File archive = testee.getArchive(url);
+
+        // VERIFY
+        assertThat(archive.getName()).isEqualTo("EventStore-OSS-Ubuntu-14.04-v4.1.1.tar.gz");
+        assertThat(archive.getParentFile().getName()).isEqualTo(ArchiveCache.sha256(url));
+
+        // TEST
+        archive.getParentFile().mkdirs();
+        Files.write(archive.toPath(), "abc".getBytes());
+
+        // VERIFY
+        assertThat(testee.getArchiveSha256(archive)).isEqualTo(ArchiveCache.sha256("abc"));
+        assertThat(new File(archive.getParentFile(), archive.getName() + ".sha256")).exists();
+
+    }
+
+    @Test
+    public void testFindInstalledSha256() throws IOException, MojoExecutionException {
+
+        // PREPARE
+        final ArchiveCache testee = new ArchiveCache(newCacheDir());
+        final String url = "https://eventstore.org/downloads/EventStore-OSS-Ubuntu-14.04-v4.1.1.tar.gz";
+        final File installDir = extractExample(testee);
+        final String sha256 = installDir.getName();
+        assertThat(testee.findInstalledSha256(url)).isNull();
+
+        // TEST
+        testee.setArchiveSha256(url, sha256, 123);
+
+        // VERIFY
+        assertThat(testee.getArchive(url)).doesNotExist();
+        assertThat(testee.findInstalledSha256(url)).isEqualTo(sha256);
+
+    }
+
+    @Test
+    public void testManifestAndInvalidate() throws IOException, MojoExecutionException {
+
+        // PREPARE
+        final ArchiveCache testee = new ArchiveCache(newCacheDir());
+        final File installDir = extractExample(testee);
+        final String sha256 = installDir.getName();
+
+        // TEST
+        final InstallManifest manifest = testee.getManifest(sha256);
+
+        // VERIFY
+        assertThat(manifest.getArchiveSha256()).isEqualTo(sha256);
+        assertThat(manifest.getEntries()).extracting(InstallManifest.Entry::getPath).contains("bin/some.sh",
+                "lib/commons-io-2.5.jar");
+        assertThat(manifest.verify(installDir)).isEmpty();
+
+        // TEST
+        testee.invalidate(sha256);
+
+        // VERIFY
+        assertThat(testee.isInstalled(sha256)).isFalse();
+        assertThat(installDir).doesNotExist();
+
+    }
+
+    @Test
+    public void testInstallHardlink() throws IOException, MojoExecutionException {
+
+        // PREPARE
+        final ArchiveCache testee = new ArchiveCache(newCacheDir());
+        final File installDir = extractExample(testee);
+        final File destDir = new File(Utils4J.getTempDir(), "ArchiveCacheTest-" + UUID.randomUUID());
+
+        // TEST
+        ArchiveCache.install(installDir, destDir, InstallMode.HARDLINK);
+
+        // VERIFY
+        final File src = new File(installDir, "lib/commons-io-2.5.jar");
+        final File dest = new File(destDir, "lib/commons-io-2.5.jar");
+        assertThat(dest).exists();
+        assertThat(Files.isSameFile(src.toPath(), dest.toPath())).isTrue();
+        assertThat(new File(destDir, "bin/some.sh").canExecute()).isTrue();
+
+    }
+
+    @Test
+    public void testInstallCopy() throws IOException, MojoExecutionException {
+
+        // PREPARE
+        final ArchiveCache testee = new ArchiveCache(newCacheDir());
+        final File installDir = extractExample(testee);
+        final File destDir = new File(Utils4J.getTempDir(), "ArchiveCacheTest-" + UUID.randomUUID());
+
+        // TEST
+        ArchiveCache.install(installDir, destDir, InstallMode.COPY);
+
+        // VERIFY
+        final File src = new File(installDir, "lib/commons-io-2.5.jar");
+        final File dest = new File(destDir, "lib/commons-io-2.5.jar");
+        assertThat(Files.readAllBytes(dest.toPath())).isEqualTo(Files.readAllBytes(src.toPath()));
+        assertThat(Files.isSameFile(src.toPath(), dest.toPath())).isFalse();
+        assertThat(new File(destDir, "bin/some.sh").canExecute()).isTrue();
+
+    }
+
+    private File extractExample(final ArchiveCache testee) throws IOException, MojoExecutionException {
+        final File archive = File.createTempFile("ArchiveCacheTest-", ".tar.gz");
+        final URL srcUrl = Utils4J.url("classpath:files-only.tar.gz");
+        FileUtils.copyURLToFile(srcUrl, archive);
+        final String sha256 = ArchiveCache.sha256(archive);
+        assertThat(testee.isInstalled(sha256)).isFalse();
+        final File stagingDir = testee.createStagingDir(sha256);
+        EventStoreDownloadMojo.unTarGz(archive, stagingDir);
+        testee.commitInstall(stagingDir, sha256);
+        assertThat(testee.isInstalled(sha256)).isTrue();
+        assertThat(stagingDir).doesNotExist();
+        return testee.getInstallDir(sha256);
+    }
+
+    private File newCacheDir() {
+        return new File(Utils4J.getTempDir(), "ArchiveCacheTest-" + UUID.randomUUID());
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,175 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fuin.utils4j.Utils4J;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test for {@link CatalogCache}.
+ */
+// CHECKSTYLE:OFF Test
+public class CatalogCacheTest {
+
+    private static final String CONTENT = "{ \"4.1.1\": {} }";
+
+    private static final String ETAG = "\"v1\"";
+
+    private HttpServer server;
+
+    private AtomicInteger fullRequests;
+
+    private AtomicInteger notModified;
+
+    @Before
+    public void setup() throws IOException {
+        fullRequests = new AtomicInteger();
+        notModified = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/downloads.json", this::serve);
+        server.start();
+    }
+
+    @After
+    public void teardown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testFetchWithinTtl() throws IOException {
+
+        // PREPARE
+        final CatalogCache testee = new CatalogCache(newDir(), 60000, 5000);
+
+        // TEST
+        final File first = testee.fetch(url(), false);
+        final File second = testee.fetch(url(), false);
+
+        // VERIFY
+        assertThat(second).isEqualTo(first);
+        assertThat(new String(Files.readAllBytes(first.toPath()), StandardCharsets.UTF_8)).isEqualTo(CONTENT);
+        assertThat(fullRequests.get()).isEqualTo(1);
+        assertThat(notModified.get()).isEqualTo(0);
+
+    }
+
+    @Test
+    public void testFetchRevalidate() throws IOException {
+
+        // PREPARE
+        final CatalogCache testee = new CatalogCache(newDir(), 0, 5000);
+        testee.fetch(url(), false);
+
+        // TEST
+        final File file = testee.fetch(url(), false);
+
+        // VERIFY
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)).isEqualTo(CONTENT);
+        assertThat(fullRequests.get()).isEqualTo(1);
+        assertThat(notModified.get()).isEqualTo(1);
+
+    }
+
+    @Test
+    public void testFetchOffline() throws IOException {
+
+        // PREPARE
+        final CatalogCache testee = new CatalogCache(newDir(), 0, 5000);
+        try {
+            testee.fetch(url(), true);
+            fail("Expected an exception without cached file");
+        } catch (final IOException ex) {
+            assertThat(ex.getMessage()).startsWith("Offline");
+        }
+        testee.fetch(url(), false);
+
+        // TEST
+        final File file = testee.fetch(url(), true);
+
+        // VERIFY
+        assertThat(file).exists();
+        assertThat(fullRequests.get()).isEqualTo(1);
+        assertThat(notModified.get()).isEqualTo(0);
+
+    }
+
+    @Test
+    public void testFetchServerDown() throws IOException {
+
+        // PREPARE
+        final CatalogCache testee = new CatalogCache(newDir(), 0, 5000);
+        final URL url = url();
+        testee.fetch(url, false);
+        server.stop(0);
+
+        // TEST
+        final File file = testee.fetch(url, false);
+
+        // VERIFY
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)).isEqualTo(CONTENT);
+
+    }
+
+    private File newDir() {
+        return new File(Utils4J.getTempDir(), "CatalogCacheTest-" + UUID.randomUUID());
+    }
+
+    private URL url() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/downloads.json");
+    }
+
+    private void serve(final HttpExchange exchange) throws IOException {
+        try {
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            fullRequests.incrementAndGet();
+            final byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            final OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+
+import org.fuin.utils4j.Utils4J;
+import org.junit.Test;
+
+/**
+ * Test for {@link CatalogIndex}.
+ */
+// CHECKSTYLE:OFF Test
+public class CatalogIndexTest {
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+
+        // PREPARE
+        final File jsonFile = copyTestFile();
+        final Downloads parsed = new Downloads(new URL(AbstractEventStoreMojo.VERSION_URL), jsonFile);
+        parsed.parse();
+
+        // TEST
+        final List<DownloadVersion> loaded = CatalogIndex.load(jsonFile);
+
+        // VERIFY
+        assertThat(CatalogIndex.getIndexFile(jsonFile)).exists();
+        assertThat(loaded).isEqualTo(parsed.getVersions());
+        for (int i = 0; i < loaded.size(); i++) {
+            final DownloadVersion expected = parsed.getVersions().get(i);
+            final DownloadVersion actual = loaded.get(i);
+            assertThat(actual.getOSFamilies()).isEqualTo(expected.getOSFamilies());
+            for (final DownloadOSFamily family : expected.getOSFamilies()) {
+                final DownloadOSFamily actualFamily = actual.findFamily(family.getName());
+                assertThat(actualFamily.getDownloads()).isEqualTo(family.getDownloads());
+                for (final DownloadOS download : family.getDownloads()) {
+                    assertThat(actualFamily.findDownload(download.getName()).getUrl()).isEqualTo(download.getUrl());
+                }
+            }
+        }
+
+        final Downloads indexed = new Downloads(new URL(AbstractEventStoreMojo.VERSION_URL), jsonFile);
+        indexed.parse();
+        assertThat(indexed.getVersions()).isEqualTo(parsed.getVersions());
+        assertThat(indexed.findVersion("4.1.1").findFamily("Linux").findDownload("Ubuntu 14.04").getUrl())
+                .isEqualTo("https://eventstore.org/downloads/EventStore-OSS-Ubuntu-14.04-v4.1.1.tar.gz");
+
+    }
+
+    @Test
+    public void testLoadOutdated() throws IOException {
+
+        // PREPARE
+        final File jsonFile = copyTestFile();
+        new Downloads(new URL(AbstractEventStoreMojo.VERSION_URL), jsonFile).parse();
+
+        // TEST
+        jsonFile.setLastModified(jsonFile.lastModified() - 10000);
+
+        // VERIFY
+        assertThat(CatalogIndex.load(jsonFile)).isNull();
+
+    }
+
+    @Test
+    public void testLoadBroken() throws IOException {
+
+        // PREPARE
+        final File jsonFile = copyTestFile();
+        new Downloads(new URL(AbstractEventStoreMojo.VERSION_URL), jsonFile).parse();
+        final File indexFile = CatalogIndex.getIndexFile(jsonFile);
+        final byte[] bytes = Files.readAllBytes(indexFile.toPath());
+        final byte[] truncated = new byte[bytes.length / 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        Files.write(indexFile.toPath(), truncated);
+
+        // TEST & VERIFY
+        assertThat(CatalogIndex.load(jsonFile)).isNull();
+
+    }
+
+    @Test
+    public void testResolveLatest() throws IOException, InterruptedException {
+
+        // PREPARE
+        final File jsonFile = copyTestFile();
+        final DownloadFilter filter = new DownloadFilter("Linux", "Ubuntu", false);
+        final File indexFile = CatalogIndex.getIndexFile(jsonFile);
+
+        // TEST
+        final DownloadVersion parsed = new Downloads(new URL(AbstractEventStoreMojo.VERSION_URL), jsonFile)
+                .resolveLatest(filter);
+        for (int i = 0; i < 100 && CatalogIndex.load(jsonFile) == null; i++) {
+            Thread.sleep(50);
+        }
+        final DownloadVersion indexed = new Downloads(new URL(AbstractEventStoreMojo.VERSION_URL), jsonFile)
+                .resolveLatest(filter);
+
+        // VERIFY
+        assertThat(indexFile).exists();
+        assertThat(indexed).isEqualTo(parsed);
+        assertThat(indexed.getOSFamilies()).isEqualTo(parsed.getOSFamilies());
+        assertThat(indexed.findFamily("Linux").getDownloads()).isEqualTo(parsed.findFamily("Linux").getDownloads());
+
+    }
+
+    private File copyTestFile() throws IOException {
+        final File dir = new File(Utils4J.getTempDir(), "CatalogIndexTest-" + UUID.randomUUID());
+        Files.createDirectories(dir.toPath());
+        final File jsonFile = new File(dir, "downloads.json");
+        Files.copy(new File("./target/test-classes/test-download.json").toPath(), jsonFile.toPath());
+        return jsonFile;
+    }
+
+}
+// CHECKSTYLE:ON
@@ -22,8 +22,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
+import org.apache.commons.io.FileUtils;
 import org.fuin.utils4j.Utils4J;
 import org.junit.Test;
 
@@ -87,6 +89,53 @@ public class DownloadsTest {
         assertThat(testee.findLatest(false).getName()).isEqualTo("4.1.1-hotfix1");
         
     }
+
+    @Test
+    public void testFindLatestUnordered() throws IOException {
+
+        // PREPARE
+        final File file = new File(Utils4J.getTempDir(), "event-store-versions-" + UUID.randomUUID() + ".json");
+        final String download = "{ \"Linux\": [ { \"name\": \"Ubuntu 18.04\", \"url\": \"https://localhost/es-%s.tar.gz\" } ] }";
+        FileUtils.write(file, "{ \"5.0.9\": " + String.format(download, "5.0.9") + ", \"20.6.0-rc1\": "
+                + String.format(download, "20.6.0-rc1") + ", \"5.0.10\": " + String.format(download, "5.0.10") + " }",
+                StandardCharsets.UTF_8);
+        final URL versionURL = new URL(AbstractEventStoreMojo.VERSION_URL);
+        final Downloads testee = new Downloads(versionURL, file);
+        testee.parse();
+
+        // TEST & VERIFY
+        assertThat(testee.findLatest(true).getName()).isEqualTo("20.6.0-rc1");
+        assertThat(testee.findLatest(false).getName()).isEqualTo("5.0.10");
+        assertThat(new Downloads(versionURL, file).parseLatest(new DownloadFilter("Linux", "Ubuntu", false)).getName())
+                .isEqualTo("5.0.10");
+        assertThat(new Downloads(versionURL, file).parseLatest(new DownloadFilter("Linux", "Ubuntu", true)).getName())
+                .isEqualTo("20.6.0-rc1");
+
+    }
+
+    @Test
+    public void testParseLatest() throws IOException {
+
+        // PREPARE
+        final URL versionURL = new URL(AbstractEventStoreMojo.VERSION_URL);
+        final Downloads testee = new Downloads(versionURL, new File("./target/test-classes/test-download.json"));
+
+        // TEST
+        final DownloadVersion linux = testee.parseLatest(new DownloadFilter("Linux", "Ubuntu", false));
+        final DownloadVersion mac = testee.parseLatest(new DownloadFilter("Mac", null, false));
+        final DownloadVersion macRc = testee.parseLatest(new DownloadFilter("Mac", null, true));
+        final DownloadVersion none = testee.parseLatest(new DownloadFilter("Solaris", null, true));
+
+        // VERIFY
+        assertThat(linux.getName()).isEqualTo("4.1.1-hotfix1");
+        assertThat(linux.getOSFamilies()).containsExactly(new DownloadOSFamily("Linux"));
+        assertThat(linux.findFamily("Linux").findLatestDownload("Ubuntu").getUrl())
+                .isEqualTo("https://eventstore.org/downloads/EventStore-OSS-Ubuntu-18.04-v4.1.1-hotfix1.tar.gz");
+        assertThat(mac.getName()).isEqualTo("3.9.4");
+        assertThat(macRc.getName()).isEqualTo("5.0.0-rc1");
+        assertThat(none).isNull();
+
+    }
     
 
 }
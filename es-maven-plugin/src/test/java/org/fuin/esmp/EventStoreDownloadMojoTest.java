@@ -19,13 +19,22 @@ package org.fuin.esmp;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
 
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.codehaus.plexus.util.FileUtils;
 import org.fuin.utils4j.Utils4J;
+import org.junit.Assume;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +65,53 @@ public class EventStoreDownloadMojoTest {
 
     }
 
+    @Test
+    public void testUnTarGzParallel() throws MojoExecutionException, IOException {
+
+        // PREPARE
+        final String name = this.getClass().getSimpleName() + "-testUnTarGzParallel";
+        final File archive = File.createTempFile(name + "-", ".tar.gz");
+        final File destDir = new File(Utils4J.getTempDir(), name);
+        init("example.tar.gz", archive, destDir);
+
+        // TEST
+        EventStoreDownloadMojo.unTarGz(archive, destDir, false, 3);
+
+        // VERIFY
+        assertAllExists(destDir);
+
+    }
+
+    @Test
+    public void testUnTarGzFileModes() throws MojoExecutionException, IOException {
+
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+        // PREPARE
+        final String name = this.getClass().getSimpleName() + "-testUnTarGzFileModes";
+        final File archive = File.createTempFile(name + "-", ".tar.gz");
+        final File destDir = new File(Utils4J.getTempDir(), name);
+        init("example.tar.gz", archive, destDir);
+
+        // TEST
+        EventStoreDownloadMojo.unTarGz(archive, destDir);
+
+        // VERIFY
+        final TarArchiveInputStream tarIn = new TarArchiveInputStream(
+                new GzipCompressorInputStream(new BufferedInputStream(new FileInputStream(archive))));
+        try {
+            TarArchiveEntry entry;
+            while ((entry = (TarArchiveEntry) tarIn.getNextEntry()) != null) {
+                final File file = new File(destDir, entry.getName());
+                assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())))
+                        .as(entry.getName()).isEqualTo(new FileMode(entry.getMode()).toString());
+            }
+        } finally {
+            tarIn.close();
+        }
+
+    }
+
     @Test
     public void testUnTarGzFilesOnly() throws MojoExecutionException, IOException {
 
@@ -90,6 +146,40 @@ public class EventStoreDownloadMojoTest {
 
     }
 
+    @Test
+    public void testUnzipParallel() throws MojoExecutionException, IOException {
+
+        // PREPARE
+        final String name = this.getClass().getSimpleName() + "-testUnzipParallel";
+        final File archive = File.createTempFile(name + "-", ".zip");
+        final File destDir = new File(Utils4J.getTempDir(), name);
+        init("example.zip", archive, destDir);
+
+        // TEST
+        EventStoreDownloadMojo.unzip(archive, destDir, 4);
+
+        // VERIFY
+        assertAllExists(destDir);
+
+    }
+
+    @Test
+    public void testUnzipMmap() throws MojoExecutionException, IOException {
+
+        // PREPARE
+        final String name = this.getClass().getSimpleName() + "-testUnzipMmap";
+        final File archive = File.createTempFile(name + "-", ".zip");
+        final File destDir = new File(Utils4J.getTempDir(), name);
+        init("example.zip", archive, destDir);
+
+        // TEST
+        EventStoreDownloadMojo.unzip(archive, destDir, 2, UnpackEngine.MMAP);
+
+        // VERIFY
+        assertAllExists(destDir);
+
+    }
+
     private void assertAllExists(final File destDir) {
         assertThat(destDir).exists();
         final File binDir = new File(destDir, "bin");
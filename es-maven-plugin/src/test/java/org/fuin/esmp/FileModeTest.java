@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link FileMode}.
+ */
+// CHECKSTYLE:OFF Test
+public class FileModeTest {
+
+    @Test
+    public void testAllModes() {
+
+        for (int mode = 0; mode <= 07777; mode++) {
+
+            // TEST
+            final FileMode testee = new FileMode(mode);
+
+            // VERIFY
+            assertThat(testee.toChmodStringFull()).isEqualTo(String.format("%04o", mode));
+            assertThat(testee.toChmodStringBasic()).isEqualTo(String.format("%03o", mode & 0777));
+            assertThat(testee.toString()).isEqualTo(PosixFilePermissions.toString(testee.toPosixPermissions()));
+            assertThat(FileMode.toMode(testee.toPosixPermissions())).isEqualTo(mode & 0777);
+            assertThat(testee.toPosixPermissions()).isSameAs(FileMode.toPosixPermissions(mode & 0777));
+            assertThat(testee.isSetUid()).isEqualTo((mode & 04000) != 0);
+            assertThat(testee.isSetGid()).isEqualTo((mode & 02000) != 0);
+            assertThat(testee.isStickyBit()).isEqualTo((mode & 01000) != 0);
+
+        }
+
+    }
+
+    @Test
+    public void testFileType() {
+
+        assertThat(new FileMode(0100755).toString()).isEqualTo("rwxr-xr-x");
+        assertThat(new FileMode(0100755).isDircetory()).isFalse();
+        assertThat(new FileMode(040755).isDircetory()).isTrue();
+
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Compares single threaded, pipelined and BGZF decompression of the "example.tar.gz" and "files-only.tar.gz" fixtures scaled up by
+ * repeating their entries. The first argument is the number of copies (defaults to 40), the second one the number of threads
+ * (defaults to 4). Not executed as part of the build.
+ */
+// CHECKSTYLE:OFF Test
+public final class GzipBenchmark {
+
+    private static final int RUNS = 3;
+
+    public static void main(final String[] args) throws IOException, MojoExecutionException {
+
+        final int copies = (args.length > 0) ? Integer.parseInt(args[0]) : 40;
+        final int threads = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        final File dir = new File(Utils4J.getTempDir(), "GzipBenchmark-" + UUID.randomUUID());
+        try {
+            for (final String fixture : new String[] { "example.tar.gz", "files-only.tar.gz" }) {
+                final byte[] tar = scale(fixture, copies);
+                final File gz = new File(dir, "scaled-" + fixture);
+                final File bgzf = new File(dir, "scaled-bgzf-" + fixture);
+                FileUtils.writeByteArrayToFile(gz, ParallelGzipTest.gzip(tar));
+                FileUtils.writeByteArrayToFile(bgzf, ParallelGzipTest.bgzf(tar));
+
+                System.out.println(fixture + " x " + copies + " (" + tar.length + " bytes uncompressed)");
+                System.out.println("  single thread: " + run(gz, new File(dir, "out"), 1) + " ms");
+                System.out.println("  pipeline:      " + run(gz, new File(dir, "out"), threads) + " ms");
+                System.out.println("  bgzf single:   " + run(bgzf, new File(dir, "out"), 1) + " ms");
+                System.out.println("  bgzf parallel: " + run(bgzf, new File(dir, "out"), threads) + " ms (" + threads
+                        + " threads)");
+            }
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+
+    }
+
+    /**
+     * Creates an uncompressed TAR that contains all entries of a fixture a number of times, each copy in its own directory.
+     */
+    private static byte[] scale(final String fixture, final int copies) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final TarArchiveOutputStream out = new TarArchiveOutputStream(new BufferedOutputStream(bos));
+        out.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        for (int i = 0; i < copies; i++) {
+            final TarArchiveInputStream tarIn = new TarArchiveInputStream(
+                    new GzipCompressorInputStream(Utils4J.url("classpath:" + fixture).openStream()));
+            try {
+                TarArchiveEntry entry;
+                while ((entry = tarIn.getNextTarEntry()) != null) {
+                    final TarArchiveEntry copy = new TarArchiveEntry("copy" + i + "/" + entry.getName());
+                    copy.setMode(entry.getMode());
+                    copy.setSize(entry.getSize());
+                    out.putArchiveEntry(copy);
+                    IOUtils.copy(tarIn, out);
+                    out.closeArchiveEntry();
+                }
+            } finally {
+                tarIn.close();
+            }
+        }
+        out.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Unpacks the archive several times and returns the best time.
+     */
+    private static long run(final File archive, final File destDir, final int threads) throws IOException, MojoExecutionException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            FileUtils.deleteDirectory(destDir);
+            Files.createDirectories(destDir.toPath());
+            final long start = System.nanoTime();
+            EventStoreDownloadMojo.unTarGz(archive, destDir, false, threads);
+            best = Math.min(best, (System.nanoTime() - start) / 1000000);
+        }
+        return best;
+    }
+
+}
+// CHECKSTYLE:ON
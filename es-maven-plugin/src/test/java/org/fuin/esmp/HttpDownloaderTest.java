@@ -0,0 +1,269 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test for {@link HttpDownloader}.
+ */
+// CHECKSTYLE:OFF Test
+public class HttpDownloaderTest {
+
+    private static final int SIZE = 5 * 1024 * 1024 + 17;
+
+    private byte[] content;
+
+    private HttpServer server;
+
+    private AtomicInteger rangeRequests;
+
+    private AtomicInteger fullRequests;
+
+    private AtomicInteger bytesSent;
+
+    private String etag;
+
+    private byte[] changed;
+
+    @Before
+    public void setup() throws IOException {
+        content = new byte[SIZE];
+        new Random(4711).nextBytes(content);
+        rangeRequests = new AtomicInteger();
+        fullRequests = new AtomicInteger();
+        bytesSent = new AtomicInteger();
+        etag = "\"v1\"";
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/ranges/archive.tar.gz", exchange -> serve(exchange, true));
+        server.createContext("/no-ranges/archive.tar.gz", exchange -> serve(exchange, false));
+        server.createContext("/changing/archive.tar.gz", exchange -> {
+            final boolean head = exchange.getRequestMethod().equals("HEAD");
+            serve(exchange, true);
+            if (head && changed == null) {
+                // New version with another size is published after the first HEAD request
+                changed = new byte[SIZE + 1000];
+                new Random(815).nextBytes(changed);
+                content = changed;
+                etag = "\"v2\"";
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void teardown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testDownloadSegments() throws IOException {
+
+        // PREPARE
+        final File file = File.createTempFile("HttpDownloaderTest-", ".tar.gz");
+        final HttpDownloader testee = new HttpDownloader(4, 5000);
+
+        // TEST
+        testee.download(url("/ranges/archive.tar.gz"), file);
+
+        // VERIFY
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(content);
+        assertThat(rangeRequests.get()).isEqualTo(4);
+        assertThat(fullRequests.get()).isEqualTo(0);
+        assertThat(HttpDownloader.getPartFile(file)).doesNotExist();
+        assertThat(HttpDownloader.getJournalFile(file)).doesNotExist();
+
+    }
+
+    @Test
+    public void testResume() throws IOException {
+
+        // PREPARE
+        final File file = File.createTempFile("HttpDownloaderTest-", ".tar.gz");
+        final int half = SIZE / 2;
+        final int done = 1000;
+        createPartialDownload(file, half, done, etag);
+        final HttpDownloader testee = new HttpDownloader(4, 5000);
+
+        // TEST
+        testee.download(url("/ranges/archive.tar.gz"), file);
+
+        // VERIFY
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(content);
+        assertThat(rangeRequests.get()).isEqualTo(1);
+        assertThat(bytesSent.get()).isEqualTo(SIZE - half - done);
+        assertThat(HttpDownloader.getPartFile(file)).doesNotExist();
+        assertThat(HttpDownloader.getJournalFile(file)).doesNotExist();
+
+    }
+
+    @Test
+    public void testResumeChangedContent() throws IOException {
+
+        // PREPARE
+        final File file = File.createTempFile("HttpDownloaderTest-", ".tar.gz");
+        createPartialDownload(file, SIZE / 2, 1000, "\"v0\"");
+        final HttpDownloader testee = new HttpDownloader(4, 5000);
+
+        // TEST
+        testee.download(url("/ranges/archive.tar.gz"), file);
+
+        // VERIFY
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(content);
+        assertThat(rangeRequests.get()).isEqualTo(4);
+
+    }
+
+    @Test
+    public void testContentChangedDuringDownload() throws IOException {
+
+        // PREPARE
+        final File file = File.createTempFile("HttpDownloaderTest-", ".tar.gz");
+        final HttpDownloader testee = new HttpDownloader(4, 5000);
+
+        // TEST
+        testee.download(url("/changing/archive.tar.gz"), file);
+
+        // VERIFY
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(changed);
+        assertThat(HttpDownloader.getPartFile(file)).doesNotExist();
+        assertThat(HttpDownloader.getJournalFile(file)).doesNotExist();
+
+    }
+
+    @Test
+    public void testDownloadStream() throws IOException {
+
+        // PREPARE
+        final File file = File.createTempFile("HttpDownloaderTest-", ".tar.gz");
+        final HttpDownloader testee = new HttpDownloader(4, 5000);
+
+        // TEST
+        testee.download(url("/no-ranges/archive.tar.gz"), file);
+
+        // VERIFY
+        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(content);
+        assertThat(rangeRequests.get()).isEqualTo(0);
+        assertThat(fullRequests.get()).isEqualTo(1);
+
+    }
+
+    @Test
+    public void testOpenStream() throws IOException {
+
+        // PREPARE
+        final HttpDownloader testee = new HttpDownloader(1, 5000);
+
+        // TEST
+        final InputStream in = testee.openStream(url("/ranges/archive.tar.gz"));
+        final byte[] loaded;
+        try {
+            loaded = IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+
+        // VERIFY
+        assertThat(loaded).isEqualTo(content);
+        assertThat(rangeRequests.get()).isEqualTo(0);
+        assertThat(fullRequests.get()).isEqualTo(1);
+
+    }
+
+    private void createPartialDownload(final File file, final int half, final int done, final String partEtag)
+            throws IOException {
+        // First half complete, second half partially loaded
+        final byte[] part = new byte[SIZE];
+        System.arraycopy(content, 0, part, 0, half + done);
+        Files.write(HttpDownloader.getPartFile(file).toPath(), part);
+        final DownloadJournal journal = new DownloadJournal(HttpDownloader.getJournalFile(file),
+                url("/ranges/archive.tar.gz").toString(), SIZE, partEtag, null,
+                Arrays.asList(new DownloadJournal.Segment(0, half, half - 1),
+                        new DownloadJournal.Segment(half, half + done, SIZE - 1)));
+        journal.save();
+        Files.delete(file.toPath());
+    }
+
+    private URL url(final String path) throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private void serve(final HttpExchange exchange, final boolean acceptRanges) throws IOException {
+        try {
+            if (acceptRanges) {
+                exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+                exchange.getResponseHeaders().add("ETag", etag);
+            }
+            final String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+            final String range = (ifRange == null || ifRange.equals(etag)) ? exchange.getRequestHeaders().getFirst("Range")
+                    : null;
+            int first = 0;
+            int last = content.length - 1;
+            int status = 200;
+            if (acceptRanges && range != null) {
+                final String[] parts = range.substring("bytes=".length()).split("-");
+                first = Integer.parseInt(parts[0]);
+                if (parts.length > 1 && !parts[1].isEmpty()) {
+                    last = Integer.parseInt(parts[1]);
+                }
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + first + "-" + last + "/" + content.length);
+                status = 206;
+            }
+            final int length = last - first + 1;
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().add("Content-Length", String.valueOf(length));
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            if (status == 206) {
+                rangeRequests.incrementAndGet();
+            } else {
+                fullRequests.incrementAndGet();
+            }
+            exchange.sendResponseHeaders(status, length);
+            final OutputStream out = exchange.getResponseBody();
+            out.write(content, first, length);
+            bytesSent.addAndGet(length);
+            out.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+}
+// CHECKSTYLE:ON
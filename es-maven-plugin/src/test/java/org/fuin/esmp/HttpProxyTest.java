@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.net.URL;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link HttpProxy}.
+ */
+// CHECKSTYLE:OFF Test
+public class HttpProxyTest {
+
+    @Test
+    public void testSelect() throws MalformedURLException {
+
+        // PREPARE
+        final HttpProxy testee = new HttpProxy("proxy.example.com", 3128, null, null, "localhost|*.example.org");
+
+        // TEST
+        final Proxy proxy = testee.select(new URL("https://eventstore.org/downloads/EventStore.tar.gz"));
+
+        // VERIFY
+        assertThat(proxy.type()).isEqualTo(Proxy.Type.HTTP);
+        final InetSocketAddress address = (InetSocketAddress) proxy.address();
+        assertThat(address.getHostString()).isEqualTo("proxy.example.com");
+        assertThat(address.getPort()).isEqualTo(3128);
+        assertThat(testee.select(new URL("http://localhost:8080/downloads.json"))).isSameAs(Proxy.NO_PROXY);
+        assertThat(testee.select(new URL("http://repo.example.org/downloads.json"))).isSameAs(Proxy.NO_PROXY);
+        assertThat(testee.select(new URL("file:/tmp/downloads.json"))).isSameAs(Proxy.NO_PROXY);
+        assertThat(HttpProxy.NONE.select(new URL("https://eventstore.org/"))).isSameAs(Proxy.NO_PROXY);
+
+    }
+
+    @Test
+    public void testIsNonProxyHost() {
+
+        assertThat(HttpProxy.isNonProxyHost("localhost", "localhost")).isTrue();
+        assertThat(HttpProxy.isNonProxyHost("build.EXAMPLE.com", "*.example.com")).isTrue();
+        assertThat(HttpProxy.isNonProxyHost("10.0.0.1", "127.0.0.1, 10.*")).isTrue();
+        assertThat(HttpProxy.isNonProxyHost("eventstore.org", "*.example.com|localhost")).isFalse();
+        assertThat(HttpProxy.isNonProxyHost("eventstore.org", null)).isFalse();
+
+    }
+
+}
+// CHECKSTYLE:ON
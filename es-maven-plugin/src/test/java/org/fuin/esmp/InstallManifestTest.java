@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.fuin.utils4j.Utils4J;
+import org.junit.Test;
+
+/**
+ * Test for {@link InstallManifest}.
+ */
+// CHECKSTYLE:OFF Test
+public class InstallManifestTest {
+
+    @Test
+    public void testCreateSaveLoad() throws IOException {
+
+        // PREPARE
+        final File dir = createDir();
+        final InstallManifest manifest = InstallManifest.create("abc", dir);
+        final File file = new File(dir.getParentFile(), dir.getName() + ".manifest");
+
+        // TEST
+        manifest.save(file);
+        final InstallManifest loaded = InstallManifest.load(file);
+
+        // VERIFY
+        assertThat(loaded).isNotNull();
+        assertThat(loaded.getArchiveSha256()).isEqualTo("abc");
+        assertThat(loaded.getEntries()).hasSize(3);
+        final InstallManifest.Entry entry = loaded.getEntries().get(0);
+        assertThat(entry.getPath()).isEqualTo("a file.txt");
+        assertThat(entry.getSize()).isEqualTo(5);
+        assertThat(entry.getCrc()).isEqualTo(InstallManifest.crc(new File(dir, "a file.txt").toPath()));
+        assertThat(loaded.getEntries().get(2).getPath()).isEqualTo("sub/dir/c.txt");
+        assertThat(loaded.verify(dir)).isEmpty();
+
+    }
+
+    @Test
+    public void testVerify() throws IOException {
+
+        // PREPARE
+        final File dir = createDir();
+        final InstallManifest testee = InstallManifest.create("abc", dir);
+
+        // TEST
+        Files.delete(new File(dir, "b.txt").toPath());
+        Files.write(new File(dir, "sub/dir/c.txt").toPath(), "changed".getBytes("UTF-8"));
+        final List<InstallManifest.Entry> broken = testee.verify(dir);
+
+        // VERIFY
+        assertThat(broken).extracting(InstallManifest.Entry::getPath).containsExactly("b.txt", "sub/dir/c.txt");
+
+    }
+
+    @Test
+    public void testRestoreAttributes() throws IOException {
+
+        // PREPARE
+        final File dir = createDir();
+        final InstallManifest testee = InstallManifest.create("abc", dir);
+        final InstallManifest.Entry entry = testee.getEntries().get(0);
+        final File file = new File(dir, entry.getPath());
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(entry.getMtime() - 60000));
+        assertThat(entry.matches(file.toPath())).isFalse();
+
+        // TEST
+        entry.restoreAttributes(file.toPath());
+
+        // VERIFY
+        assertThat(entry.matches(file.toPath())).isTrue();
+
+    }
+
+    @Test
+    public void testLoadMissingOrBroken() throws IOException {
+        final File file = File.createTempFile("InstallManifestTest-", ".manifest");
+        Files.write(file.toPath(), "Something else".getBytes("UTF-8"));
+        assertThat(InstallManifest.load(file)).isNull();
+        Files.delete(file.toPath());
+        assertThat(InstallManifest.load(file)).isNull();
+    }
+
+    private File createDir() throws IOException {
+        final File dir = new File(Utils4J.getTempDir(), "InstallManifestTest-" + UUID.randomUUID());
+        new File(dir, "sub/dir").mkdirs();
+        Files.write(new File(dir, "a file.txt").toPath(), "Hello".getBytes("UTF-8"));
+        Files.write(new File(dir, "b.txt").toPath(), "World".getBytes("UTF-8"));
+        Files.write(new File(dir, "sub/dir/c.txt").toPath(), "!".getBytes("UTF-8"));
+        return dir;
+    }
+
+}
+// CHECKSTYLE:ON
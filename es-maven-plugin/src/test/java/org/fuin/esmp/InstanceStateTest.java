@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import org.fuin.utils4j.Utils4J;
+import org.junit.Test;
+
+/**
+ * Test for {@link InstanceState}.
+ */
+// CHECKSTYLE:OFF Test
+public class InstanceStateTest {
+
+    @Test
+    public void testSaveLoad() throws IOException {
+
+        // PREPARE
+        final File file = new File(Utils4J.getTempDir(), "es-state-" + UUID.randomUUID() + "/default.json");
+        final InstanceState testee = new InstanceState("default", 4711L, "127.0.0.1", 1113, 2113, 1115, "/tmp/es-db", 1000L, 0L);
+
+        try {
+
+            // TEST
+            testee.save(file);
+            final InstanceState started = InstanceState.load(file);
+            testee.ready(4712L, 2000L).save(file);
+            final InstanceState ready = InstanceState.load(file);
+
+            // VERIFY
+            assertThat(started.getName()).isEqualTo("default");
+            assertThat(started.getPid()).isEqualTo(4711L);
+            assertThat(started.getHost()).isEqualTo("127.0.0.1");
+            assertThat(started.getTcpPort()).isEqualTo(1113);
+            assertThat(started.getHttpPort()).isEqualTo(2113);
+            assertThat(started.getSecureTcpPort()).isEqualTo(1115);
+            assertThat(started.getDataDir()).isEqualTo("/tmp/es-db");
+            assertThat(started.getStartTime()).isEqualTo(1000L);
+            assertThat(started.getReadyTime()).isEqualTo(0L);
+            assertThat(ready.getPid()).isEqualTo(4712L);
+            assertThat(ready.getStartTime()).isEqualTo(1000L);
+            assertThat(ready.getReadyTime()).isEqualTo(2000L);
+
+        } finally {
+            file.delete();
+            file.getParentFile().delete();
+        }
+
+    }
+
+    @Test
+    public void testOptionalValues() throws IOException {
+
+        // PREPARE
+        final File file = new File(Utils4J.getTempDir(), "es-state-" + UUID.randomUUID() + ".json");
+        final InstanceState testee = new InstanceState("node1", null, "127.0.0.1", 1113, 2113, 0, null, 1000L, 0L);
+
+        try {
+
+            // TEST
+            testee.save(file);
+            final InstanceState loaded = InstanceState.load(file);
+
+            // VERIFY
+            assertThat(loaded.getName()).isEqualTo("node1");
+            assertThat(loaded.getPid()).isNull();
+            assertThat(loaded.getDataDir()).isNull();
+
+        } finally {
+            file.delete();
+        }
+
+    }
+
+    @Test
+    public void testInternalPorts() throws IOException {
+
+        // PREPARE
+        final File file = new File(Utils4J.getTempDir(), "es-state-" + UUID.randomUUID() + ".json");
+        final InstanceState testee = new InstanceState("node1", null, "127.0.0.1", 1113, 2113, 0, null, 1000L, 0L)
+                .withInternalPorts(1112, 2112);
+
+        try {
+
+            // TEST
+            testee.ready(4711L, 2000L).save(file);
+            final InstanceState loaded = InstanceState.load(file);
+
+            // VERIFY
+            assertThat(loaded.getIntTcpPort()).isEqualTo(1112);
+            assertThat(loaded.getIntHttpPort()).isEqualTo(2112);
+            assertThat(loaded.getPorts()).containsExactly(1113, 2113, 1112, 2112);
+
+        } finally {
+            file.delete();
+        }
+
+    }
+
+    @Test
+    public void testLoadMissing() throws IOException {
+        assertThat(InstanceState.load(new File(Utils4J.getTempDir(), "es-state-" + UUID.randomUUID() + ".json"))).isNull();
+    }
+
+    @Test
+    public void testLoadBroken() throws IOException {
+
+        // PREPARE
+        final File file = new File(Utils4J.getTempDir(), "es-state-" + UUID.randomUUID() + ".json");
+        Files.write(file.toPath(), "{\"name\":\"default\"".getBytes(StandardCharsets.UTF_8));
+
+        try {
+
+            // TEST
+            InstanceState.load(file);
+            fail("Expected an exception");
+
+        } catch (final IOException ex) {
+
+            // VERIFY
+            assertThat(ex.getMessage()).contains(file.getName());
+
+        } finally {
+            file.delete();
+        }
+
+    }
+
+}
+// CHECKSTYLE:ON
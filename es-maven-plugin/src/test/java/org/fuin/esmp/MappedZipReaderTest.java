@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.plexus.util.FileUtils;
+import org.fuin.utils4j.Utils4J;
+import org.junit.Test;
+
+/**
+ * Test for {@link MappedZipReader}.
+ */
+// CHECKSTYLE:OFF Test
+public class MappedZipReaderTest {
+
+    @Test
+    public void testEntries() throws IOException {
+
+        // PREPARE
+        final File archive = copyExample();
+
+        // TEST
+        final MappedZipReader testee = new MappedZipReader(archive);
+
+        // VERIFY
+        final List<String> expected = new ArrayList<>();
+        final ZipFile zip = new ZipFile(archive);
+        try {
+            final Enumeration<? extends ZipEntry> enu = zip.entries();
+            while (enu.hasMoreElements()) {
+                expected.add(enu.nextElement().getName());
+            }
+        } finally {
+            zip.close();
+        }
+        final List<String> names = new ArrayList<>();
+        for (final MappedZipReader.Entry entry : testee.getEntries()) {
+            names.add(entry.getName());
+        }
+        assertThat(names).isEqualTo(expected);
+
+    }
+
+    @Test
+    public void testExtract() throws IOException {
+
+        // PREPARE
+        final File archive = copyExample();
+        final File destDir = new File(Utils4J.getTempDir(), "MappedZipReaderTest-" + UUID.randomUUID());
+        destDir.mkdirs();
+        final MappedZipReader testee = new MappedZipReader(archive);
+
+        // TEST & VERIFY
+        final ZipFile zip = new ZipFile(archive);
+        try {
+            for (final MappedZipReader.Entry entry : testee.getEntries()) {
+                if (!entry.isDirectory()) {
+                    final File file = new File(destDir, new File(entry.getName()).getName());
+                    testee.extract(entry, file);
+                    final InputStream in = zip.getInputStream(zip.getEntry(entry.getName()));
+                    try {
+                        assertThat(Files.readAllBytes(file.toPath())).isEqualTo(IOUtils.toByteArray(in));
+                    } finally {
+                        in.close();
+                    }
+                }
+            }
+        } finally {
+            zip.close();
+        }
+
+    }
+
+    @Test
+    public void testExtractStored() throws IOException {
+
+        // PREPARE
+        final File dir = new File(Utils4J.getTempDir(), "MappedZipReaderTest-" + UUID.randomUUID());
+        final File archive = new File(dir, "stored.zip");
+        final byte[][] contents = ZipExtractorTest.createZip(archive, 3, true);
+        final MappedZipReader testee = new MappedZipReader(archive);
+
+        // TEST
+        final List<MappedZipReader.Entry> files = new ArrayList<>();
+        for (final MappedZipReader.Entry entry : testee.getEntries()) {
+            if (!entry.isDirectory()) {
+                files.add(entry);
+            }
+        }
+        for (int i = 0; i < files.size(); i++) {
+            testee.extract(files.get(i), new File(dir, "file" + i));
+        }
+
+        // VERIFY
+        assertThat(files).hasSize(3);
+        for (int i = 0; i < files.size(); i++) {
+            assertThat(files.get(i).getMethod()).isEqualTo(ZipEntry.STORED);
+            assertThat(Files.readAllBytes(new File(dir, "file" + i).toPath())).isEqualTo(contents[i]);
+        }
+
+    }
+
+    @Test
+    public void testClose() throws IOException {
+
+        // PREPARE
+        final File archive = copyExample();
+        final File destDir = new File(Utils4J.getTempDir(), "MappedZipReaderTest-" + UUID.randomUUID());
+        destDir.mkdirs();
+        final MappedZipReader testee = new MappedZipReader(archive);
+        final MappedZipReader.Entry entry = testee.getEntries().get(0);
+
+        // TEST
+        testee.close();
+        testee.close();
+
+        // VERIFY
+        assertThat(MappedZipReader.isUnmapSupported()).isTrue();
+        assertThat(archive.delete()).isTrue();
+        try {
+            testee.extract(entry, new File(destDir, "file"));
+            fail("Extracting from a closed reader should fail");
+        } catch (final IOException ex) {
+            assertThat(ex.getMessage()).startsWith("Reader is closed");
+        }
+
+    }
+
+    @Test(expected = ZipException.class)
+    public void testNoZipFile() throws IOException {
+
+        // PREPARE
+        final File file = File.createTempFile("MappedZipReaderTest-", ".zip");
+        Files.write(file.toPath(), "This is not a ZIP file".getBytes("UTF-8"));
+
+        // TEST
+        new MappedZipReader(file);
+
+    }
+
+    @Test(expected = ZipException.class)
+    public void testTooShort() throws IOException {
+
+        // PREPARE
+        final File file = File.createTempFile("MappedZipReaderTest-", ".zip");
+        Files.write(file.toPath(), new byte[] { 'P', 'K', 5, 6 });
+
+        // TEST
+        new MappedZipReader(file);
+
+    }
+
+    private File copyExample() throws IOException {
+        final File archive = File.createTempFile("MappedZipReaderTest-", ".zip");
+        FileUtils.copyURLToFile(Utils4J.url("classpath:example.zip"), archive);
+        return archive;
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Test for {@link ParallelGzip}, {@link BgzfInputStream} and {@link ReadAheadInputStream}.
+ */
+// CHECKSTYLE:OFF Test
+public class ParallelGzipTest {
+
+    private static final int BGZF_BLOCK = 64 * 1024 - 256;
+
+    @Test
+    public void testSingleThread() throws IOException {
+        final byte[] data = createData(1000000);
+        assertThat(decompress(gzip(data), 1)).isEqualTo(data);
+    }
+
+    @Test
+    public void testPipeline() throws IOException {
+        final byte[] data = createData(3000000);
+        assertThat(decompress(gzip(data), 4)).isEqualTo(data);
+    }
+
+    @Test
+    public void testPipelineMultiMember() throws IOException {
+        final byte[] data = createData(1000000);
+        final byte[] first = gzip(Arrays.copyOfRange(data, 0, 400000));
+        final byte[] second = gzip(Arrays.copyOfRange(data, 400000, data.length));
+        final byte[] both = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        assertThat(decompress(both, 2)).isEqualTo(data);
+    }
+
+    @Test
+    public void testBgzf() throws IOException {
+        final byte[] data = createData(3000000);
+        final byte[] bgzf = bgzf(data);
+        assertThat(BgzfInputStream.isBgzf(bgzf, bgzf.length)).isTrue();
+        assertThat(BgzfInputStream.isBgzf(gzip(data), 18)).isFalse();
+        assertThat(decompress(bgzf, 4)).isEqualTo(data);
+    }
+
+    @Test(expected = IOException.class)
+    public void testPipelineCorrupt() throws IOException {
+        final byte[] gz = gzip(createData(1000000));
+        for (int i = 1000; i < 2000; i++) {
+            gz[i] = (byte) i;
+        }
+        decompress(gz, 4);
+    }
+
+    @Test(expected = IOException.class)
+    public void testBgzfTruncated() throws IOException {
+        final byte[] bgzf = bgzf(createData(1000000));
+        decompress(Arrays.copyOf(bgzf, bgzf.length / 2), 4);
+    }
+
+    private static byte[] decompress(final byte[] data, final int threads) throws IOException {
+        final InputStream in = ParallelGzip.open(new ByteArrayInputStream(data), threads);
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] createData(final int size) {
+        // Compressible, but not trivially
+        final Random random = new Random(size);
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return data;
+    }
+
+    static byte[] gzip(final byte[] data) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final GZIPOutputStream out = new GZIPOutputStream(bos);
+        out.write(data);
+        out.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Compresses data into BGZF members followed by the empty end-of-file member.
+     * 
+     * @param data
+     *            Data to compress.
+     * 
+     * @return BGZF stream.
+     */
+    static byte[] bgzf(final byte[] data) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[BGZF_BLOCK * 2];
+        int pos = 0;
+        do {
+            final int len = Math.min(BGZF_BLOCK, data.length - pos);
+            final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setInput(data, pos, len);
+            deflater.finish();
+            int clen = 0;
+            while (!deflater.finished()) {
+                clen += deflater.deflate(buf, clen, buf.length - clen);
+            }
+            deflater.end();
+            final CRC32 crc = new CRC32();
+            crc.update(data, pos, len);
+            final int bsize = 18 + clen + 8 - 1;
+            out.write(new byte[] { 0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0 }, 0, 16);
+            writeLE(out, bsize, 2);
+            out.write(buf, 0, clen);
+            writeLE(out, crc.getValue(), 4);
+            writeLE(out, len, 4);
+            pos += len;
+        } while (pos < data.length || pos == 0 && data.length > 0);
+        // End-of-file marker
+        if (data.length > 0) {
+            final byte[] empty = bgzf(new byte[0]);
+            out.write(empty, 0, empty.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeLE(final ByteArrayOutputStream out, final long value, final int bytes) {
+        for (int i = 0; i < bytes; i++) {
+            out.write((int) (value >> (8 * i)) & 0xFF);
+        }
+    }
+
+}
+// CHECKSTYLE:ON
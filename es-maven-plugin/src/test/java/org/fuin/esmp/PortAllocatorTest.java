@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link PortAllocator}.
+ */
+// CHECKSTYLE:OFF Test
+public class PortAllocatorTest {
+
+    @Test
+    public void testAllocate() throws IOException {
+
+        // TEST
+        final int[] first = PortAllocator.allocate(3);
+        final int[] second = PortAllocator.allocate(3);
+
+        // VERIFY
+        try {
+            assertThat(first).hasSize(3).doesNotHaveDuplicates();
+            assertThat(second).hasSize(3).doesNotHaveDuplicates().doesNotContain(first);
+            for (final int port : first) {
+                // Must be free
+                new ServerSocket(port).close();
+            }
+        } finally {
+            for (final int port : first) {
+                PortAllocator.release(port);
+            }
+            for (final int port : second) {
+                PortAllocator.release(port);
+            }
+        }
+
+    }
+
+}
+// CHECKSTYLE:ON
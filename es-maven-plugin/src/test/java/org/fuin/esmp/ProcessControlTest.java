@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.exec.OS;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Test for {@link ProcessControl}.
+ */
+// CHECKSTYLE:OFF Test
+public class ProcessControlTest {
+
+    @Test
+    public void testTerminate() throws IOException, InterruptedException {
+
+        Assume.assumeTrue(OS.isFamilyUnix());
+
+        // PREPARE
+        final Process process = new ProcessBuilder("sleep", "60").start();
+        final long pid = ProcessExecutor.pid(process);
+        final ProcessControl testee = new ProcessControl(null);
+        assertThat(testee.isAlive(pid)).isTrue();
+
+        // TEST
+        testee.terminate(pid, false);
+
+        // VERIFY
+        assertThat(testee.waitFor(pid, 10000)).isTrue();
+        assertThat(testee.isAlive(pid)).isFalse();
+
+    }
+
+    @Test
+    public void testDescendants() throws IOException, InterruptedException {
+
+        Assume.assumeTrue(OS.isFamilyUnix());
+
+        // PREPARE
+        final Process process = new ProcessBuilder("sh", "-c", "sleep 60 & wait").start();
+        final long pid = ProcessExecutor.pid(process);
+        final ProcessControl testee = new ProcessControl(null);
+        List<Long> children = testee.descendants(pid);
+        for (int i = 0; i < 100 && children.isEmpty(); i++) {
+            Thread.sleep(50);
+            children = testee.descendants(pid);
+        }
+        assertThat(children).hasSize(1);
+
+        // TEST
+        testee.terminate(pid, true);
+        testee.terminate(children.get(0), true);
+
+        // VERIFY
+        assertThat(testee.waitFor(pid, 10000)).isTrue();
+        assertThat(testee.waitFor(children.get(0), 10000)).isTrue();
+
+    }
+
+    @Test
+    public void testIdentify() throws IOException, InterruptedException {
+
+        Assume.assumeTrue(OS.isFamilyUnix());
+
+        // PREPARE
+        final long launched = System.currentTimeMillis();
+        final Process process = new ProcessBuilder("sleep", "60").start();
+        final long pid = ProcessExecutor.pid(process);
+        final ProcessControl testee = new ProcessControl(null);
+
+        try {
+            // TEST & VERIFY
+            assertThat(testee.identify(pid, launched)).isEqualTo(ProcessControl.Identity.SAME);
+            assertThat(testee.identify(pid, launched - 24 * 60 * 60 * 1000L)).isEqualTo(ProcessControl.Identity.OTHER);
+            assertThat(testee.identify(pid, 0)).isEqualTo(ProcessControl.Identity.UNKNOWN);
+        } finally {
+            process.destroyForcibly();
+        }
+        assertThat(testee.waitFor(pid, 10000)).isTrue();
+        assertThat(testee.identify(pid, launched)).isEqualTo(ProcessControl.Identity.OTHER);
+
+    }
+
+    @Test
+    public void testParseElapsed() {
+
+        assertThat(ProcessControl.parseElapsed("05:02")).isEqualTo(302);
+        assertThat(ProcessControl.parseElapsed("03:04:05")).isEqualTo(3 * 3600 + 4 * 60 + 5);
+        assertThat(ProcessControl.parseElapsed("2-03:04:05")).isEqualTo(2 * 86400 + 3 * 3600 + 4 * 60 + 5);
+
+    }
+
+    @Test
+    public void testWaitForTimeout() throws IOException, InterruptedException {
+
+        Assume.assumeTrue(OS.isFamilyUnix());
+
+        // PREPARE
+        final Process process = new ProcessBuilder("sleep", "60").start();
+        final long pid = ProcessExecutor.pid(process);
+        final ProcessControl testee = new ProcessControl(null);
+
+        try {
+            // TEST & VERIFY
+            assertThat(testee.waitFor(pid, 100)).isFalse();
+        } finally {
+            process.destroyForcibly();
+        }
+
+    }
+
+}
+// CHECKSTYLE:ON
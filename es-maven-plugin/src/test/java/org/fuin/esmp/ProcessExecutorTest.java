@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecuteResultHandler;
+import org.apache.commons.exec.OS;
+import org.apache.commons.exec.PumpStreamHandler;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Test for {@link ProcessExecutor}.
+ */
+// CHECKSTYLE:OFF Test
+public class ProcessExecutorTest {
+
+    @Test
+    public void testProcessAndPid() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+
+        Assume.assumeTrue(OS.isFamilyUnix());
+
+        // PREPARE
+        final ProcessExecutor testee = new ProcessExecutor();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        testee.setStreamHandler(new PumpStreamHandler(out));
+        final DefaultExecuteResultHandler handler = new DefaultExecuteResultHandler();
+
+        // TEST
+        testee.execute(new CommandLine("sh").addArgument("-c").addArgument("echo $$", false), handler);
+        final Process process = testee.getProcess().get(10, TimeUnit.SECONDS);
+        final Long pid = ProcessExecutor.pid(process);
+        handler.waitFor(10000);
+
+        // VERIFY
+        assertThat(handler.getExitValue()).isEqualTo(0);
+        assertThat(pid).isEqualTo(Long.valueOf(new String(out.toByteArray(), StandardCharsets.US_ASCII).trim()));
+
+    }
+
+    @Test
+    public void testLaunchFailed() throws IOException, InterruptedException {
+
+        // PREPARE
+        final ProcessExecutor testee = new ProcessExecutor();
+        final DefaultExecuteResultHandler handler = new DefaultExecuteResultHandler();
+
+        // TEST
+        testee.execute(new CommandLine("does-not-exist-" + System.nanoTime()), handler);
+        handler.waitFor(10000);
+
+        // VERIFY
+        assertThat(testee.getProcess()).isCompletedExceptionally();
+
+    }
+
+}
+// CHECKSTYLE:ON
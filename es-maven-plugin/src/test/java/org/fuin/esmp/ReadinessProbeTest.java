@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test for {@link TcpReadinessProbe}, {@link HttpReadinessProbe} and {@link LeaderReadinessProbe}.
+ */
+// CHECKSTYLE:OFF Test
+public class ReadinessProbeTest {
+
+    @Test
+    public void testTcp() throws IOException {
+
+        final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        final int port = serverSocket.getLocalPort();
+        try {
+            assertThat(new TcpReadinessProbe("127.0.0.1", port, 250).probe()).isTrue();
+        } finally {
+            serverSocket.close();
+        }
+        assertThat(new TcpReadinessProbe("127.0.0.1", port, 250).probe()).isFalse();
+
+    }
+
+    @Test
+    public void testHttp() throws IOException {
+
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/ping", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        final int port = server.getAddress().getPort();
+        try {
+            assertThat(new HttpReadinessProbe(new URL("http://127.0.0.1:" + port + "/ping"), 250).probe()).isTrue();
+            assertThat(new HttpReadinessProbe(new URL("http://127.0.0.1:" + port + "/unknown"), 250).probe()).isFalse();
+        } finally {
+            server.stop(0);
+        }
+        assertThat(new HttpReadinessProbe(new URL("http://127.0.0.1:" + port + "/ping"), 250).probe()).isFalse();
+
+    }
+
+    @Test
+    public void testLeader() throws IOException {
+
+        final String[] gossip = new String[] { "{\"members\":[]}" };
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/gossip", exchange -> {
+            final byte[] body = gossip[0].getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        final int port = server.getAddress().getPort();
+        final LeaderReadinessProbe testee = new LeaderReadinessProbe(new URL("http://127.0.0.1:" + port + "/gossip"), 3, 250);
+        try {
+            assertThat(testee.probe()).isFalse();
+            gossip[0] = "{\"members\":[{\"state\":\"Leader\",\"isAlive\":true},{\"state\":\"Follower\",\"isAlive\":true},"
+                    + "{\"state\":\"Unknown\",\"isAlive\":false}]}";
+            assertThat(testee.probe()).isFalse();
+            gossip[0] = "{\"members\":[{\"state\":\"Master\",\"isAlive\":true},{\"state\":\"Slave\",\"isAlive\":true},"
+                    + "{\"state\":\"Slave\",\"isAlive\":true}]}";
+            assertThat(testee.probe()).isTrue();
+            gossip[0] = "{\"members\":[{\"state\":\"Follower\",\"isAlive\":true},{\"state\":\"Follower\",\"isAlive\":true},"
+                    + "{\"state\":\"Follower\",\"isAlive\":true}]}";
+            assertThat(testee.probe()).isFalse();
+            gossip[0] = "no json";
+            assertThat(testee.probe()).isFalse();
+        } finally {
+            server.stop(0);
+        }
+
+    }
+
+    @Test
+    public void testStart() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+
+        // PREPARE
+        final ServerSocket free = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        final int port = free.getLocalPort();
+        free.close();
+        final CompletableFuture<String> ready = new CompletableFuture<>();
+
+        // TEST
+        new TcpReadinessProbe("127.0.0.1", port, 250).start(ready, 100);
+        Thread.sleep(200);
+        assertThat(ready).isNotDone();
+        final ServerSocket serverSocket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+        try {
+
+            // VERIFY
+            assertThat(ready.get(5, TimeUnit.SECONDS)).isEqualTo("tcp");
+
+        } finally {
+            serverSocket.close();
+        }
+
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.junit.Test;
+
+/**
+ * Test for {@link ResolutionCache}.
+ */
+// CHECKSTYLE:OFF Test
+public class ResolutionCacheTest {
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testGet() {
+
+        // PREPARE
+        final MavenSession session = new MavenSession(null, new DefaultRepositorySystemSession(), new DefaultMavenExecutionRequest(),
+                new DefaultMavenExecutionResult());
+
+        // TEST & VERIFY
+        assertThat(ResolutionCache.get(session)).isSameAs(ResolutionCache.get(session));
+        assertThat(ResolutionCache.get(null)).isNotSameAs(ResolutionCache.get(null));
+
+    }
+
+    @Test
+    public void testFindLatest() throws IOException {
+
+        // PREPARE
+        final ResolutionCache testee = new ResolutionCache();
+        final URL versionURL = new URL(AbstractEventStoreMojo.VERSION_URL);
+        final File file = new File("./target/test-classes/test-download.json");
+
+        // TEST
+        final DownloadVersion first = testee.findLatest(versionURL, file, new DownloadFilter("Linux", "Ubuntu", false));
+        final DownloadVersion second = testee.findLatest(versionURL, new File("./target/does-not-exist.json"),
+                new DownloadFilter("Linux", "Ubuntu", false));
+
+        // VERIFY
+        assertThat(second).isSameAs(first);
+        assertThat(first.getName()).isEqualTo("4.1.1-hotfix1");
+
+    }
+
+    @Test
+    public void testResolution() {
+
+        // PREPARE
+        final ResolutionCache testee = new ResolutionCache();
+        final File dir = new File("./target/EventStore-OSS-Ubuntu-14.04-v4.1.1");
+
+        // TEST
+        testee.putResolution("a", new ResolutionCache.Resolution("http://localhost/es.tar.gz", "Ubuntu", dir));
+
+        // VERIFY
+        assertThat(testee.getResolution("b")).isNull();
+        final ResolutionCache.Resolution resolution = testee.getResolution("a");
+        assertThat(resolution.getDownloadUrl()).isEqualTo("http://localhost/es.tar.gz");
+        assertThat(resolution.getDownloadOsQualifier()).isEqualTo("Ubuntu");
+        assertThat(resolution.getEventStoreDir()).isEqualTo(dir);
+
+    }
+
+}
+// CHECKSTYLE:ON
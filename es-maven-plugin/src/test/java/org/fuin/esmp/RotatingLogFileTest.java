@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+
+import org.fuin.utils4j.Utils4J;
+import org.junit.Test;
+
+/**
+ * Test for {@link RotatingLogFile}.
+ */
+// CHECKSTYLE:OFF Test
+public class RotatingLogFileTest {
+
+    @Test
+    public void testRotate() throws IOException {
+
+        // PREPARE
+        final File dir = new File(Utils4J.getTempDir(), "RotatingLogFileTest-" + UUID.randomUUID());
+        final File file = new File(dir, "event-store.log");
+        final int lineLength = "line 0".length() + System.lineSeparator().length();
+        final RotatingLogFile testee = new RotatingLogFile(file, lineLength * 2, 2);
+
+        // TEST
+        try {
+            for (int i = 0; i < 7; i++) {
+                testee.writeLine("line " + i);
+            }
+        } finally {
+            testee.close();
+        }
+        testee.writeLine("ignored");
+
+        // VERIFY
+        assertThat(lines(file)).containsExactly("line 6");
+        assertThat(lines(new File(dir, "event-store.log.1"))).containsExactly("line 4", "line 5");
+        assertThat(lines(new File(dir, "event-store.log.2"))).containsExactly("line 2", "line 3");
+        assertThat(new File(dir, "event-store.log.3")).doesNotExist();
+
+    }
+
+    private static List<String> lines(final File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+}
+// CHECKSTYLE:ON
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.exec.OS;
+import org.fuin.utils4j.Utils4J;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for {@link SharedInstanceRegistry}.
+ */
+// CHECKSTYLE:OFF Test
+public class SharedInstanceRegistryTest {
+
+    private File dir;
+
+    @Before
+    public void setup() {
+        dir = new File(Utils4J.getTempDir(), "shared-" + UUID.randomUUID());
+        assertThat(dir.mkdirs()).isTrue();
+    }
+
+    @Test
+    public void testAttachUnknown() {
+
+        // PREPARE
+        final SharedInstanceRegistry testee = new SharedInstanceRegistry();
+
+        // TEST & VERIFY
+        assertThat(testee.attach("default", "a:b", new File(dir, "x.json"))).isNull();
+        assertThat(testee.isRegistered("default")).isFalse();
+        assertThat(testee.getUserCount("default")).isEqualTo(0);
+
+    }
+
+    @Test
+    public void testReleaseLastUser() throws IOException, InterruptedException {
+
+        Assume.assumeTrue(OS.isFamilyUnix());
+
+        // PREPARE
+        final Process process = new ProcessBuilder("sleep", "60").start();
+        final InstanceState state = createState(process);
+        final File stateFileA = new File(dir, "a.json");
+        final File stateFileB = new File(dir, "b.json");
+        state.save(stateFileA);
+        state.save(stateFileB);
+        final SharedInstanceRegistry testee = new SharedInstanceRegistry();
+        testee.register(state, "g:a", stateFileA, new HashSet<>(Arrays.asList("g:a", "g:b", "g:c")));
+        testee.setStopper("default", createStopper());
+
+        // TEST & VERIFY
+        assertThat(testee.attach("default", "g:b", stateFileB)).isSameAs(state);
+        assertThat(testee.getUserCount("default")).isEqualTo(3);
+
+        assertThat(testee.release("g:a")).isEmpty();
+        assertThat(testee.release("g:b")).isEmpty();
+        assertThat(testee.getUserCount("default")).isEqualTo(1);
+        assertThat(process.isAlive()).isTrue();
+
+        // Pending module finished without using the instance
+        assertThat(testee.release("g:c")).containsExactly("default");
+        assertThat(testee.isRegistered("default")).isFalse();
+        assertThat(process.waitFor(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(stateFileA).doesNotExist();
+        assertThat(stateFileB).doesNotExist();
+
+    }
+
+    @Test
+    public void testStopAll() throws IOException, InterruptedException {
+
+        Assume.assumeTrue(OS.isFamilyUnix());
+
+        // PREPARE
+        final Process process = new ProcessBuilder("sleep", "60").start();
+        final InstanceState state = createState(process);
+        final SharedInstanceRegistry testee = new SharedInstanceRegistry();
+        testee.register(state, "g:a", new File(dir, "a.json"), Collections.singleton("g:b"));
+        testee.setStopper("default", createStopper());
+
+        // TEST
+        assertThat(testee.stopAll()).containsExactly("default");
+
+        // VERIFY
+        assertThat(testee.isRegistered("default")).isFalse();
+        assertThat(process.waitFor(10, TimeUnit.SECONDS)).isTrue();
+
+    }
+
+    private static InstanceState createState(final Process process) throws IOException {
+        final int[] ports = PortAllocator.allocate(2);
+        // The stopper only signals a process that was started at the recorded time
+        final long now = System.currentTimeMillis();
+        return new InstanceState("default", null, "127.0.0.1", ports[0], ports[1], 0, null, now, 0L)
+                .ready(ProcessExecutor.pid(process), now);
+    }
+
+    private static InstanceStopper createStopper() {
+        return new InstanceStopper(null, false, "admin", "changeit", 1000, 5000, 5000);
+    }
+
+}
+// CHECKSTYLE:ON
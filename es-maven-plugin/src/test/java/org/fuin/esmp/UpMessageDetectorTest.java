@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import org.fuin.utils4j.Utils4J;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link UpMessageDetector}.
+ */
+// CHECKSTYLE:OFF Test
+public class UpMessageDetectorTest {
+
+    @Test
+    public void testUp() throws IOException {
+
+        // PREPARE
+        final UpMessageDetector testee = new UpMessageDetector("'admin' user account has been created");
+
+        // TEST
+        testee.write("[19648,10,12:47:52.297] Starting\n[19648,10,12:47:53".getBytes(StandardCharsets.UTF_8));
+
+        // VERIFY
+        assertThat(testee.getUp()).isNotDone();
+        assertThat(testee.getLines()).containsExactly("[19648,10,12:47:52.297] Starting");
+
+        // TEST
+        testee.write(".100] 'admin' user account has been created.\n".getBytes(StandardCharsets.UTF_8));
+
+        // VERIFY
+        assertThat(testee.getUp()).isCompletedWithValue("[19648,10,12:47:53.100] 'admin' user account has been created.");
+        assertThat(testee.getLines()).hasSize(2);
+
+    }
+
+    @Test
+    public void testLineStreams() throws IOException {
+
+        // PREPARE
+        final UpMessageDetector testee = new UpMessageDetector("'admin' user account has been created");
+        final OutputStream out = testee.createLineStream();
+        final OutputStream err = testee.createLineStream();
+
+        // TEST
+        out.write("[19648,10,12:47:53.100] 'admin' user ".getBytes(StandardCharsets.UTF_8));
+        err.write("Warning\n".getBytes(StandardCharsets.UTF_8));
+        out.write("account has been created.\n".getBytes(StandardCharsets.UTF_8));
+
+        // VERIFY
+        assertThat(testee.getLines()).containsExactly("Warning", "[19648,10,12:47:53.100] 'admin' user account has been created.");
+        assertThat(testee.getUp()).isCompletedWithValue("[19648,10,12:47:53.100] 'admin' user account has been created.");
+
+    }
+
+    @Test
+    public void testProcessEnded() throws IOException {
+
+        // PREPARE
+        final UpMessageDetector testee = new UpMessageDetector("'admin' user account has been created");
+        testee.write("Something went wrong\n".getBytes(StandardCharsets.UTF_8));
+
+        // TEST
+        testee.processEnded();
+
+        // VERIFY
+        assertThat(testee.getUp()).isCompletedExceptionally();
+        assertThat(testee.getLines()).containsExactly("Something went wrong");
+
+    }
+
+    @Test
+    public void testBounded() throws IOException {
+
+        // PREPARE
+        final File file = new File(Utils4J.getTempDir(), "UpMessageDetectorTest-" + UUID.randomUUID() + ".log");
+        final UpMessageDetector testee = new UpMessageDetector("up", 3, 1000, new RotatingLogFile(file, 1024 * 1024, 1));
+
+        // TEST
+        for (int i = 0; i < 10; i++) {
+            testee.write(("line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        testee.processEnded();
+
+        // VERIFY
+        assertThat(testee.getLines()).containsExactly("line 7", "line 8", "line 9");
+        assertThat(testee.getFirstLine()).isEqualTo("line 0");
+        assertThat(testee.getDropped()).isEqualTo(7);
+        assertThat(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)).hasSize(10).startsWith("line 0").endsWith("line 9");
+
+    }
+
+    @Test
+    public void testBoundedChars() throws IOException {
+
+        // PREPARE
+        final UpMessageDetector testee = new UpMessageDetector("up", 100, 10, null);
+
+        // TEST
+        testee.write("12345\n67890\nabcdefghijklmno\n".getBytes(StandardCharsets.UTF_8));
+
+        // VERIFY
+        assertThat(testee.getLines()).containsExactly("abcdefghijklmno");
+        assertThat(testee.getDropped()).isEqualTo(2);
+
+    }
+
+}
+// CHECKSTYLE:ON
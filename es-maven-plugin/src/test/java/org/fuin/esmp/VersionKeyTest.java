@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link VersionKey}.
+ */
+// CHECKSTYLE:OFF Test
+public class VersionKeyTest {
+
+    @Test
+    public void testParse() {
+
+        // TEST
+        final VersionKey testee = new VersionKey("5.0.10-RC2");
+
+        // VERIFY
+        assertThat(testee.getMajor()).isEqualTo(5);
+        assertThat(testee.getMinor()).isEqualTo(0);
+        assertThat(testee.getPatch()).isEqualTo(10);
+        assertThat(testee.getQualifier()).isEqualTo("rc2");
+        assertThat(testee.isPreRelease()).isTrue();
+        assertThat(new VersionKey("20.6").getPatch()).isEqualTo(0);
+        assertThat(new VersionKey("4.1.1-hotfix1").isPreRelease()).isFalse();
+
+    }
+
+    @Test
+    public void testCompareTo() {
+
+        assertThat(key("5.0.10")).isGreaterThan(key("5.0.9"));
+        assertThat(key("20.6")).isGreaterThan(key("5.0.0"));
+        assertThat(key("4.1.1-hotfix1")).isGreaterThan(key("4.1.1"));
+        assertThat(key("4.1.1")).isGreaterThan(key("4.1.1-rc1"));
+        assertThat(key("5.0.0-rc10")).isGreaterThan(key("5.0.0-rc9"));
+        assertThat(key("5.0.0-rc1")).isGreaterThan(key("4.1.1-hotfix1"));
+        assertThat(key("5.0.0-preview1")).isLessThan(key("5.0.0"));
+        assertThat(key("5.0").compareTo(key("5.0.0"))).isNotEqualTo(0);
+        assertThat(key("4.1.1").compareTo(key("4.1.1"))).isEqualTo(0);
+
+    }
+
+    @Test
+    public void testCompareNatural() {
+
+        assertThat(VersionKey.compareNatural("Ubuntu 18.04", "Ubuntu 9.10")).isPositive();
+        assertThat(VersionKey.compareNatural("Ubuntu 18.04 64-bit (.deb)", "Ubuntu 18.04")).isPositive();
+        assertThat(VersionKey.compareNatural("Ubuntu 16.04", "Linux 64-bit")).isPositive();
+        assertThat(VersionKey.compareNatural("a01", "a1")).isNotEqualTo(0);
+        assertThat(VersionKey.compareNatural("a1", "a1")).isEqualTo(0);
+
+    }
+
+    private static VersionKey key(final String name) {
+        return new VersionKey(name);
+    }
+
+}
+// CHECKSTYLE:ON
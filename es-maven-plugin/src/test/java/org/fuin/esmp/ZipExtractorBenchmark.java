@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Compares sequential and parallel extraction of a ZIP file with both engines. Uses the archive given as first argument (for example the Windows
+ * event store distribution) or creates one with 600 entries. The second argument is the number of threads (defaults to the number of
+ * available processors). Not executed as part of the build.
+ */
+// CHECKSTYLE:OFF Test
+public final class ZipExtractorBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(final String[] args) throws IOException {
+
+        final File dir = new File(Utils4J.getTempDir(), "ZipExtractorBenchmark-" + UUID.randomUUID());
+        try {
+            final File zipFile;
+            if (args.length > 0) {
+                zipFile = new File(args[0]);
+            } else {
+                zipFile = new File(dir, "benchmark.zip");
+                ZipExtractorTest.createZip(zipFile, 600, false);
+            }
+            final int threads = (args.length > 1) ? Integer.parseInt(args[1]) : 0;
+
+            final long sequential = run(zipFile, new File(dir, "sequential"), new ZipExtractor(1));
+            final ZipExtractor parallel = new ZipExtractor(threads);
+            final long parallelMs = run(zipFile, new File(dir, "parallel"), parallel);
+            final long mmapMs = run(zipFile, new File(dir, "mmap"), new ZipExtractor(threads, UnpackEngine.MMAP));
+
+            System.out.println("Archive:    " + zipFile + " (" + zipFile.length() + " bytes)");
+            System.out.println("Sequential: " + sequential + " ms");
+            System.out.println("Parallel:   " + parallelMs + " ms (" + parallel.getParallelism() + " threads)");
+            System.out.println("Mmap:       " + mmapMs + " ms (" + parallel.getParallelism() + " threads)");
+            System.out.printf("Speedup:    %.2f (mmap %.2f)%n", (double) sequential / Math.max(1, parallelMs),
+                    (double) sequential / Math.max(1, mmapMs));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+
+    }
+
+    /**
+     * Extracts the archive several times and returns the best time.
+     */
+    private static long run(final File zipFile, final File destDir, final ZipExtractor extractor) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            FileUtils.deleteDirectory(destDir);
+            final long start = System.nanoTime();
+            extractor.extract(zipFile, destDir);
+            best = Math.min(best, (System.nanoTime() - start) / 1000000);
+        }
+        return best;
+    }
+
+}
+// CHECKSTYLE:ON
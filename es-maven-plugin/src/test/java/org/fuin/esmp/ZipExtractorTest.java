@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2015 Michael Schnell. All rights reserved. 
+ * http://www.fuin.org/
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see http://www.gnu.org/licenses/.
+ */
+package org.fuin.esmp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.fuin.utils4j.Utils4J;
+import org.junit.Test;
+
+/**
+ * Test for {@link ZipExtractor}.
+ */
+// CHECKSTYLE:OFF Test
+public class ZipExtractorTest {
+
+    @Test
+    public void testExtractParallel() throws IOException {
+
+        // PREPARE
+        final File dir = new File(Utils4J.getTempDir(), "ZipExtractorTest-" + UUID.randomUUID());
+        final File zipFile = new File(dir, "test.zip");
+        final byte[][] contents = createZip(zipFile, 50, false);
+        final File destDir = new File(dir, "dest");
+
+        // TEST
+        new ZipExtractor(4).extract(zipFile, destDir);
+
+        // VERIFY
+        assertThat(new File(destDir, "empty")).isDirectory();
+        for (int i = 0; i < contents.length; i++) {
+            final File file = new File(destDir, "dir" + (i % 5) + "/file" + i + ".txt");
+            assertThat(Files.readAllBytes(file.toPath())).isEqualTo(contents[i]);
+        }
+
+    }
+
+    @Test
+    public void testExtractStored() throws IOException {
+
+        // PREPARE
+        final File dir = new File(Utils4J.getTempDir(), "ZipExtractorTest-" + UUID.randomUUID());
+        final File zipFile = new File(dir, "test.zip");
+        final byte[][] contents = createZip(zipFile, 20, true);
+        final File destDir = new File(dir, "dest");
+
+        // TEST
+        new ZipExtractor(2).extract(zipFile, destDir);
+
+        // VERIFY
+        for (int i = 0; i < contents.length; i++) {
+            final File file = new File(destDir, "dir" + (i % 5) + "/file" + i + ".txt");
+            assertThat(Files.readAllBytes(file.toPath())).isEqualTo(contents[i]);
+        }
+
+    }
+
+    @Test
+    public void testExtractMmap() throws IOException {
+
+        // PREPARE
+        final File dir = new File(Utils4J.getTempDir(), "ZipExtractorTest-" + UUID.randomUUID());
+        final File zipFile = new File(dir, "test.zip");
+        final byte[][] contents = createZip(zipFile, 50, false);
+        final File destDir = new File(dir, "dest");
+
+        // TEST
+        new ZipExtractor(4, UnpackEngine.MMAP).extract(zipFile, destDir);
+
+        // VERIFY
+        assertThat(new File(destDir, "empty")).isDirectory();
+        for (int i = 0; i < contents.length; i++) {
+            final File file = new File(destDir, "dir" + (i % 5) + "/file" + i + ".txt");
+            assertThat(Files.readAllBytes(file.toPath())).isEqualTo(contents[i]);
+        }
+
+    }
+
+    @Test
+    public void testExtractMmapFailure() throws IOException {
+
+        // PREPARE
+        final File dir = new File(Utils4J.getTempDir(), "ZipExtractorTest-" + UUID.randomUUID());
+        final File zipFile = new File(dir, "test.zip");
+        createZip(zipFile, 50, false);
+        final File destDir = new File(dir, "dest");
+        // A directory with the name of a file entry can't be overwritten
+        assertThat(new File(destDir, "dir3/file3.txt").mkdirs()).isTrue();
+
+        // TEST
+        try {
+            new ZipExtractor(4, UnpackEngine.MMAP).extract(zipFile, destDir);
+            fail("Expected an IOException");
+        } catch (final IOException ex) {
+            // VERIFY
+            assertThat(ex.getMessage()).contains("file3.txt");
+        }
+
+    }
+
+    @Test
+    public void testParallelism() {
+        assertThat(new ZipExtractor(3).getParallelism()).isEqualTo(3);
+        assertThat(new ZipExtractor(0).getParallelism()).isEqualTo(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a ZIP file with an empty directory and a number of files with random content in sub directories. The sub directories
+     * have no entries of their own.
+     * 
+     * @param zipFile
+     *            File to create.
+     * @param count
+     *            Number of files.
+     * @param stored
+     *            Store the files uncompressed.
+     * 
+     * @return Content of the files by index.
+     * 
+     * @throws IOException
+     *             Error writing the file.
+     */
+    static byte[][] createZip(final File zipFile, final int count, final boolean stored) throws IOException {
+        zipFile.getParentFile().mkdirs();
+        final Random random = new Random(count);
+        final byte[][] contents = new byte[count][];
+        final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            out.putNextEntry(new ZipEntry("empty/"));
+            out.closeEntry();
+            for (int i = 0; i < count; i++) {
+                final StringBuilder sb = new StringBuilder();
+                final int lines = random.nextInt(2000);
+                for (int j = 0; j < lines; j++) {
+                    sb.append("Line ").append(j).append(": ").append(random.nextLong()).append('\n');
+                }
+                contents[i] = sb.toString().getBytes("UTF-8");
+                final ZipEntry entry = new ZipEntry("dir" + (i % 5) + "/file" + i + ".txt");
+                if (stored) {
+                    final CRC32 crc = new CRC32();
+                    crc.update(contents[i]);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(contents[i].length);
+                    entry.setCrc(crc.getValue());
+                }
+                out.putNextEntry(entry);
+                out.write(contents[i]);
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return contents;
+    }
+
+}
+// CHECKSTYLE:ON
@@ -62,9 +62,7 @@ public class EventStoreMojosTest {
             verifier.verifyErrorFreeLog();
     
             // download
-            verifier.verifyTextInLog("Dowloading archive:");
-            verifier.verifyTextInLog("Archive copied from ");
-            verifier.verifyTextInLog("Unpack event store to target directory:");
+            verifier.verifyTextInLog("Install event store to target directory:");
     
             // certificate
             verifier.verifyTextInLog("Certificate successfully created");
@@ -108,9 +106,7 @@ public class EventStoreMojosTest {
             verifier.verifyErrorFreeLog();
     
             // download
-            verifier.verifyTextInLog("Dowloading archive:");
-            verifier.verifyTextInLog("Archive copied from ");
-            verifier.verifyTextInLog("Unpack event store to target directory:");
+            verifier.verifyTextInLog("Install event store to target directory:");
     
             // certificate
             verifier.verifyTextInLog("Certificate successfully created");